@@ -6,6 +6,9 @@ import com.github.winplay02.gitcraft.config.IntegrityConfiguration;
 import com.github.winplay02.gitcraft.integrity.GitBlobSHA1Algorithm;
 import com.github.winplay02.gitcraft.integrity.IntegrityAlgorithm;
 import com.github.winplay02.gitcraft.integrity.SHA1Algorithm;
+import com.github.winplay02.gitcraft.integrity.SHA256Algorithm;
+import com.github.winplay02.gitcraft.pipeline.StepTimingHistory;
+import com.github.winplay02.gitcraft.util.GitBlobIdCache;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.util.RemoteHelper;
 
@@ -27,6 +30,7 @@ public class Library {
 	public static IntegrityConfiguration CONF_INTEGRITY = null;
 
 	public static IntegrityAlgorithm IA_SHA1 = null;
+	public static IntegrityAlgorithm IA_SHA256 = null;
 	public static IntegrityAlgorithm IA_GIT_BLOB_SHA1 = null;
 
 	public static Logger LIBRARY_LOGGER = null;
@@ -78,6 +82,8 @@ public class Library {
 			LibraryPaths.init(LibraryPaths.lookupCurrentWorkingDirectory());
 			// Maven startup
 			RemoteHelper.loadMavenCache();
+			GitBlobIdCache.loadGitBlobIdCache();
+			StepTimingHistory.loadStepTimingHistory();
 		} catch (IOException e) {
 			MiscHelper.panicBecause(e, "Could not initialize base library");
 		}
@@ -90,6 +96,7 @@ public class Library {
 		CONF_GLOBAL = Configuration.getConfiguration(GlobalConfiguration.class);
 		CONF_INTEGRITY = Configuration.getConfiguration(IntegrityConfiguration.class);
 		IA_SHA1 = new SHA1Algorithm(CONF_INTEGRITY);
+		IA_SHA256 = new SHA256Algorithm(CONF_INTEGRITY);
 		IA_GIT_BLOB_SHA1 = new GitBlobSHA1Algorithm(CONF_INTEGRITY);
 		System.setProperty("jdk.httpclient.connectionPoolSize", String.valueOf(CONF_GLOBAL.maxConcurrentHttpConnections()));
 		System.setProperty("jdk.httpclient.maxstreams", String.valueOf(CONF_GLOBAL.maxConcurrentHttpStreams()));
@@ -14,6 +14,11 @@ public class LibraryPaths {
 	public static Path CURRENT_WORKING_DIRECTORY = null;
 	public static Path MAIN_ARTIFACT_STORE = null;
 	public static Path MAVEN_CACHE = null;
+	public static Path GIT_BLOB_ID_CACHE = null;
+	public static Path STEP_TIMING_HISTORY = null;
+	public static Path PIPELINE_JOURNALS = null;
+	public static Path DATAGEN_CACHE = null;
+	public static Path METADATA_CACHE = null;
 	public static Path TMP_DIR = null;
 
 	public static void init(Path currentWorkingDirectory) throws IOException {
@@ -23,6 +28,11 @@ public class LibraryPaths {
 		CURRENT_WORKING_DIRECTORY = currentWorkingDirectory;
 		MAIN_ARTIFACT_STORE = CURRENT_WORKING_DIRECTORY.resolve("artifact-store");
 		MAVEN_CACHE = MAIN_ARTIFACT_STORE.resolve("maven-cache.json");
+		GIT_BLOB_ID_CACHE = MAIN_ARTIFACT_STORE.resolve("git-blob-id-cache.json");
+		STEP_TIMING_HISTORY = MAIN_ARTIFACT_STORE.resolve("step-timing-history.json");
+		PIPELINE_JOURNALS = MAIN_ARTIFACT_STORE.resolve("pipeline-journals");
+		DATAGEN_CACHE = MAIN_ARTIFACT_STORE.resolve("datagen-cache");
+		METADATA_CACHE = MAIN_ARTIFACT_STORE.resolve("metadata-cache");
 		TMP_DIR = CURRENT_WORKING_DIRECTORY.resolve("tmp");
 		Files.createDirectories(MAIN_ARTIFACT_STORE);
 		Files.createDirectories(TMP_DIR);
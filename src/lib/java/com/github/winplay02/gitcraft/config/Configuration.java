@@ -167,4 +167,12 @@ public interface Configuration {
 			Holder.CONFIGURATION_MAP.put(configurationClass, newConfiguration);
 		});
 	}
+
+	/**
+	 * Replaces an already loaded configuration immediately, unlike {@link #editConfiguration(Class, Function)}, which only applies while loading.
+	 * This is meant for running parts of the application multiple times with different configurations (e.g. once per mapping flavour).
+	 */
+	static <T extends Configuration> void replaceConfiguration(Class<T> configurationClass, T configuration) {
+		Holder.CONFIGURATION_MAP.put(configurationClass, configuration);
+	}
 }
@@ -19,11 +19,22 @@ import static com.github.winplay02.gitcraft.config.Configuration.Utils.prim;
  * @param failedFetchRetryInterval Interval at which a request is resend after being completed with error
  * @param remappingThreads Amount of threads used for the remapper
  * @param decompilingThreads Amount of threads used for the decompiler
+ * @param sortingThreads Amount of threads used for sorting JSON files
+ * @param fileTransferThreads Amount of threads used for copying or hardlinking many files at once
  * @param useHardlinks Whether hardlinks are used when moving files to the repository (improves performance on non-reflink supporting filesystems)
  * @param maxConcurrentHttpStreams Max amount of HTTP/2 streams that can be concurrently used per connection
  * @param maxConcurrentHttpConnections Max amount of HTTP/1.1 connections can be used
  * @param maxConcurrentHttpRequestsPerOrigin Max amount of HTTP Requests that are in flight at a given time per origin
  * @param maxParallelPipelineSteps Max amount of pipeline steps that can be processed in parallel (0 means unlimited)
+ * @param networkPermits Max amount of network-bound pipeline steps that can be processed in parallel (0 means unlimited)
+ * @param cpuPermits Max amount of CPU cores that can be used by pipeline steps in parallel (0 means unlimited)
+ * @param diskIoPermits Max amount of disk-bound pipeline steps that can be processed in parallel (0 means unlimited)
+ * @param heapPermitsMiB Max amount of heap (in MiB) that can be claimed by pipeline steps in parallel (0 means unlimited)
+ * @param subprocessPermits Max amount of subprocesses that can be run by pipeline steps in parallel (0 means unlimited)
+ * @param useAotCaches Whether JDK AOT caches are created and used for repeatedly started Java subprocesses (datagen, launching)
+ * @param intermediatesDiskBudgetMiB Disk space (in MiB) for intermediate artifacts (e.g. remapped or decompiled jars); once exceeded, intermediates that are no longer needed by the running pipeline are evicted (0 means unlimited, nothing is evicted)
+ * @param sharedArtifactStore Directory of the content-addressed store of fetched artifacts, shared by all filesystem roots and concurrently running processes pointing to it (empty means "objects" in the main artifact store)
+ * @param offline Whether nothing is fetched from the network; metadata is served from the metadata cache (regardless of its age) and artifacts from the artifact stores, anything missing fails immediately
  */
 public record GlobalConfiguration(boolean checksumRemoveInvalidFiles,
 								  boolean printExistingFileChecksumMatching,
@@ -32,19 +43,37 @@ public record GlobalConfiguration(boolean checksumRemoveInvalidFiles,
 								  int failedFetchRetryInterval,
 								  int remappingThreads,
 								  int decompilingThreads,
+								  int sortingThreads,
+								  int fileTransferThreads,
 								  boolean useHardlinks,
 								  int maxConcurrentHttpStreams,
 								  int maxConcurrentHttpConnections,
 								  int maxConcurrentHttpRequestsPerOrigin,
-								  int maxParallelPipelineSteps)
+								  int maxParallelPipelineSteps,
+								  int networkPermits,
+								  int cpuPermits,
+								  int diskIoPermits,
+								  int heapPermitsMiB,
+								  int subprocessPermits,
+								  boolean useAotCaches,
+								  int intermediatesDiskBudgetMiB,
+								  String sharedArtifactStore,
+								  boolean offline)
 	implements Configuration {
 
 	public static final int DEFAULT_FETCH_RETRY_INTERVAL = 500;
 	public static final int DEFAULT_REMAPPING_THREADS = Runtime.getRuntime().availableProcessors() - 3;
 	public static final int DEFAULT_DECOMPILING_THREADS = Runtime.getRuntime().availableProcessors() - 3;
+	public static final int DEFAULT_SORTING_THREADS = Runtime.getRuntime().availableProcessors();
+	public static final int DEFAULT_FILE_TRANSFER_THREADS = 16;
 	public static final int DEFAULT_MAX_CONCURRENT_HTTP_STREAMS = 8;
 	public static final int DEFAULT_MAX_CONCURRENT_HTTP_CONNECTIONS = 8;
 	public static final int DEFAULT_MAX_CONCURRENT_HTTP_REQUESTS_PER_ORIGIN = 32;
+	public static final int DEFAULT_NETWORK_PERMITS = 0;
+	public static final int DEFAULT_CPU_PERMITS = Runtime.getRuntime().availableProcessors();
+	public static final int DEFAULT_DISK_IO_PERMITS = 0;
+	public static final int DEFAULT_HEAP_PERMITS_MIB = 0;
+	public static final int DEFAULT_SUBPROCESS_PERMITS = 0;
 
 	public static final GlobalConfiguration DEFAULT = new GlobalConfiguration(
 		true,
@@ -54,11 +83,22 @@ public record GlobalConfiguration(boolean checksumRemoveInvalidFiles,
 		DEFAULT_FETCH_RETRY_INTERVAL,
 		DEFAULT_REMAPPING_THREADS,
 		DEFAULT_DECOMPILING_THREADS,
+		DEFAULT_SORTING_THREADS,
+		DEFAULT_FILE_TRANSFER_THREADS,
 		true,
 		DEFAULT_MAX_CONCURRENT_HTTP_STREAMS,
 		DEFAULT_MAX_CONCURRENT_HTTP_CONNECTIONS,
 		DEFAULT_MAX_CONCURRENT_HTTP_REQUESTS_PER_ORIGIN,
-		0
+		0,
+		DEFAULT_NETWORK_PERMITS,
+		DEFAULT_CPU_PERMITS,
+		DEFAULT_DISK_IO_PERMITS,
+		DEFAULT_HEAP_PERMITS_MIB,
+		DEFAULT_SUBPROCESS_PERMITS,
+		true,
+		0,
+		"",
+		false
 	);
 
 	public GlobalConfiguration {
@@ -74,6 +114,14 @@ public record GlobalConfiguration(boolean checksumRemoveInvalidFiles,
 			decompilingThreads = DEFAULT_DECOMPILING_THREADS;
 		}
 
+		if (sortingThreads <= 0) {
+			sortingThreads = DEFAULT_SORTING_THREADS;
+		}
+
+		if (fileTransferThreads <= 0) {
+			fileTransferThreads = DEFAULT_FILE_TRANSFER_THREADS;
+		}
+
 		if (maxConcurrentHttpStreams <= 0) {
 			maxConcurrentHttpStreams = DEFAULT_MAX_CONCURRENT_HTTP_STREAMS;
 		}
@@ -89,6 +137,66 @@ public record GlobalConfiguration(boolean checksumRemoveInvalidFiles,
 		if (maxParallelPipelineSteps < 0) {
 			maxParallelPipelineSteps = DEFAULT.maxParallelPipelineSteps();
 		}
+
+		if (networkPermits < 0) {
+			networkPermits = DEFAULT_NETWORK_PERMITS;
+		}
+
+		if (cpuPermits < 0) {
+			cpuPermits = DEFAULT_CPU_PERMITS;
+		}
+
+		if (diskIoPermits < 0) {
+			diskIoPermits = DEFAULT_DISK_IO_PERMITS;
+		}
+
+		if (heapPermitsMiB < 0) {
+			heapPermitsMiB = DEFAULT_HEAP_PERMITS_MIB;
+		}
+
+		if (subprocessPermits < 0) {
+			subprocessPermits = DEFAULT_SUBPROCESS_PERMITS;
+		}
+
+		if (intermediatesDiskBudgetMiB < 0) {
+			intermediatesDiskBudgetMiB = 0;
+		}
+
+		if (sharedArtifactStore == null) {
+			sharedArtifactStore = "";
+		}
+	}
+
+	/**
+	 * @param offline Whether nothing should be fetched from the network
+	 * @return copy of this configuration, with offline mode set
+	 */
+	public GlobalConfiguration withOffline(boolean offline) {
+		return new GlobalConfiguration(
+			this.checksumRemoveInvalidFiles(),
+			this.printExistingFileChecksumMatching(),
+			this.printExistingFileChecksumMatchingSkipped(),
+			this.printNotRunSteps(),
+			this.failedFetchRetryInterval(),
+			this.remappingThreads(),
+			this.decompilingThreads(),
+			this.sortingThreads(),
+			this.fileTransferThreads(),
+			this.useHardlinks(),
+			this.maxConcurrentHttpStreams(),
+			this.maxConcurrentHttpConnections(),
+			this.maxConcurrentHttpRequestsPerOrigin(),
+			this.maxParallelPipelineSteps(),
+			this.networkPermits(),
+			this.cpuPermits(),
+			this.diskIoPermits(),
+			this.heapPermitsMiB(),
+			this.subprocessPermits(),
+			this.useAotCaches(),
+			this.intermediatesDiskBudgetMiB(),
+			this.sharedArtifactStore(),
+			offline
+		);
 	}
 
 	@Override
@@ -103,13 +211,26 @@ public record GlobalConfiguration(boolean checksumRemoveInvalidFiles,
 				"failedFetchRetryInterval", prim(this.failedFetchRetryInterval()),
 				"remappingThreads", prim(this.remappingThreads()),
 				"decompilingThreads", prim(this.decompilingThreads()),
-				"useHardlinks", prim(this.useHardlinks()),
-				"maxConcurrentHttpStreams", prim(this.maxConcurrentHttpStreams()),
-				"maxConcurrentHttpConnections", prim(this.maxConcurrentHttpConnections())
+				"sortingThreads", prim(this.sortingThreads()),
+				"fileTransferThreads", prim(this.fileTransferThreads()),
+				"useHardlinks", prim(this.useHardlinks())
 			),
 			Map.of(
+				"maxConcurrentHttpStreams", prim(this.maxConcurrentHttpStreams()),
+				"maxConcurrentHttpConnections", prim(this.maxConcurrentHttpConnections()),
 				"maxConcurrentHttpRequestsPerOrigin", prim(this.maxConcurrentHttpRequestsPerOrigin()),
 				"maxParallelPipelineSteps", prim(this.maxParallelPipelineSteps())
+			),
+			Map.of(
+				"networkPermits", prim(this.networkPermits()),
+				"cpuPermits", prim(this.cpuPermits()),
+				"diskIoPermits", prim(this.diskIoPermits()),
+				"heapPermitsMiB", prim(this.heapPermitsMiB()),
+				"subprocessPermits", prim(this.subprocessPermits()),
+				"useAotCaches", prim(this.useAotCaches()),
+				"intermediatesDiskBudgetMiB", prim(this.intermediatesDiskBudgetMiB()),
+				"sharedArtifactStore", prim(this.sharedArtifactStore()),
+				"offline", prim(this.offline())
 			)
 		);
 	}
@@ -119,7 +240,13 @@ public record GlobalConfiguration(boolean checksumRemoveInvalidFiles,
 		return List.of(
 			String.format("Remapping Threads: %s", this.remappingThreads()),
 			String.format("Decompiling Threads: %s", this.decompilingThreads()),
-			String.format("Max Concurrent Https Requests / Streams / Connections: %s / %s / %s", this.maxConcurrentHttpRequestsPerOrigin(), this.maxConcurrentHttpStreams(), this.maxConcurrentHttpConnections())
+			String.format("Sorting Threads: %s", this.sortingThreads()),
+			String.format("File Transfer Threads: %s", this.fileTransferThreads()),
+			String.format("Max Concurrent Https Requests / Streams / Connections: %s / %s / %s", this.maxConcurrentHttpRequestsPerOrigin(), this.maxConcurrentHttpStreams(), this.maxConcurrentHttpConnections()),
+			String.format("Pipeline Permits Network / CPU / Disk I/O / Heap (MiB) / Subprocesses: %s / %s / %s / %s / %s", this.networkPermits(), this.cpuPermits(), this.diskIoPermits(), this.heapPermitsMiB(), this.subprocessPermits()),
+			String.format("Intermediates Disk Budget: %s", this.intermediatesDiskBudgetMiB() > 0 ? this.intermediatesDiskBudgetMiB() + " MiB" : "unlimited"),
+			String.format("Shared Artifact Store: %s", this.sharedArtifactStore().isEmpty() ? "default" : this.sharedArtifactStore()),
+			String.format("Offline Mode: %s", this.offline() ? "enabled" : "disabled")
 		);
 	}
 
@@ -132,11 +259,22 @@ public record GlobalConfiguration(boolean checksumRemoveInvalidFiles,
 			Utils.getInt(map, "failedFetchRetryInterval", DEFAULT.failedFetchRetryInterval()),
 			Utils.getInt(map, "remappingThreads", DEFAULT.remappingThreads()),
 			Utils.getInt(map, "decompilingThreads", DEFAULT.decompilingThreads()),
+			Utils.getInt(map, "sortingThreads", DEFAULT.sortingThreads()),
+			Utils.getInt(map, "fileTransferThreads", DEFAULT.fileTransferThreads()),
 			Utils.getBoolean(map, "useHardlinks", DEFAULT.useHardlinks()),
 			Utils.getInt(map, "maxConcurrentHttpStreams", DEFAULT.maxConcurrentHttpStreams()),
 			Utils.getInt(map, "maxConcurrentHttpConnections", DEFAULT.maxConcurrentHttpConnections()),
 			Utils.getInt(map, "maxConcurrentHttpRequestsPerOrigin", DEFAULT.maxConcurrentHttpRequestsPerOrigin()),
-			Utils.getInt(map, "maxParallelPipelineSteps", DEFAULT.maxParallelPipelineSteps())
+			Utils.getInt(map, "maxParallelPipelineSteps", DEFAULT.maxParallelPipelineSteps()),
+			Utils.getInt(map, "networkPermits", DEFAULT.networkPermits()),
+			Utils.getInt(map, "cpuPermits", DEFAULT.cpuPermits()),
+			Utils.getInt(map, "diskIoPermits", DEFAULT.diskIoPermits()),
+			Utils.getInt(map, "heapPermitsMiB", DEFAULT.heapPermitsMiB()),
+			Utils.getInt(map, "subprocessPermits", DEFAULT.subprocessPermits()),
+			Utils.getBoolean(map, "useAotCaches", DEFAULT.useAotCaches()),
+			Utils.getInt(map, "intermediatesDiskBudgetMiB", DEFAULT.intermediatesDiskBudgetMiB()),
+			Utils.getString(map, "sharedArtifactStore", DEFAULT.sharedArtifactStore()),
+			Utils.getBoolean(map, "offline", DEFAULT.offline())
 		);
 	}
 }
@@ -10,32 +10,37 @@ import static com.github.winplay02.gitcraft.config.Configuration.Utils.prim;
 /**
  * Configuration for integrity verifying algorithms.
  *
- * @param verifyChecksums Whether checksums should be verified. If this is false, no checksum is actually calculated.
- * @param cacheChecksums  Whether checksums should be cached. If this is false, no checksum is cached and every calculation will start from scratch. When dealing in a malicious environment, this should be disabled as last-modified timestamps can be forged.
+ * @param verifyChecksums  Whether checksums should be verified. If this is false, no checksum is actually calculated.
+ * @param cacheChecksums   Whether checksums should be cached. If this is false, no checksum is cached and every calculation will start from scratch. When dealing in a malicious environment, this should be disabled as last-modified timestamps can be forged.
+ * @param deepVerifyAssets Whether all asset objects should be hashed again on every run. If this is false, an assets index verified by a previous run is trusted as long as the objects directory was not modified since.
  */
 public record IntegrityConfiguration(boolean verifyChecksums,
-									 boolean cacheChecksums)
+									 boolean cacheChecksums,
+									 boolean deepVerifyAssets)
 	implements Configuration {
 
 	@Override
 	public Map<String, JsonElement> serialize() {
 		return Map.of(
 			"verifyChecksums", prim(this.verifyChecksums()),
-			"cacheChecksums", prim(this.cacheChecksums())
+			"cacheChecksums", prim(this.cacheChecksums()),
+			"deepVerifyAssets", prim(this.deepVerifyAssets())
 		);
 	}
 
 	@Override
 	public List<String> generateInfo() {
 		return List.of(
-			String.format("Checksum verification is: %s", verifyChecksums ? "enabled" : "disabled")
+			String.format("Checksum verification is: %s", verifyChecksums ? "enabled" : "disabled"),
+			String.format("Deep verification of assets is: %s", deepVerifyAssets ? "enabled" : "disabled")
 		);
 	}
 
 	public static IntegrityConfiguration deserialize(Map<String, JsonElement> map) {
 		return new IntegrityConfiguration(
 			Utils.getBoolean(map, "verifyChecksums", true),
-			Utils.getBoolean(map, "cacheChecksums", true)
+			Utils.getBoolean(map, "cacheChecksums", true),
+			Utils.getBoolean(map, "deepVerifyAssets", false)
 		);
 	}
 }
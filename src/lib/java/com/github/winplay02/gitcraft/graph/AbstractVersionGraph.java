@@ -5,6 +5,8 @@ import com.github.winplay02.gitcraft.util.MiscHelper;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Function;
@@ -31,53 +33,52 @@ public abstract class AbstractVersionGraph<T extends AbstractVersion<T>> extends
 		this.validateNoCycles();
 	}
 
+	/**
+	 * Creates a view of the provided frozen graph with additional tags.
+	 * The view shares all vertices, edges and roots with the provided graph.
+	 *
+	 * @param previous Frozen graph to share the structure with
+	 * @param tags     Additional tags
+	 */
+	protected AbstractVersionGraph(AbstractVersionGraph<T> previous, String... tags) {
+		super(previous);
+		this.repoTags = new HashSet<>(previous.repoTags);
+		this.repoTags.addAll(Arrays.asList(tags));
+		this.roots = previous.roots;
+	}
+
 	protected void reconnectGraph(AbstractVersionGraph<T> previous) {
-		TreeSet<T> allVersions = new TreeSet<>(this.edgesBack.keySet());
-		for (T version : allVersions) {
-			TreeSet<T> nearestPreviousNodes = new TreeSet<>(previous.getPreviousVertices(version));
+		// For each vertex of the previous graph, the nearest retained vertices at or before it (computed once in topological order)
+		// Removed vertices with a single previous vertex share the set of that vertex
+		Map<T, Set<T>> nearestRetainedVertices = new HashMap<>();
+		previous.stream().forEach(version -> {
+			if (this.edgesBack.containsKey(version)) {
+				nearestRetainedVertices.put(version, Set.of(version));
+				return;
+			}
+			NavigableSet<T> previousVertices = previous.getPreviousVertices(version);
+			if (previousVertices.size() == 1) {
+				nearestRetainedVertices.put(version, nearestRetainedVertices.get(previousVertices.first()));
+				return;
+			}
+			Set<T> bridgedVertices = new HashSet<>();
+			for (T previousVertex : previousVertices) {
+				bridgedVertices.addAll(nearestRetainedVertices.get(previousVertex));
+			}
+			nearestRetainedVertices.put(version, bridgedVertices);
+		});
+		for (T version : this.edgesBack.keySet()) {
 			TreeSet<T> calculatedPreviousNodes = new TreeSet<>();
-			//while (nearestPreviousNodes.stream().anyMatch(anyPreviousVersion -> !this.containsVersion(anyPreviousVersion))) {
-			while (!nearestPreviousNodes.isEmpty()) {
-				TreeSet<T> nextBestNodes = new TreeSet<>();
-				for (T nearestPreviousNode : nearestPreviousNodes) {
-					if (allVersions.contains(nearestPreviousNode)) {
-						calculatedPreviousNodes.add(nearestPreviousNode);
-					} else {
-						nextBestNodes.addAll(previous.getPreviousVertices(nearestPreviousNode));
-					}
-				}
-				nextBestNodes.removeIf(calculatedPreviousNodes::contains);
-				nearestPreviousNodes = nextBestNodes;
+			for (T previousVertex : previous.getPreviousVertices(version)) {
+				calculatedPreviousNodes.addAll(nearestRetainedVertices.get(previousVertex));
 			}
 			// ADD
-			this.edgesBack.computeIfAbsent(version, value -> new TreeSet<>()).addAll(calculatedPreviousNodes);
+			this.edgesBack.get(version).addAll(calculatedPreviousNodes);
 			for (T prevVersion : calculatedPreviousNodes) {
 				this.edgesFw.computeIfAbsent(prevVersion, value -> new TreeSet<>()).add(version);
 			}
 		}
-
-		for (T version : allVersions) {
-			TreeSet<T> nearestNextNodes = new TreeSet<>(previous.getFollowingVertices(version));
-			TreeSet<T> calculatedNextNodes = new TreeSet<>();
-			//while (nearestNextNodes.stream().anyMatch(anyNextVersion -> !this.containsVersion(anyNextVersion))) {
-			while (!nearestNextNodes.isEmpty()) {
-				TreeSet<T> nextBestNodes = new TreeSet<>();
-				for (T nearestNextNode : nearestNextNodes) {
-					if (allVersions.contains(nearestNextNode)) {
-						calculatedNextNodes.add(nearestNextNode);
-					} else {
-						nextBestNodes.addAll(previous.getFollowingVertices(nearestNextNode));
-					}
-				}
-				nextBestNodes.removeIf(calculatedNextNodes::contains);
-				nearestNextNodes = nextBestNodes;
-			}
-			// ADD
-			//this.edgesFw.computeIfAbsent(version, value -> new TreeSet<>()).addAll(calculatedNextNodes);
-			//for (OrderedVersion nextVersion : calculatedNextNodes) {
-			//this.edgesBack.computeIfAbsent(nextVersion, value -> new TreeSet<>()).add(version);
-			//}
-		}
+		this.invalidateStructure();
 		this.testGraphConnectivity();
 	}
 
@@ -2,26 +2,38 @@ package com.github.winplay02.gitcraft.graph;
 
 import com.github.winplay02.gitcraft.util.MiscHelper;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
  * Directed graph, optionally acyclic
+ * <p>
+ * The topological order, roots, leaves and adjacency are computed once and cached as int-indexed arrays.
+ * Subclasses modifying the edges after any of these were queried have to call {@link #invalidateStructure()}.
+ * After construction, graphs should be {@link #freeze() frozen}, which prevents any further invalidation.
+ * Frozen graphs use unmodifiable copies of their edges, so the cached structure cannot become stale, even if the original edges are still referenced elsewhere.
  *
  * @param <T> Vertex Type
  */
 public class Graph<T extends Vertex<T>> implements Iterable<T> {
-	protected final HashMap<T, TreeSet<T>> edgesBack;
-	protected final HashMap<T, TreeSet<T>> edgesFw;
+	protected Map<T, TreeSet<T>> edgesBack;
+	protected Map<T, TreeSet<T>> edgesFw;
+	private volatile Structure<T> structure = null;
+	private volatile boolean frozen = false;
 
 	protected Graph(HashMap<T, TreeSet<T>> edgesBack, HashMap<T, TreeSet<T>> edgesFw) {
 		this.edgesBack = edgesBack;
@@ -33,6 +45,157 @@ public class Graph<T extends Vertex<T>> implements Iterable<T> {
 		this.edgesFw = new HashMap<>();
 	}
 
+	/**
+	 * Creates a graph sharing all vertices, edges and the cached structure of the provided frozen graph.
+	 *
+	 * @param frozenGraph Frozen graph
+	 */
+	protected Graph(Graph<T> frozenGraph) {
+		if (!frozenGraph.isFrozen()) {
+			MiscHelper.panic("Only the structure of frozen graphs can be shared");
+		}
+		this.edgesBack = frozenGraph.edgesBack;
+		this.edgesFw = frozenGraph.edgesFw;
+		this.structure = frozenGraph.getStructure();
+		this.frozen = true;
+	}
+
+	/**
+	 * Structure of a graph, vertices are indexed in topological order.
+	 *
+	 * @param vertices  Vertices, all vertices that are part of a cycle (if any) are located after the topologically ordered ones
+	 * @param indices   Index of each vertex
+	 * @param ordered   Amount of topologically ordered vertices, less than the amount of vertices if the graph contains a cycle
+	 * @param previous  Indices of previous vertices, for each vertex
+	 * @param following Indices of following vertices, for each vertex
+	 * @param roots     Indices of vertices with in-degree of zero
+	 * @param leaves    Indices of vertices with out-degree of zero
+	 */
+	private record Structure<T>(List<T> vertices, Map<T, Integer> indices, int ordered, int[][] previous, int[][] following, int[] roots, int[] leaves) {
+		private static <T extends Vertex<T>> Structure<T> compute(Map<T, TreeSet<T>> edgesBack, Map<T, TreeSet<T>> edgesFw) {
+			// Kahn's algorithm, roots are processed in natural order, so that the order is deterministic
+			List<T> vertices = new ArrayList<>(edgesBack.size());
+			Map<T, Integer> remainingInDegree = new HashMap<>(edgesBack.size());
+			ArrayDeque<T> queue = new ArrayDeque<>();
+			for (Map.Entry<T, TreeSet<T>> entry : edgesBack.entrySet()) {
+				remainingInDegree.put(entry.getKey(), entry.getValue().size());
+			}
+			edgesBack.entrySet().stream().filter(entry -> entry.getValue().isEmpty()).map(Map.Entry::getKey).sorted().forEach(queue::add);
+			while (!queue.isEmpty()) {
+				T vertex = queue.poll();
+				vertices.add(vertex);
+				for (T following : edgesFw.getOrDefault(vertex, new TreeSet<>())) {
+					if (remainingInDegree.merge(following, -1, Integer::sum) == 0) {
+						queue.add(following);
+					}
+				}
+			}
+			int ordered = vertices.size();
+			Map<T, Integer> indices = new HashMap<>(edgesBack.size());
+			for (int i = 0; i < vertices.size(); ++i) {
+				indices.put(vertices.get(i), i);
+			}
+			if (ordered < edgesBack.size()) {
+				edgesBack.keySet().stream().filter(vertex -> !indices.containsKey(vertex)).sorted().forEach(vertex -> {
+					indices.put(vertex, vertices.size());
+					vertices.add(vertex);
+				});
+			}
+			int[][] previous = new int[vertices.size()][];
+			int[][] following = new int[vertices.size()][];
+			for (int i = 0; i < vertices.size(); ++i) {
+				previous[i] = edgesBack.get(vertices.get(i)).stream().filter(indices::containsKey).mapToInt(indices::get).toArray();
+				following[i] = edgesFw.getOrDefault(vertices.get(i), new TreeSet<>()).stream().filter(indices::containsKey).mapToInt(indices::get).toArray();
+			}
+			int[] roots = IntStream.range(0, vertices.size()).filter(i -> previous[i].length == 0).toArray();
+			int[] leaves = IntStream.range(0, vertices.size()).filter(i -> following[i].length == 0).toArray();
+			return new Structure<>(Collections.unmodifiableList(vertices), Collections.unmodifiableMap(indices), ordered, previous, following, roots, leaves);
+		}
+	}
+
+	private Structure<T> getStructure() {
+		Structure<T> structure = this.structure;
+		if (structure == null) {
+			structure = Structure.compute(this.edgesBack, this.edgesFw);
+			this.structure = structure;
+		}
+		return structure;
+	}
+
+	/**
+	 * Discards the cached structure, has to be called after modifying the edges of this graph.
+	 */
+	protected void invalidateStructure() {
+		if (this.frozen) {
+			MiscHelper.panic("Graph is frozen and cannot be modified");
+		}
+		this.structure = null;
+	}
+
+	/**
+	 * Computes the structure of this graph and prevents any further invalidation.
+	 */
+	protected void freeze() {
+		if (this.frozen) {
+			return;
+		}
+		this.edgesBack = copyUnmodifiable(this.edgesBack);
+		this.edgesFw = copyUnmodifiable(this.edgesFw);
+		this.getStructure();
+		this.frozen = true;
+	}
+
+	private static <T extends Vertex<T>> Map<T, TreeSet<T>> copyUnmodifiable(Map<T, TreeSet<T>> edges) {
+		HashMap<T, TreeSet<T>> copy = new HashMap<>(edges.size());
+		for (Map.Entry<T, TreeSet<T>> entry : edges.entrySet()) {
+			copy.put(entry.getKey(), new TreeSet<>(entry.getValue()));
+		}
+		return Collections.unmodifiableMap(copy);
+	}
+
+	public boolean isFrozen() {
+		return this.frozen;
+	}
+
+	/**
+	 * @return Amount of vertices
+	 */
+	public int getVertexCount() {
+		return this.getStructure().vertices().size();
+	}
+
+	/**
+	 * @param vertex Subject vertex
+	 * @return Index of the vertex (in topological order), or -1 if the vertex is not contained in this graph
+	 */
+	public int getVertexIndex(T vertex) {
+		return this.getStructure().indices().getOrDefault(vertex, -1);
+	}
+
+	/**
+	 * @param index Index of a vertex
+	 * @return Vertex at the provided index
+	 */
+	public T getVertex(int index) {
+		return this.getStructure().vertices().get(index);
+	}
+
+	/**
+	 * @param index Index of a vertex
+	 * @return Indices of all previous vertices, must not be modified
+	 */
+	public int[] getPreviousVertexIndices(int index) {
+		return this.getStructure().previous()[index];
+	}
+
+	/**
+	 * @param index Index of a vertex
+	 * @return Indices of all following vertices, must not be modified
+	 */
+	public int[] getFollowingVertexIndices(int index) {
+		return this.getStructure().following()[index];
+	}
+
 	/**
 	 * Test whether this graph contains at least one cycle
 	 */
@@ -77,11 +240,17 @@ public class Graph<T extends Vertex<T>> implements Iterable<T> {
 	 * @return Set containing root vertices
 	 */
 	protected Set<T> findRootVertices() {
-		return this.edgesBack.entrySet()
-			.stream()
-			.filter(entry -> entry.getValue().isEmpty())
-			.map(Map.Entry::getKey)
-			.collect(Collectors.toSet());
+		Structure<T> structure = this.getStructure();
+		return Arrays.stream(structure.roots()).mapToObj(structure.vertices()::get).collect(Collectors.toCollection(HashSet::new));
+	}
+
+	/**
+	 * Find all vertices with out-degree of zero
+	 * @return Set containing leaf vertices
+	 */
+	protected Set<T> findLeafVertices() {
+		Structure<T> structure = this.getStructure();
+		return Arrays.stream(structure.leaves()).mapToObj(structure.vertices()::get).collect(Collectors.toCollection(HashSet::new));
 	}
 
 	/**
@@ -138,28 +307,11 @@ public class Graph<T extends Vertex<T>> implements Iterable<T> {
 	 */
 	public Stream<T> stream() {
 		// Topological order, only valid in directed acyclic graph
-		HashSet<T> nextVertices = new HashSet<>(findRootVertices());
-		HashSet<T> emittedVertices = new HashSet<>(this.edgesBack.size());
-		HashSet<T> temporarySet = new HashSet<>(findRootVertices());
-		Stream.Builder<T> builder = Stream.builder();
-		while (!nextVertices.isEmpty()) {
-			for (T vertex : nextVertices) {
-				if (this.getPreviousVertices(vertex).stream().anyMatch(vertexPrev -> !emittedVertices.contains(vertexPrev))) {
-					temporarySet.add(vertex);
-					continue;
-				}
-				builder.accept(vertex);
-				emittedVertices.add(vertex);
-				temporarySet.addAll(this.edgesFw.get(vertex));
-			}
-			nextVertices.clear();
-			nextVertices.addAll(temporarySet.stream().filter(vertex -> !emittedVertices.contains(vertex)).toList());
-			temporarySet.clear();
-		}
-		if (emittedVertices.size() < this.edgesBack.size()) {
-			MiscHelper.panic("Topological order is incomplete, this graph contains a cycle. Only %s out of %s vertices ordered", emittedVertices.size(), this.edgesBack.size());
+		Structure<T> structure = this.getStructure();
+		if (structure.ordered() < structure.vertices().size()) {
+			MiscHelper.panic("Topological order is incomplete, this graph contains a cycle. Only %s out of %s vertices ordered", structure.ordered(), structure.vertices().size());
 		}
-		return builder.build();
+		return structure.vertices().stream();
 	}
 
 	@Override
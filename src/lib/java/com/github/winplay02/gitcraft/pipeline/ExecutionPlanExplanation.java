@@ -0,0 +1,306 @@
+package com.github.winplay02.gitcraft.pipeline;
+
+import com.github.winplay02.gitcraft.Library;
+import com.github.winplay02.gitcraft.graph.AbstractVersion;
+import com.github.winplay02.gitcraft.graph.AbstractVersionGraph;
+import com.github.winplay02.gitcraft.util.FileTransferHelper;
+import com.github.winplay02.gitcraft.util.MiscHelper;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Preview of an execution plan, created without running any step.
+ * <p>
+ * Every task of the execution graph is classified using {@link IStepWorker#shouldExecute} and {@link IStepWorker#estimate}.
+ * Durations and heap usage of tasks that will run are taken from the {@link StepTimingHistory}.
+ * The execution is then simulated with the same constraints as a real run (dependencies, sequential steps and the max. amount of parallel steps),
+ * to predict the critical path, the total duration and the peak heap usage.
+ */
+public final class ExecutionPlanExplanation<T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> {
+
+	public enum TaskOutcome {
+		RUN("run"),
+		UP_TO_DATE("up-to-date"),
+		NOT_APPLICABLE("not applicable");
+
+		private final String description;
+
+		TaskOutcome(String description) {
+			this.description = description;
+		}
+	}
+
+	/**
+	 * @param outcome       What will happen to the task
+	 * @param downloadBytes Estimated amount of downloaded bytes
+	 * @param nanos         Estimated duration, 0 if the task does not run or if there is no recorded timing
+	 * @param heapBytes     Estimated heap usage while the task is running
+	 */
+	public record TaskEstimate(TaskOutcome outcome, long downloadBytes, long nanos, long heapBytes) {
+	}
+
+	private record ScheduledTask<T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig>(long endNanos, IPipeline.TupleVersionStep<T, C, D> task) {
+	}
+
+	private final PipelineDescription<T, C, D> description;
+	private final PipelineExecutionGraph<T, C, D> executionGraph;
+	private final List<T> skippedVersions;
+	private final List<IPipeline.TupleVersionStep<T, C, D>> orderedTasks;
+	private final Map<IPipeline.TupleVersionStep<T, C, D>, TaskEstimate> estimates;
+	private final Set<IStep<T, ?, C, D>> stepsWithoutTimings;
+
+	private ExecutionPlanExplanation(PipelineDescription<T, C, D> description, PipelineExecutionGraph<T, C, D> executionGraph, List<T> skippedVersions, List<IPipeline.TupleVersionStep<T, C, D>> orderedTasks, Map<IPipeline.TupleVersionStep<T, C, D>, TaskEstimate> estimates, Set<IStep<T, ?, C, D>> stepsWithoutTimings) {
+		this.description = description;
+		this.executionGraph = executionGraph;
+		this.skippedVersions = skippedVersions;
+		this.orderedTasks = orderedTasks;
+		this.estimates = estimates;
+		this.stepsWithoutTimings = stepsWithoutTimings;
+	}
+
+	public static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> ExecutionPlanExplanation<T, C, D> create(IPipeline<T, C, D> pipeline, InFlightExecutionPlan<T, C, D> executionPlan, AbstractVersionGraph<T> versionGraph) throws Exception {
+		PipelineDescription<T, C, D> description = pipeline.getDescription();
+		Map<T, Integer> versionOrder = new HashMap<>();
+		for (T version : versionGraph) {
+			versionOrder.put(version, versionOrder.size());
+		}
+		List<T> skippedVersions = executionPlan.skipDecisions().entrySet().stream().filter(Map.Entry::getValue).map(Map.Entry::getKey).sorted(Comparator.comparing(versionOrder::get)).toList();
+		Comparator<IPipeline.TupleVersionStep<T, C, D>> taskOrder = Comparator.<IPipeline.TupleVersionStep<T, C, D>, Integer>comparing(task -> versionOrder.get(task.version())).thenComparing(task -> description.steps().indexOf(task.step()));
+		List<IPipeline.TupleVersionStep<T, C, D>> orderedTasks = executionPlan.executionGraph().stepVersionSubsetVertices().stream().sorted(taskOrder).toList();
+		Map<IPipeline.TupleVersionStep<T, C, D>, TaskEstimate> estimates = new HashMap<>();
+		Set<IStep<T, ?, C, D>> stepsWithoutTimings = new LinkedHashSet<>();
+		for (IPipeline.TupleVersionStep<T, C, D> task : orderedTasks) {
+			C context = executionPlan.versionedContexts().get(task.version());
+			D config = executionPlan.versionedConfigs().computeIfAbsent(task.version(), description.configCreator());
+			IStepWorker<T, ?, C, D> worker = task.step().createWorker(config);
+			if (!worker.shouldExecute(pipeline, context)) {
+				estimates.put(task, new TaskEstimate(TaskOutcome.NOT_APPLICABLE, 0L, 0L, 0L));
+				continue;
+			}
+			StepEstimate estimate = worker.estimate(pipeline, context);
+			if (estimate.upToDate()) {
+				estimates.put(task, new TaskEstimate(TaskOutcome.UP_TO_DATE, 0L, 0L, 0L));
+				continue;
+			}
+			StepTimingHistory.StepTiming timing = StepTimingHistory.get(task.step().getName());
+			if (timing == null) {
+				stepsWithoutTimings.add(task.step());
+			}
+			estimates.put(task, new TaskEstimate(TaskOutcome.RUN, estimate.downloadBytes(), timing != null ? timing.averageNanos() : 0L, timing != null ? timing.peakHeapBytes() : 0L));
+		}
+		return new ExecutionPlanExplanation<>(description, executionPlan.executionGraph(), skippedVersions, orderedTasks, estimates, stepsWithoutTimings);
+	}
+
+	private TaskEstimate getEstimate(IPipeline.TupleVersionStep<T, C, D> task) {
+		return this.estimates.get(task);
+	}
+
+	/**
+	 * @return tasks in an order where all dependencies of a task are placed before it
+	 */
+	private List<IPipeline.TupleVersionStep<T, C, D>> topologicalOrder(Map<IPipeline.TupleVersionStep<T, C, D>, Set<IPipeline.TupleVersionStep<T, C, D>>> dependencies, Map<IPipeline.TupleVersionStep<T, C, D>, List<IPipeline.TupleVersionStep<T, C, D>>> dependents) {
+		Map<IPipeline.TupleVersionStep<T, C, D>, Integer> remainingDependencies = new HashMap<>();
+		ArrayDeque<IPipeline.TupleVersionStep<T, C, D>> readyTasks = new ArrayDeque<>();
+		for (IPipeline.TupleVersionStep<T, C, D> task : this.orderedTasks) {
+			int dependencyCount = dependencies.getOrDefault(task, Set.of()).size();
+			remainingDependencies.put(task, dependencyCount);
+			if (dependencyCount == 0) {
+				readyTasks.add(task);
+			}
+		}
+		List<IPipeline.TupleVersionStep<T, C, D>> order = new ArrayList<>(this.orderedTasks.size());
+		while (!readyTasks.isEmpty()) {
+			IPipeline.TupleVersionStep<T, C, D> task = readyTasks.poll();
+			order.add(task);
+			for (IPipeline.TupleVersionStep<T, C, D> dependent : dependents.getOrDefault(task, List.of())) {
+				if (remainingDependencies.merge(dependent, -1, Integer::sum) == 0) {
+					readyTasks.add(dependent);
+				}
+			}
+		}
+		if (order.size() != this.orderedTasks.size()) {
+			MiscHelper.panic("Execution graph of pipeline %s contains a cycle", this.description.descriptionName());
+		}
+		return order;
+	}
+
+	private static String formatDuration(long nanos) {
+		Duration duration = Duration.ofNanos(nanos);
+		return String.format("%dh %02dm %02ds", duration.toHours(), duration.toMinutesPart(), duration.toSecondsPart());
+	}
+
+	public void print() {
+		Map<IPipeline.TupleVersionStep<T, C, D>, Set<IPipeline.TupleVersionStep<T, C, D>>> dependencies = this.executionGraph.stepVersionSubsetEdges();
+		Map<IPipeline.TupleVersionStep<T, C, D>, List<IPipeline.TupleVersionStep<T, C, D>>> dependents = new HashMap<>();
+		for (IPipeline.TupleVersionStep<T, C, D> task : this.orderedTasks) {
+			for (IPipeline.TupleVersionStep<T, C, D> dependency : dependencies.getOrDefault(task, Set.of())) {
+				dependents.computeIfAbsent(dependency, _ -> new ArrayList<>()).add(task);
+			}
+		}
+		List<IPipeline.TupleVersionStep<T, C, D>> topologicalOrder = this.topologicalOrder(dependencies, dependents);
+
+		// Tasks
+		if (!this.skippedVersions.isEmpty()) {
+			MiscHelper.println("Skipped versions (%s): %s", this.skippedVersions.size(), this.skippedVersions.stream().map(AbstractVersion::friendlyVersion).collect(Collectors.joining(", ")));
+		}
+		Map<T, Map<TaskOutcome, List<String>>> tasksByVersion = new LinkedHashMap<>();
+		for (IPipeline.TupleVersionStep<T, C, D> task : this.orderedTasks) {
+			tasksByVersion.computeIfAbsent(task.version(), _ -> new LinkedHashMap<>()).computeIfAbsent(this.getEstimate(task).outcome(), _ -> new ArrayList<>()).add(task.step().getName());
+		}
+		MiscHelper.println("Versions to process (%s):", tasksByVersion.size());
+		for (Map.Entry<T, Map<TaskOutcome, List<String>>> entry : tasksByVersion.entrySet()) {
+			MiscHelper.println("\t%s: %s", entry.getKey().friendlyVersion(), entry.getValue().entrySet().stream().map(outcome -> String.format("%s [%s]", outcome.getKey().description, String.join(", ", outcome.getValue()))).collect(Collectors.joining(", ")));
+		}
+
+		// Per step
+		MiscHelper.println("Steps:");
+		long totalDownloadBytes = 0L;
+		long totalNanos = 0L;
+		for (IStep<T, ?, C, D> step : this.description.steps()) {
+			Map<TaskOutcome, Integer> outcomes = new LinkedHashMap<>();
+			long stepDownloadBytes = 0L;
+			long stepNanos = 0L;
+			for (IPipeline.TupleVersionStep<T, C, D> task : this.orderedTasks) {
+				if (task.step() != step) {
+					continue;
+				}
+				TaskEstimate estimate = this.getEstimate(task);
+				outcomes.merge(estimate.outcome(), 1, Integer::sum);
+				stepDownloadBytes += estimate.downloadBytes();
+				stepNanos += estimate.nanos();
+			}
+			if (outcomes.isEmpty()) {
+				continue;
+			}
+			totalDownloadBytes += stepDownloadBytes;
+			totalNanos += stepNanos;
+			MiscHelper.println("\t%s: %s, estimated time: %s%s%s",
+				step.getName(),
+				outcomes.entrySet().stream().map(outcome -> String.format("%s %s", outcome.getValue(), outcome.getKey().description)).collect(Collectors.joining(", ")),
+				formatDuration(stepNanos),
+				stepDownloadBytes > 0 ? String.format(", estimated download: %s", FileTransferHelper.formatBytes(stepDownloadBytes)) : "",
+				this.stepsWithoutTimings.contains(step) ? " (no recorded timings)" : ""
+			);
+		}
+		MiscHelper.println("Estimated download: %s", FileTransferHelper.formatBytes(totalDownloadBytes));
+		MiscHelper.println("Estimated time of all steps: %s", formatDuration(totalNanos));
+
+		// Critical path, ignoring any limits on parallelism
+		Map<IPipeline.TupleVersionStep<T, C, D>, Long> finishNanos = new HashMap<>();
+		Map<IPipeline.TupleVersionStep<T, C, D>, IPipeline.TupleVersionStep<T, C, D>> criticalDependency = new HashMap<>();
+		IPipeline.TupleVersionStep<T, C, D> criticalTask = null;
+		for (IPipeline.TupleVersionStep<T, C, D> task : topologicalOrder) {
+			long startNanos = 0L;
+			for (IPipeline.TupleVersionStep<T, C, D> dependency : dependencies.getOrDefault(task, Set.of())) {
+				if (finishNanos.get(dependency) >= startNanos) {
+					startNanos = finishNanos.get(dependency);
+					criticalDependency.put(task, dependency);
+				}
+			}
+			finishNanos.put(task, startNanos + this.getEstimate(task).nanos());
+			if (criticalTask == null || finishNanos.get(task) > finishNanos.get(criticalTask)) {
+				criticalTask = task;
+			}
+		}
+		if (criticalTask != null) {
+			Map<IStep<T, ?, C, D>, Long> criticalNanosByStep = new LinkedHashMap<>();
+			int criticalTasks = 0;
+			for (IPipeline.TupleVersionStep<T, C, D> task = criticalTask; task != null; task = criticalDependency.get(task)) {
+				criticalNanosByStep.merge(task.step(), this.getEstimate(task).nanos(), Long::sum);
+				++criticalTasks;
+			}
+			MiscHelper.println("Critical path: %s (%s tasks, ending with '%s' for %s)", formatDuration(finishNanos.get(criticalTask)), criticalTasks, criticalTask.step().getName(), criticalTask.version().friendlyVersion());
+			criticalNanosByStep.entrySet().stream()
+				.filter(entry -> entry.getValue() > 0)
+				.sorted(Map.Entry.<IStep<T, ?, C, D>, Long>comparingByValue().reversed())
+				.forEach(entry -> MiscHelper.println("\t%s: %s", entry.getKey().getName(), formatDuration(entry.getValue())));
+		}
+
+		// Simulated schedule, with the same limits as the real execution
+		int maxParallelSteps = Library.CONF_GLOBAL.maxParallelPipelineSteps();
+		ResourceLimiter resourceLimiter = ResourceLimiter.fromConfiguration(Library.CONF_GLOBAL);
+		Map<IPipeline.TupleVersionStep<T, C, D>, Integer> remainingDependencies = new HashMap<>();
+		Map<IPipeline.TupleVersionStep<T, C, D>, Integer> topologicalIndices = new HashMap<>();
+		for (IPipeline.TupleVersionStep<T, C, D> task : topologicalOrder) {
+			topologicalIndices.put(task, topologicalIndices.size());
+			remainingDependencies.put(task, dependencies.getOrDefault(task, Set.of()).size());
+		}
+		TreeSet<IPipeline.TupleVersionStep<T, C, D>> readyTasks = new TreeSet<>(Comparator.comparing(topologicalIndices::get));
+		for (IPipeline.TupleVersionStep<T, C, D> task : topologicalOrder) {
+			if (remainingDependencies.get(task) == 0) {
+				readyTasks.add(task);
+			}
+		}
+		PriorityQueue<ScheduledTask<T, C, D>> runningTasks = new PriorityQueue<>(Comparator.<ScheduledTask<T, C, D>>comparingLong(ScheduledTask::endNanos).thenComparing(scheduled -> topologicalIndices.get(scheduled.task())));
+		Set<IStep<T, ?, C, D>> activeSequentialSteps = new HashSet<>();
+		long nowNanos = 0L;
+		long heapBytes = 0L;
+		long peakHeapBytes = 0L;
+		int peakRunningTasks = 0;
+		while (!readyTasks.isEmpty() || !runningTasks.isEmpty()) {
+			for (IPipeline.TupleVersionStep<T, C, D> task : List.copyOf(readyTasks)) {
+				if (maxParallelSteps > 0 && runningTasks.size() >= maxParallelSteps) {
+					break;
+				}
+				boolean sequential = task.step().getParallelismPolicy().isRestrictedToSequential();
+				if (sequential && activeSequentialSteps.contains(task.step())) {
+					continue;
+				}
+				if (!resourceLimiter.tryAcquire(task.step().getResourceDemands())) {
+					continue;
+				}
+				if (sequential) {
+					activeSequentialSteps.add(task.step());
+				}
+				readyTasks.remove(task);
+				runningTasks.add(new ScheduledTask<>(nowNanos + this.getEstimate(task).nanos(), task));
+				heapBytes += this.getEstimate(task).heapBytes();
+			}
+			peakHeapBytes = Math.max(peakHeapBytes, heapBytes);
+			peakRunningTasks = Math.max(peakRunningTasks, runningTasks.size());
+			ScheduledTask<T, C, D> finished = runningTasks.poll();
+			if (finished == null) {
+				break;
+			}
+			nowNanos = finished.endNanos();
+			heapBytes -= this.getEstimate(finished.task()).heapBytes();
+			activeSequentialSteps.remove(finished.task().step());
+			resourceLimiter.release(finished.task().step().getResourceDemands());
+			for (IPipeline.TupleVersionStep<T, C, D> dependent : dependents.getOrDefault(finished.task(), List.of())) {
+				if (remainingDependencies.merge(dependent, -1, Integer::sum) == 0) {
+					readyTasks.add(dependent);
+				}
+			}
+		}
+		MiscHelper.println("Simulated run (max. parallel steps: %s, permits network / CPU / disk I/O / heap (MiB) / subprocesses: %s / %s / %s / %s / %s, remapping threads: %s, decompiling threads: %s): %s, up to %s steps in parallel, peak heap: %s (max. heap: %s)",
+			maxParallelSteps > 0 ? maxParallelSteps : "unlimited",
+			Library.CONF_GLOBAL.networkPermits(),
+			Library.CONF_GLOBAL.cpuPermits(),
+			Library.CONF_GLOBAL.diskIoPermits(),
+			Library.CONF_GLOBAL.heapPermitsMiB(),
+			Library.CONF_GLOBAL.subprocessPermits(),
+			Library.CONF_GLOBAL.remappingThreads(),
+			Library.CONF_GLOBAL.decompilingThreads(),
+			formatDuration(nowNanos),
+			peakRunningTasks,
+			FileTransferHelper.formatBytes(peakHeapBytes),
+			FileTransferHelper.formatBytes(Runtime.getRuntime().maxMemory())
+		);
+		if (!this.stepsWithoutTimings.isEmpty()) {
+			MiscHelper.println("No timings have been recorded for: %s. Their duration and heap usage are not part of the estimates.", this.stepsWithoutTimings.stream().map(IStep::getName).collect(Collectors.joining(", ")));
+		}
+	}
+}
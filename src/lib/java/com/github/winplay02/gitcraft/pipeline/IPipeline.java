@@ -4,17 +4,21 @@ import com.github.winplay02.gitcraft.Library;
 import com.github.winplay02.gitcraft.graph.AbstractVersion;
 import com.github.winplay02.gitcraft.graph.AbstractVersionGraph;
 import com.github.winplay02.gitcraft.pipeline.key.StorageKey;
+import com.github.winplay02.gitcraft.util.DownloadPriority;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.util.RepoWrapper;
 import com.github.winplay02.gitcraft.util.Tuple2;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class IPipeline<T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> {
 
@@ -23,6 +27,10 @@ public final class IPipeline<T extends AbstractVersion<T>, C extends IStepContex
 	private final Map<Tuple2<StorageKey, T>, Tuple2<T, D>> overriddenPaths = new ConcurrentHashMap<>();
 	private final Map<T, StepResults<T, C, D>> versionedResults = new ConcurrentHashMap<>();
 	private Semaphore threadLimiter = null;
+	private ResourceLimiter resourceLimiter = null;
+	private PipelineJournal journal = null;
+	private IntermediateEviction<T, C, D> intermediateEviction = null;
+	private final AtomicInteger runningSteps = new AtomicInteger();
 
 	public IPipeline(PipelineDescription<T, C, D> pipelineDescription, PipelineFilesystemStorage<T, C, D> pipelineFilesystemStorage) {
 		this.pipelineDescription = pipelineDescription;
@@ -55,10 +63,49 @@ public final class IPipeline<T extends AbstractVersion<T>, C extends IStepContex
 		return threadLimiter;
 	}
 
+	public ResourceLimiter resourceLimiter() {
+		return resourceLimiter;
+	}
+
+	public PipelineJournal journal() {
+		return journal;
+	}
+
+	public IntermediateEviction<T, C, D> intermediateEviction() {
+		return intermediateEviction;
+	}
+
+	/**
+	 * Restores results of a task, that was completed in a previous run.
+	 */
+	protected void restoreResults(T version, Set<StorageKey> keys) {
+		this.versionedResults.computeIfAbsent(version, _ -> StepResults.ofEmpty()).result().addAll(keys);
+	}
+
+	/**
+	 * Continues from the results of another pipeline, that has already run on the same storage (e.g. steps shared by multiple pipelines).
+	 * Must be called before running this pipeline.
+	 *
+	 * @param predecessor Pipeline that has already run
+	 */
+	public void inheritResults(IPipeline<T, C, D> predecessor) {
+		predecessor.versionedResults.forEach((version, results) -> this.restoreResults(version, results.result()));
+		this.overriddenPaths.putAll(predecessor.overriddenPaths);
+	}
+
 	protected record TupleVersionStep<T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig>(IStep<T, ?, C, D> step, T version) {
+		/**
+		 * Downloads of earlier versions come first, as later versions wait for them (e.g. committing happens in order)
+		 *
+		 * @param versionGraph Version graph
+		 * @return priority of the downloads (and network permits) of this task
+		 */
+		DownloadPriority downloadPriority(AbstractVersionGraph<T> versionGraph) {
+			return new DownloadPriority(this.step().getDownloadTier(), Math.max(versionGraph.getVertexIndex(this.version()), 0));
+		}
 	}
 
-	protected void runSingleVersionSingleStep(TupleVersionStep<T, C, D> versionStep, C context, D config) {
+	protected StepOutput<T, C, D> runSingleVersionSingleStep(TupleVersionStep<T, C, D> versionStep, C context, D config) {
 		StepResults<T, C, D> results = this.versionedResults.computeIfAbsent(versionStep.version(), version -> StepResults.ofEmpty());
 
 		MiscHelper.println("Performing step '%s' for %s (%s)...", versionStep.step().getName(), context, config);
@@ -67,8 +114,10 @@ public final class IPipeline<T extends AbstractVersion<T>, C extends IStepContex
 		Exception exception = null;
 
 		long timeStart = System.nanoTime();
+		long heapShare = 0L;
 
-		try {
+		this.runningSteps.incrementAndGet();
+		try (DownloadPriority.Scope _ = DownloadPriority.enter(versionStep.downloadPriority(context.versionGraph()))) {
 			IStepWorker<T, ?, C, D> worker = versionStep.step().createWorker(config);
 			if (worker.shouldExecute(this, context)) {
 				status = worker.runGeneric(
@@ -86,6 +135,9 @@ public final class IPipeline<T extends AbstractVersion<T>, C extends IStepContex
 		} catch (Exception e) {
 			status = StepOutput.ofEmptyResultSet(StepStatus.FAILED);
 			exception = e;
+		} finally {
+			// Rough attribution of the used heap to the steps running at this moment
+			heapShare = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / Math.max(this.runningSteps.getAndDecrement(), 1);
 		}
 
 		long timeEnd = System.nanoTime();
@@ -94,8 +146,10 @@ public final class IPipeline<T extends AbstractVersion<T>, C extends IStepContex
 		String timeInfo = String.format("elapsed: %dm %02ds", deltaDuration.toMinutes(), deltaDuration.toSecondsPart());
 
 		switch (status.status()) {
-			case SUCCESS ->
+			case SUCCESS -> {
+				StepTimingHistory.record(versionStep.step().getName(), delta, heapShare);
 				MiscHelper.println("\tStep '%s' for %s (%s) \u001B[32msucceeded\u001B[0m (%s)", versionStep.step().getName(), context, config, timeInfo);
+			}
 			case UP_TO_DATE ->
 				MiscHelper.println("\tStep '%s' for %s (%s) was \u001B[32malready up-to-date\u001B[0m", versionStep.step().getName(), context, config);
 			case NOT_RUN -> {
@@ -115,16 +169,30 @@ public final class IPipeline<T extends AbstractVersion<T>, C extends IStepContex
 				MiscHelper.panicBecause(exception, message);
 			}
 		}
+		return status;
 	}
 
 	public void runFully(RepoWrapper repository, AbstractVersionGraph<T> versionGraph) {
-		InFlightExecutionPlan<T, C, D> executionPlan = InFlightExecutionPlan.create(this.getDescription(), versionGraph);
+		InFlightExecutionPlan<T, C, D> executionPlan;
 		try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Pipeline-Executor-" + this.getDescription().descriptionName()).factory())) {
+			executionPlan = InFlightExecutionPlan.create(this.getDescription(), versionGraph, repository, executor);
 			if (Library.CONF_GLOBAL.maxParallelPipelineSteps() > 0) {
 				this.threadLimiter = new Semaphore(Library.CONF_GLOBAL.maxParallelPipelineSteps());
 			}
+			this.resourceLimiter = ResourceLimiter.fromConfiguration(Library.CONF_GLOBAL);
+			try {
+				this.journal = PipelineJournal.load(this.getDescription().descriptionName());
+			} catch (IOException e) {
+				MiscHelper.println("Pipeline journal could not be loaded, completed steps cannot be resumed: %s", e);
+			}
+			if (Library.CONF_GLOBAL.intermediatesDiskBudgetMiB() > 0 && !this.getFilesystemStorage().evictableKeys().isEmpty()) {
+				this.intermediateEviction = new IntermediateEviction<>(this, Library.CONF_GLOBAL.intermediatesDiskBudgetMiB() * 1024L * 1024L);
+			}
 			executionPlan.run(executor, this, repository, versionGraph);
 		}
+		if (this.intermediateEviction != null) {
+			this.intermediateEviction.printSummary();
+		}
 		if (!executionPlan.failedTasks().isEmpty()) {
 			executionPlan.failedTasks().forEach((key, value) -> {
 				MiscHelper.println("Step %s for version %s failed: %s", key.step().getName(), key.version().friendlyVersion(), value);
@@ -134,9 +202,37 @@ public final class IPipeline<T extends AbstractVersion<T>, C extends IStepContex
 		}
 	}
 
-	public static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> void run(PipelineDescription<T, C, D> description, PipelineFilesystemStorage<T, C, D> storage, RepoWrapper repository, AbstractVersionGraph<T> versionGraph) throws Exception {
+	public void explainFully(RepoWrapper repository, AbstractVersionGraph<T> versionGraph) throws Exception {
+		try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Pipeline-Explainer-" + this.getDescription().descriptionName()).factory())) {
+			InFlightExecutionPlan<T, C, D> executionPlan = InFlightExecutionPlan.create(this.getDescription(), versionGraph, repository, executor);
+			ExecutionPlanExplanation.create(this, executionPlan, versionGraph).print();
+		}
+	}
+
+	/**
+	 * Explains what running the pipeline would do, without running any step.
+	 */
+	public static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> void explain(PipelineDescription<T, C, D> description, PipelineFilesystemStorage<T, C, D> storage, RepoWrapper repository, AbstractVersionGraph<T> versionGraph) throws Exception {
+		MiscHelper.println("========== Explaining Pipeline '%s' ==========", description.descriptionName());
+		IPipeline<T, C, D> pipeline = new IPipeline<>(description, storage);
+		pipeline.explainFully(repository, versionGraph);
+	}
+
+	public static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> IPipeline<T, C, D> run(PipelineDescription<T, C, D> description, PipelineFilesystemStorage<T, C, D> storage, RepoWrapper repository, AbstractVersionGraph<T> versionGraph) throws Exception {
+		return run(description, storage, repository, versionGraph, null);
+	}
+
+	/**
+	 * @param predecessor Pipeline, whose results are inherited (see {@link #inheritResults(IPipeline)}), may be null
+	 * @return the pipeline, after it has run
+	 */
+	public static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> IPipeline<T, C, D> run(PipelineDescription<T, C, D> description, PipelineFilesystemStorage<T, C, D> storage, RepoWrapper repository, AbstractVersionGraph<T> versionGraph, IPipeline<T, C, D> predecessor) throws Exception {
 		MiscHelper.println("========== Running Pipeline '%s' ==========", description.descriptionName());
 		IPipeline<T, C, D> pipeline = new IPipeline<>(description, storage);
+		if (predecessor != null) {
+			pipeline.inheritResults(predecessor);
+		}
 		pipeline.runFully(repository, versionGraph);
+		return pipeline;
 	}
 }
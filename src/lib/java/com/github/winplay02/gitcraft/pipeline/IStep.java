@@ -1,6 +1,9 @@
 package com.github.winplay02.gitcraft.pipeline;
 
 import com.github.winplay02.gitcraft.graph.AbstractVersion;
+import com.github.winplay02.gitcraft.util.DownloadPriority;
+
+import java.util.Map;
 
 public interface IStep<T extends AbstractVersion<T>, S extends StepInput, C extends IStepContext<C, T>, D extends IStepConfig> {
 
@@ -9,4 +12,32 @@ public interface IStep<T extends AbstractVersion<T>, S extends StepInput, C exte
 	ParallelismPolicy getParallelismPolicy();
 
 	IStepWorker<T, S, C, D> createWorker(D config);
+
+	/**
+	 * @return whether completing this step may change the result of {@link PipelineDescription#skipVersion()} for the same version
+	 */
+	default boolean invalidatesSkipDecision() {
+		return false;
+	}
+
+	/**
+	 * @return whether completed tasks of this step may be restored from the {@link PipelineJournal} instead of running them again; only true for steps, whose whole effect is captured by their outputs
+	 */
+	default boolean isResumable() {
+		return false;
+	}
+
+	/**
+	 * @return resources (weighted), that are needed while this step is running; steps without demands are only limited by the max. amount of parallel steps
+	 */
+	default Map<ResourceClass, Integer> getResourceDemands() {
+		return Map.of();
+	}
+
+	/**
+	 * @return tier of downloads requested by this step; within a tier, downloads of earlier versions are preferred
+	 */
+	default DownloadPriority.Tier getDownloadTier() {
+		return DownloadPriority.Tier.DEFAULT;
+	}
 }
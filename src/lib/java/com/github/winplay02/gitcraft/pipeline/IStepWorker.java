@@ -2,6 +2,10 @@ package com.github.winplay02.gitcraft.pipeline;
 
 import com.github.winplay02.gitcraft.graph.AbstractVersion;
 
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
 public interface IStepWorker<T extends AbstractVersion<T>, S extends StepInput, C extends IStepContext<C, T>, D extends IStepConfig> {
 	D config();
 
@@ -16,4 +20,27 @@ public interface IStepWorker<T extends AbstractVersion<T>, S extends StepInput,
 	default boolean shouldExecute(IPipeline<T, C, D> pipeline, C context) {
 		return true;
 	}
+
+	/**
+	 * Estimates the work of this step without running it. This must not fetch anything or modify any files.
+	 *
+	 * @param pipeline Pipeline
+	 * @param context  Context of the version
+	 * @return estimate, {@link StepEstimate#UNKNOWN} if the step cannot tell in advance
+	 */
+	default StepEstimate estimate(IPipeline<T, C, D> pipeline, C context) throws Exception {
+		return StepEstimate.UNKNOWN;
+	}
+
+	/**
+	 * Files, that this step placed into stores shared with other versions (e.g. the libraries of a version in the library directory).
+	 * Shared stores are modified by other versions as well, so only these files are validated when resuming this step from the {@link PipelineJournal}.
+	 *
+	 * @param pipeline Pipeline
+	 * @param context  Context of the version
+	 * @return files in shared stores, needed by the version
+	 */
+	default Collection<Path> getSharedStoreFiles(IPipeline<T, C, D> pipeline, C context) throws Exception {
+		return List.of();
+	}
 }
@@ -2,14 +2,23 @@ package com.github.winplay02.gitcraft.pipeline;
 
 import com.github.winplay02.gitcraft.graph.AbstractVersion;
 import com.github.winplay02.gitcraft.graph.AbstractVersionGraph;
+import com.github.winplay02.gitcraft.pipeline.key.StorageKey;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.util.RepoWrapper;
 
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 public record InFlightExecutionPlan<T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig>(PipelineExecutionGraph<T, C, D> executionGraph,
 																			Set<IPipeline.TupleVersionStep<T, C, D>> completedSubset,
@@ -18,11 +27,126 @@ public record InFlightExecutionPlan<T extends AbstractVersion<T>, C extends ISte
 																			Map<IPipeline.TupleVersionStep<T, C, D>, Exception> failedTasks,
 																			Map<T, C> versionedContexts,
 																			Map<T, D> versionedConfigs,
+																			Map<T, Boolean> skipDecisions,
 																			Object executionLock,
 																			Object conditionalVar) {
 
-	public static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> InFlightExecutionPlan<T, C, D> create(PipelineDescription<T, C, D> description, AbstractVersionGraph<T> versionGraph) {
-		return new InFlightExecutionPlan<>(PipelineExecutionGraph.populate(description, versionGraph), ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new Object(), new Object());
+	/**
+	 * Creates an execution plan. Whether a version is skipped is decided once per version, fully skipped versions are not part of the execution graph at all.
+	 */
+	public static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> InFlightExecutionPlan<T, C, D> create(PipelineDescription<T, C, D> description, AbstractVersionGraph<T> versionGraph, RepoWrapper repository, ExecutorService executor) {
+		Map<T, C> versionedContexts = new ConcurrentHashMap<>();
+		Map<T, Boolean> skipDecisions = new ConcurrentHashMap<>();
+		for (T version : versionGraph) {
+			C context = versionedContexts.computeIfAbsent(version, ctxVersion -> description.contextCreator().getContext(ctxVersion, repository, versionGraph, executor));
+			skipDecisions.put(version, description.skipVersion().apply(versionGraph, context));
+		}
+		Set<T> requiredVersions = skipDecisions.entrySet().stream().filter(entry -> !entry.getValue()).map(Map.Entry::getKey).collect(Collectors.toSet());
+		if (requiredVersions.size() < skipDecisions.size()) {
+			MiscHelper.println("Skipping %s out of %s versions", skipDecisions.size() - requiredVersions.size(), skipDecisions.size());
+		}
+		PipelineExecutionGraph<T, C, D> executionGraph = PipelineExecutionGraph.populate(description, versionGraph, requiredVersions);
+		return new InFlightExecutionPlan<>(executionGraph, ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet(), new ConcurrentHashMap<>(), versionedContexts, new ConcurrentHashMap<>(), skipDecisions, new Object(), new Object());
+	}
+
+	private boolean shouldSkip(IPipeline<T, C, D> pipeline, AbstractVersionGraph<T> versionGraph, T version, C context) {
+		// Decisions are only recomputed after being invalidated by a step of the same version
+		return this.skipDecisions().computeIfAbsent(version, _ -> pipeline.getDescription().skipVersion().apply(versionGraph, context));
+	}
+
+	private void journalTask(IPipeline<T, C, D> pipeline, IPipeline.TupleVersionStep<T, C, D> task, C context, D config, StepOutput<T, C, D> output) {
+		List<Path> outputs = new ArrayList<>(output.results().result().size());
+		for (StorageKey key : output.results().result()) {
+			Path path = pipeline.getStoragePath(key, context, config);
+			if (path == null) {
+				// Outputs, which cannot be located, cannot be validated when resuming
+				return;
+			}
+			outputs.add(path);
+		}
+		try {
+			Collection<Path> sharedFiles = task.step().createWorker(config).getSharedStoreFiles(pipeline, context);
+			pipeline.journal().append(task.step().getName(), task.version().friendlyVersion(), config.toString(), outputs, sharedFiles);
+		} catch (Exception e) {
+			MiscHelper.println("Step '%s' for %s (%s) could not be journaled: %s", task.step().getName(), context, config, e);
+		}
+	}
+
+	/**
+	 * Marks tasks as completed, which were completed by a previous run according to the journal.
+	 * A task is only restored, if its outputs (and files it placed into shared stores) are unchanged, all of its dependencies were restored as well and none of them was completed after it.
+	 * Results of restored tasks are made available to the remaining tasks, by mapping the journaled outputs back to storage keys.
+	 */
+	private void restoreFromJournal(IPipeline<T, C, D> pipeline, RepoWrapper repository, AbstractVersionGraph<T> versionGraph, ExecutorService executor) {
+		long timeStart = System.nanoTime();
+		Map<IPipeline.TupleVersionStep<T, C, D>, Integer> remainingDependencies = new HashMap<>();
+		Map<IPipeline.TupleVersionStep<T, C, D>, List<IPipeline.TupleVersionStep<T, C, D>>> dependents = new HashMap<>();
+		ArrayDeque<IPipeline.TupleVersionStep<T, C, D>> candidates = new ArrayDeque<>();
+		for (IPipeline.TupleVersionStep<T, C, D> task : this.executionGraph().stepVersionSubsetVertices()) {
+			Set<IPipeline.TupleVersionStep<T, C, D>> dependencies = this.executionGraph().stepVersionSubsetEdges().getOrDefault(task, Set.of());
+			remainingDependencies.put(task, dependencies.size());
+			for (IPipeline.TupleVersionStep<T, C, D> dependency : dependencies) {
+				dependents.computeIfAbsent(dependency, _ -> new ArrayList<>()).add(task);
+			}
+			if (dependencies.isEmpty()) {
+				candidates.add(task);
+			}
+		}
+		Map<IPipeline.TupleVersionStep<T, C, D>, Long> restoredSequences = new HashMap<>();
+		Map<T, Map<String, Set<StorageKey>>> keysByPath = new HashMap<>();
+		while (!candidates.isEmpty()) {
+			IPipeline.TupleVersionStep<T, C, D> task = candidates.poll();
+			if (!task.step().isResumable()) {
+				continue;
+			}
+			C context = this.versionedContexts().computeIfAbsent(task.version(), ctxVersion -> pipeline.getDescription().contextCreator().getContext(ctxVersion, repository, versionGraph, executor));
+			D config = this.versionedConfigs().computeIfAbsent(task.version(), pipeline.getDescription().configCreator());
+			Optional<PipelineJournal.Entry> entry = pipeline.journal().getValidEntry(task.step().getName(), task.version().friendlyVersion(), config.toString());
+			if (entry.isEmpty() || this.executionGraph().stepVersionSubsetEdges().getOrDefault(task, Set.of()).stream().anyMatch(dependency -> restoredSequences.get(dependency) > entry.orElseThrow().sequence())) {
+				continue;
+			}
+			Map<String, Set<StorageKey>> versionKeysByPath = keysByPath.computeIfAbsent(task.version(), _ -> collectKeysByPath(pipeline, context, config));
+			Set<StorageKey> keys = new HashSet<>();
+			for (PipelineJournal.Output output : entry.orElseThrow().outputs()) {
+				Set<StorageKey> outputKeys = versionKeysByPath.get(output.path());
+				if (outputKeys == null) {
+					keys = null;
+					break;
+				}
+				keys.addAll(outputKeys);
+			}
+			if (keys == null) {
+				continue;
+			}
+			pipeline.restoreResults(task.version(), keys);
+			this.completedSubset().add(task);
+			restoredSequences.put(task, entry.orElseThrow().sequence());
+			for (IPipeline.TupleVersionStep<T, C, D> dependent : dependents.getOrDefault(task, List.of())) {
+				if (remainingDependencies.merge(dependent, -1, Integer::sum) == 0) {
+					candidates.add(dependent);
+				}
+			}
+		}
+		if (!restoredSequences.isEmpty()) {
+			MiscHelper.println("Resumed %s out of %s tasks from the pipeline journal (%.2fs)", restoredSequences.size(), this.executionGraph().stepVersionSubsetVertices().size(), (System.nanoTime() - timeStart) / 1e9d);
+		}
+	}
+
+	private static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> Map<String, Set<StorageKey>> collectKeysByPath(IPipeline<T, C, D> pipeline, C context, D config) {
+		Map<String, Set<StorageKey>> keysByPath = new HashMap<>();
+		for (StorageKey key : pipeline.getFilesystemStorage().paths().keySet()) {
+			Path path;
+			try {
+				path = pipeline.getStoragePath(key, context, config);
+			} catch (RuntimeException e) {
+				// Not every key can be located for every version
+				continue;
+			}
+			if (path != null) {
+				keysByPath.computeIfAbsent(PipelineJournal.normalize(path), _ -> new HashSet<>()).add(key);
+			}
+		}
+		return keysByPath;
 	}
 
 	private void runSingleTask(ExecutorService executor, IPipeline.TupleVersionStep<T, C, D> task, IPipeline<T, C, D> pipeline, RepoWrapper repository, AbstractVersionGraph<T> versionGraph) {
@@ -43,6 +167,11 @@ public record InFlightExecutionPlan<T extends AbstractVersion<T>, C extends ISte
 				executingSubset.add(task);
 			}
 
+			// Resources are acquired before the thread permit, so that a step waiting for resources does not block a step, that could run right away
+			Map<ResourceClass, Integer> resourceDemands = task.step().getResourceDemands();
+			if (pipeline.resourceLimiter() != null) {
+				pipeline.resourceLimiter().acquireUninterruptibly(resourceDemands, task.downloadPriority(versionGraph));
+			}
 			if (pipeline.threadLimiter() != null) {
 				pipeline.threadLimiter().acquireUninterruptibly();
 			}
@@ -52,11 +181,22 @@ public record InFlightExecutionPlan<T extends AbstractVersion<T>, C extends ISte
 			Exception storedException = null;
 
 			try {
-				if (!pipeline.getDescription().skipVersion().apply(versionGraph, context)) {
-					pipeline.runSingleVersionSingleStep(task, context, config);
+				Set<StorageKey> outputs = Set.of();
+				if (!this.shouldSkip(pipeline, versionGraph, task.version(), context)) {
+					StepOutput<T, C, D> output = pipeline.runSingleVersionSingleStep(task, context, config);
+					if (pipeline.journal() != null && task.step().isResumable()) {
+						this.journalTask(pipeline, task, context, config, output);
+					}
+					outputs = output.results().result();
 				} else {
 					MiscHelper.println("Skipping step '%s' for %s (%s)...", task.step().getName(), context, config);
 				}
+				if (pipeline.intermediateEviction() != null) {
+					pipeline.intermediateEviction().taskCompleted(this.executionGraph(), task, outputs, this.versionedContexts(), this.versionedConfigs());
+				}
+				if (task.step().invalidatesSkipDecision()) {
+					this.skipDecisions().remove(task.version());
+				}
 				executingSubset.remove(task);
 				completedSubset.add(task);
 				activeSteps.remove(task.step());
@@ -68,6 +208,9 @@ public record InFlightExecutionPlan<T extends AbstractVersion<T>, C extends ISte
 			if (pipeline.threadLimiter() != null) {
 				pipeline.threadLimiter().release();
 			}
+			if (pipeline.resourceLimiter() != null) {
+				pipeline.resourceLimiter().release(resourceDemands);
+			}
 
 			synchronized (executionLock) {
 				if (storedException == null) {
@@ -99,6 +242,16 @@ public record InFlightExecutionPlan<T extends AbstractVersion<T>, C extends ISte
 	}
 
 	public void run(ExecutorService executor, IPipeline<T, C, D> pipeline, RepoWrapper repository, AbstractVersionGraph<T> versionGraph) {
+		if (pipeline.journal() != null && !this.executionGraph().stepVersionSubsetVertices().isEmpty()) {
+			this.restoreFromJournal(pipeline, repository, versionGraph, executor);
+		}
+		if (pipeline.intermediateEviction() != null) {
+			// Also applies the budget to intermediates left over from previous runs, even if nothing is left to execute
+			pipeline.intermediateEviction().initialize(this.executionGraph(), this.completedSubset(), this.versionedContexts(), this.versionedConfigs());
+		}
+		if (this.completedSubset().size() == this.executionGraph().stepVersionSubsetVertices().size()) {
+			return;
+		}
 		scanForTasks(executor, pipeline, repository, versionGraph);
 		await();
 	}
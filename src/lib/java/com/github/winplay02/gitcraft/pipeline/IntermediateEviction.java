@@ -0,0 +1,183 @@
+package com.github.winplay02.gitcraft.pipeline;
+
+import com.github.winplay02.gitcraft.graph.AbstractVersion;
+import com.github.winplay02.gitcraft.pipeline.key.StorageKey;
+import com.github.winplay02.gitcraft.util.FileTransferHelper;
+import com.github.winplay02.gitcraft.util.MiscHelper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Keeps intermediate artifacts of a running pipeline within a disk budget.
+ * <p>
+ * Every version is referenced by all incomplete tasks of that version, and by all incomplete tasks depending on a task of that version.
+ * Once no references are left (e.g. the version has been committed), its intermediates (see {@link PipelineFilesystemStorage#evictableKeys()}) become candidates for eviction.
+ * While the budget is exceeded, candidates are evicted in Greedy-Dual-Size order: Each candidate is prioritized by the cost of recomputing it per byte
+ * (taken from the {@link StepTimingHistory} of the step that produced it), plus the priority of the last evicted candidate.
+ * Cheap and large intermediates are evicted first, while the inflating base priority ages out candidates released long ago (like LRU).
+ * <p>
+ * The budget is a soft limit: intermediates still referenced are never evicted, even if they alone exceed the budget.
+ */
+public final class IntermediateEviction<T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> {
+	// Used for intermediates, which were produced by a previous run, or by steps without recorded timings
+	private static final long UNKNOWN_RECOMPUTATION_NANOS = 1_000_000_000L;
+
+	private record Candidate(Path path, long bytes, double priority) {
+	}
+
+	private final IPipeline<T, C, D> pipeline;
+	private final long budgetBytes;
+	private final Map<T, Integer> references = new HashMap<>();
+	private final Map<Path, Long> trackedBytes = new HashMap<>();
+	private final Map<StorageKey, String> producingSteps = new HashMap<>();
+	private final PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(Candidate::priority));
+	private long totalBytes = 0L;
+	private double inflation = 0.0d;
+	private long evictedFiles = 0L;
+	private long evictedBytes = 0L;
+
+	public IntermediateEviction(IPipeline<T, C, D> pipeline, long budgetBytes) {
+		this.pipeline = pipeline;
+		this.budgetBytes = budgetBytes;
+	}
+
+	private Set<T> referencedVersions(PipelineExecutionGraph<T, C, D> executionGraph, IPipeline.TupleVersionStep<T, C, D> task) {
+		Set<T> versions = new HashSet<>();
+		versions.add(task.version());
+		for (IPipeline.TupleVersionStep<T, C, D> dependency : executionGraph.stepVersionSubsetEdges().getOrDefault(task, Set.of())) {
+			versions.add(dependency.version());
+		}
+		return versions;
+	}
+
+	/**
+	 * Counts references of all tasks, which are not yet completed, and seeds the accounting with intermediates left over from previous runs.
+	 * Intermediates of versions, that are no longer referenced (e.g. versions committed by a previous run), immediately become candidates for eviction.
+	 * Intermediates of versions outside the version graph cannot be located and are not accounted for.
+	 *
+	 * @param executionGraph Execution graph
+	 * @param completedTasks Tasks that are already completed (e.g. restored from the journal)
+	 * @param contexts       Contexts of all versions of the version graph
+	 * @param configs        Configurations of all versions, missing configurations are created
+	 */
+	public synchronized void initialize(PipelineExecutionGraph<T, C, D> executionGraph, Set<IPipeline.TupleVersionStep<T, C, D>> completedTasks, Map<T, C> contexts, Map<T, D> configs) {
+		for (IPipeline.TupleVersionStep<T, C, D> task : executionGraph.stepVersionSubsetVertices()) {
+			if (!completedTasks.contains(task)) {
+				for (T version : this.referencedVersions(executionGraph, task)) {
+					this.references.merge(version, 1, Integer::sum);
+				}
+			}
+		}
+		for (Map.Entry<T, C> entry : contexts.entrySet()) {
+			D config = configs.computeIfAbsent(entry.getKey(), this.pipeline.getDescription().configCreator());
+			if (this.references.getOrDefault(entry.getKey(), 0) > 0) {
+				for (StorageKey key : this.pipeline.getFilesystemStorage().evictableKeys()) {
+					this.track(this.locate(key, entry.getValue(), config));
+				}
+			} else {
+				this.release(entry.getValue(), config);
+			}
+		}
+		this.evict();
+	}
+
+	/**
+	 * Tracks the intermediates produced by a task and releases the versions referenced by it. Evicts released intermediates, if the budget is exceeded.
+	 *
+	 * @param executionGraph Execution graph
+	 * @param task           Completed task
+	 * @param outputs        Outputs of the task
+	 * @param contexts       Contexts of all versions
+	 * @param configs        Configurations of all versions
+	 */
+	public synchronized void taskCompleted(PipelineExecutionGraph<T, C, D> executionGraph, IPipeline.TupleVersionStep<T, C, D> task, Set<StorageKey> outputs, Map<T, C> contexts, Map<T, D> configs) {
+		C context = contexts.get(task.version());
+		D config = configs.get(task.version());
+		for (StorageKey key : outputs) {
+			if (this.pipeline.getFilesystemStorage().evictableKeys().contains(key)) {
+				this.producingSteps.put(key, task.step().getName());
+				this.track(this.pipeline.getStoragePath(key, context, config));
+			}
+		}
+		for (T version : this.referencedVersions(executionGraph, task)) {
+			if (this.references.merge(version, -1, Integer::sum) == 0) {
+				this.release(contexts.get(version), configs.get(version));
+			}
+		}
+		this.evict();
+	}
+
+	private long track(Path path) {
+		if (path == null) {
+			return -1L;
+		}
+		Long bytes = this.trackedBytes.get(path);
+		if (bytes == null) {
+			try {
+				if (!Files.isRegularFile(path)) {
+					return -1L;
+				}
+				bytes = Files.size(path);
+			} catch (IOException e) {
+				return -1L;
+			}
+			this.trackedBytes.put(path, bytes);
+			this.totalBytes += bytes;
+		}
+		return bytes;
+	}
+
+	private Path locate(StorageKey key, C context, D config) {
+		try {
+			return this.pipeline.getStoragePath(key, context, config);
+		} catch (RuntimeException e) {
+			// Not every key can be located for every version
+			return null;
+		}
+	}
+
+	private void release(C context, D config) {
+		if (context == null || config == null) {
+			return;
+		}
+		for (StorageKey key : this.pipeline.getFilesystemStorage().evictableKeys()) {
+			Path path = this.locate(key, context, config);
+			long bytes = this.track(path);
+			if (bytes < 0L) {
+				continue;
+			}
+			StepTimingHistory.StepTiming timing = this.producingSteps.containsKey(key) ? StepTimingHistory.get(this.producingSteps.get(key)) : null;
+			long recomputationNanos = timing != null && timing.averageNanos() > 0 ? timing.averageNanos() : UNKNOWN_RECOMPUTATION_NANOS;
+			this.candidates.add(new Candidate(path, bytes, this.inflation + (double) recomputationNanos / Math.max(bytes, 1L)));
+		}
+	}
+
+	private void evict() {
+		while (this.totalBytes > this.budgetBytes && !this.candidates.isEmpty()) {
+			Candidate candidate = this.candidates.poll();
+			this.inflation = candidate.priority();
+			MiscHelper.deleteFile(candidate.path());
+			this.trackedBytes.remove(candidate.path());
+			this.totalBytes -= candidate.bytes();
+			this.evictedFiles += 1;
+			this.evictedBytes += candidate.bytes();
+		}
+	}
+
+	/**
+	 * Prints a summary of evicted intermediates.
+	 */
+	public synchronized void printSummary() {
+		if (this.evictedFiles > 0) {
+			MiscHelper.println("Evicted %s intermediate artifacts (%s) to stay within the disk budget of %s, %s are still kept", this.evictedFiles, FileTransferHelper.formatBytes(this.evictedBytes), FileTransferHelper.formatBytes(this.budgetBytes), FileTransferHelper.formatBytes(this.totalBytes));
+		}
+	}
+}
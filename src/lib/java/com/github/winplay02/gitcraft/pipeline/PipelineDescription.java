@@ -5,6 +5,7 @@ import com.github.winplay02.gitcraft.graph.AbstractVersionGraph;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.util.RepoWrapper;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +46,38 @@ public record PipelineDescription<T extends AbstractVersion<T>, C extends IStepC
 		this(descriptionName, steps, stepInputMap, stepDependencies, ($, $$) -> false, contextCreator, configCreator);
 	}
 
+	/**
+	 * Creates a description containing only some of the steps of this description.
+	 * Dependencies on all other steps are dropped, so their results have to be provided otherwise (see {@link IPipeline#inheritResults(IPipeline)}).
+	 *
+	 * @param descriptionName Name of the new description
+	 * @param retainedSteps   Steps to retain, the order of this description is kept
+	 * @param skipVersion     Whether a version is skipped
+	 * @param configCreator   Creates the configuration of a version
+	 * @return restricted description
+	 */
+	public PipelineDescription<T, C, D> restrictTo(String descriptionName, Set<IStep<T, ?, C, D>> retainedSteps, BiFunction<AbstractVersionGraph<T>, C, Boolean> skipVersion, Function<T, D> configCreator) {
+		Map<IStep<T, ?, C, D>, BiFunction<PipelineFilesystemStorage<T, C, D>, StepResults<T, C, D>, StepInput>> retainedInputs = new HashMap<>();
+		Map<IStep<T, ?, C, D>, StepDependencies<T, C, D>> retainedDependencies = new HashMap<>();
+		for (IStep<T, ?, C, D> step : retainedSteps) {
+			if (this.stepInputMap().containsKey(step)) {
+				retainedInputs.put(step, this.stepInputMap().get(step));
+			}
+			if (this.stepDependencies().containsKey(step)) {
+				retainedDependencies.put(step, this.stepDependencies().get(step).retainSteps(retainedSteps));
+			}
+		}
+		return new PipelineDescription<>(
+			descriptionName,
+			this.steps().stream().filter(retainedSteps::contains).toList(),
+			retainedInputs,
+			retainedDependencies,
+			skipVersion,
+			this.contextCreator(),
+			configCreator
+		);
+	}
+
 	public Set<IStep<T, ?, C, D>> getIntraVersionDependencies(IStep<T, ?, C, D> step) {
 		return this.stepDependencies.getOrDefault(step, StepDependencies.empty()).dependencyTypes().keySet();
 	}
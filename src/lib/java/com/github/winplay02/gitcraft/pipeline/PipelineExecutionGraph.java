@@ -4,9 +4,11 @@ import com.github.winplay02.gitcraft.graph.AbstractVersion;
 import com.github.winplay02.gitcraft.graph.AbstractVersionGraph;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -14,35 +16,81 @@ import java.util.stream.Collectors;
 public record PipelineExecutionGraph<T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig>
 	(Set<IPipeline.TupleVersionStep<T, C, D>> stepVersionSubsetVertices, Map<IPipeline.TupleVersionStep<T, C, D>, Set<IPipeline.TupleVersionStep<T, C, D>>> stepVersionSubsetEdges) {
 
-	public static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> PipelineExecutionGraph<T, C, D> populate(PipelineDescription<T, C, D> description, AbstractVersionGraph<T> versionGraph) {
+	/**
+	 * Populates the execution graph, starting from the steps of all required versions (e.g. those not yet committed) and expanding backwards through their dependencies.
+	 * Only tuples that are transitively needed by a required version become part of the graph, other versions are not touched at all.
+	 * Inter-version dependencies are bridged over versions, that are not required, to the nearest required previous versions.
+	 *
+	 * @param description      Pipeline description
+	 * @param versionGraph     Version graph
+	 * @param requiredVersions Versions that should be executed
+	 * @return execution graph
+	 */
+	public static <T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig> PipelineExecutionGraph<T, C, D> populate(PipelineDescription<T, C, D> description, AbstractVersionGraph<T> versionGraph, Set<T> requiredVersions) {
+		Set<IStep<T, ?, C, D>> pipelineSteps = new HashSet<>(description.steps());
+		// Steps no other step of the same version depends on, every other step is reached through their dependencies
+		Set<IStep<T, ?, C, D>> terminalSteps = new LinkedHashSet<>(description.steps());
+		for (IStep<T, ?, C, D> step : description.steps()) {
+			terminalSteps.removeAll(description.getIntraVersionDependencies(step));
+		}
+		Map<T, Set<T>> nearestRequiredPreviousVersions = new HashMap<>();
 		Set<IPipeline.TupleVersionStep<T, C, D>> stepVersionSubsetVertices = new HashSet<>();
 		// directed: (target, source)
 		Map<IPipeline.TupleVersionStep<T, C, D>, Set<IPipeline.TupleVersionStep<T, C, D>>> stepVersionSubsetEdges = new HashMap<>();
-		for (T version : versionGraph) {
-			for (IStep<T, ?, C, D> step : description.steps()) {
-				IPipeline.TupleVersionStep<T, C, D> node = new IPipeline.TupleVersionStep<>(step, version);
-				stepVersionSubsetVertices.add(node);
-				stepVersionSubsetEdges.computeIfAbsent(node, __ -> new HashSet<>());
-				// Inter-Version dependency: depend on previous version only; logically should depend on all previous versions
-				// but this is not necessary as this dependency applies transitively in a valid pipeline description (step depending on itself)
-				for (IStep<T, ?, C, D> interVersionDependencyStep : description.getInterVersionDependencies(step)) {
-					for (T previousVersion : versionGraph.getPreviousVertices(version)) {
-						stepVersionSubsetEdges.get(node).add(new IPipeline.TupleVersionStep<>(interVersionDependencyStep, previousVersion));
-					}
+		ArrayDeque<IPipeline.TupleVersionStep<T, C, D>> pendingNodes = new ArrayDeque<>();
+		for (T version : requiredVersions) {
+			for (IStep<T, ?, C, D> step : terminalSteps) {
+				pendingNodes.add(new IPipeline.TupleVersionStep<>(step, version));
+			}
+		}
+		while (!pendingNodes.isEmpty()) {
+			IPipeline.TupleVersionStep<T, C, D> node = pendingNodes.poll();
+			if (!stepVersionSubsetVertices.add(node)) {
+				continue;
+			}
+			Set<IPipeline.TupleVersionStep<T, C, D>> dependencies = new HashSet<>();
+			// Inter-Version dependency: depend on previous version only; logically should depend on all previous versions
+			// but this is not necessary as this dependency applies transitively in a valid pipeline description (step depending on itself)
+			for (IStep<T, ?, C, D> interVersionDependencyStep : description.getInterVersionDependencies(node.step())) {
+				if (!pipelineSteps.contains(interVersionDependencyStep)) {
+					continue;
+				}
+				for (T previousVersion : findNearestRequiredPreviousVersions(versionGraph, node.version(), requiredVersions, nearestRequiredPreviousVersions)) {
+					dependencies.add(new IPipeline.TupleVersionStep<>(interVersionDependencyStep, previousVersion));
 				}
-				// Intra-Version dependency
-				for (IStep<T, ?, C, D> intraVersionDependencyStep : description.getIntraVersionDependencies(step)) {
-					DependencyRelation depType = description.getDependencyType(step, intraVersionDependencyStep);
-					if (depType != null && depType.isDependency()) {
-						stepVersionSubsetEdges.get(node).add(new IPipeline.TupleVersionStep<>(intraVersionDependencyStep, version));
-					}
+			}
+			// Intra-Version dependency
+			for (IStep<T, ?, C, D> intraVersionDependencyStep : description.getIntraVersionDependencies(node.step())) {
+				DependencyRelation depType = description.getDependencyType(node.step(), intraVersionDependencyStep);
+				// Optional dependencies, that are not part of this pipeline, are never executed and therefore cannot be waited for
+				if (depType != null && depType.isDependency() && pipelineSteps.contains(intraVersionDependencyStep)) {
+					dependencies.add(new IPipeline.TupleVersionStep<>(intraVersionDependencyStep, node.version()));
 				}
 			}
+			stepVersionSubsetEdges.put(node, dependencies);
+			pendingNodes.addAll(dependencies);
 		}
 		// TODO validate execution graph
 		return new PipelineExecutionGraph<>(Collections.unmodifiableSet(stepVersionSubsetVertices), Collections.unmodifiableMap(stepVersionSubsetEdges));
 	}
 
+	private static <T extends AbstractVersion<T>> Set<T> findNearestRequiredPreviousVersions(AbstractVersionGraph<T> versionGraph, T version, Set<T> requiredVersions, Map<T, Set<T>> cache) {
+		Set<T> cachedVersions = cache.get(version);
+		if (cachedVersions != null) {
+			return cachedVersions;
+		}
+		Set<T> nearestRequiredVersions = new HashSet<>();
+		for (T previousVersion : versionGraph.getPreviousVertices(version)) {
+			if (requiredVersions.contains(previousVersion)) {
+				nearestRequiredVersions.add(previousVersion);
+			} else {
+				nearestRequiredVersions.addAll(findNearestRequiredPreviousVersions(versionGraph, previousVersion, requiredVersions, cache));
+			}
+		}
+		cache.put(version, nearestRequiredVersions);
+		return nearestRequiredVersions;
+	}
+
 	protected Set<IPipeline.TupleVersionStep<T, C, D>> nextTuples(Set<IPipeline.TupleVersionStep<T, C, D>> completedSubset) {
 		return stepVersionSubsetEdges.entrySet().stream().filter(entry -> !completedSubset.contains(entry.getKey())).filter(entry -> MiscHelper.calculateAsymmetricSetDifference(entry.getValue(), completedSubset).isEmpty()).map(java.util.Map.Entry::getKey).collect(Collectors.toUnmodifiableSet());
 	}
@@ -14,6 +14,7 @@ import java.util.function.Function;
 
 public record PipelineFilesystemStorage<T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig>(IPipelineFilesystemRoot rootFilesystem,
 																														   Set<StorageKey> resettableKeys,
+																														   Set<StorageKey> evictableKeys,
 																														   Map<StorageKey, PathDeriver<T, C, D>> paths) {
 	@FunctionalInterface
 	public interface PathDeriver<T extends AbstractVersion<T>, C extends IStepContext<C, T>, D extends IStepConfig>  {
@@ -22,7 +23,23 @@ public record PipelineFilesystemStorage<T extends AbstractVersion<T>, C extends
 
 	@SafeVarargs
 	public PipelineFilesystemStorage(IPipelineFilesystemRoot rootFilesystem, Set<StorageKey> resettableKeys, Map<StorageKey, PathDeriver<T, C, D>>... paths) {
-		this(rootFilesystem, resettableKeys, MiscHelper.mergeMaps(new HashMap<>(), paths));
+		this(rootFilesystem, resettableKeys, Set.of(), MiscHelper.mergeMaps(new HashMap<>(), paths));
+	}
+
+	/**
+	 * @param evictableKeys Intermediate artifacts, which can be recreated by running their steps again; these may be evicted to stay within the disk budget
+	 */
+	@SafeVarargs
+	public PipelineFilesystemStorage(IPipelineFilesystemRoot rootFilesystem, Set<StorageKey> resettableKeys, Set<StorageKey> evictableKeys, Map<StorageKey, PathDeriver<T, C, D>>... paths) {
+		this(rootFilesystem, resettableKeys, evictableKeys, MiscHelper.mergeMaps(new HashMap<>(), paths));
+	}
+
+	/**
+	 * @param evictableKeys Intermediate artifacts, which may be evicted
+	 * @return this storage, with different evictable artifacts
+	 */
+	public PipelineFilesystemStorage<T, C, D> withEvictableKeys(Set<StorageKey> evictableKeys) {
+		return new PipelineFilesystemStorage<>(this.rootFilesystem(), this.resettableKeys(), evictableKeys, this.paths());
 	}
 
 	public Path getPath(StorageKey key, C context, D config) {
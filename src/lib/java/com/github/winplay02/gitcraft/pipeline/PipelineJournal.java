@@ -0,0 +1,176 @@
+package com.github.winplay02.gitcraft.pipeline;
+
+import com.github.winplay02.gitcraft.LibraryPaths;
+import com.github.winplay02.gitcraft.util.MiscHelper;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Durable journal of completed tasks of a pipeline, used to resume quickly after a crash or interruption.
+ * <p>
+ * Every successful task of a resumable step appends one line, containing the outputs of the task along with their size and modification time.
+ * Directories are only recorded as existing, as they are shared with other tasks (e.g. a directory of all versions, or one with outputs of several steps), which modify them as well.
+ * Instead, files a task placed into such shared stores (e.g. each library of a version) are recorded separately, and validated one by one.
+ * Each line is appended using a single write and forced to disk, so a crash can at most lose (or tear) the last line, which is ignored while loading.
+ * On the next run, entries are validated only by comparing size and modification time of the outputs (nothing is read or hashed).
+ */
+public final class PipelineJournal {
+	private static final Gson GSON = new Gson();
+
+	private final Path journalFile;
+	private final Map<String, Entry> entries;
+	private long sequence;
+
+	/**
+	 * @param path         Normalized absolute path of the output
+	 * @param exists       Whether the output existed after completing the task
+	 * @param size         Size of the output, 0 for directories
+	 * @param lastModified Modification time of the output in milliseconds, 0 for directories
+	 */
+	public record Output(String path, boolean exists, long size, long lastModified) {
+		private static Output of(Path path) throws IOException {
+			String normalizedPath = normalize(path);
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				if (attributes.isDirectory()) {
+					return new Output(normalizedPath, true, 0L, 0L);
+				}
+				return new Output(normalizedPath, true, attributes.size(), attributes.lastModifiedTime().toMillis());
+			} catch (NoSuchFileException e) {
+				return new Output(normalizedPath, false, 0L, 0L);
+			}
+		}
+
+		private boolean isUnchanged() {
+			try {
+				return this.equals(of(Path.of(this.path())));
+			} catch (IOException e) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * @param sequence Position in the journal, entries written later have a higher sequence
+	 * @param step     Name of the step
+	 * @param version  Version
+	 * @param config   Description of the configuration, the task was run with
+	 * @param outputs     Outputs of the task
+	 * @param sharedFiles Files in shared stores, that the task needs, absent in entries written before these were recorded
+	 */
+	public record Entry(long sequence, String step, String version, String config, List<Output> outputs, List<Output> sharedFiles) {
+		private boolean isUnchanged() {
+			return this.outputs().stream().allMatch(Output::isUnchanged) && (this.sharedFiles() == null || this.sharedFiles().stream().allMatch(Output::isUnchanged));
+		}
+	}
+
+	private PipelineJournal(Path journalFile, Map<String, Entry> entries) {
+		this.journalFile = journalFile;
+		this.entries = entries;
+		this.sequence = entries.values().stream().mapToLong(Entry::sequence).max().orElse(0L);
+	}
+
+	static String normalize(Path path) {
+		return path.toAbsolutePath().normalize().toString();
+	}
+
+	private static String taskKey(String step, String version, String config) {
+		return step + "\0" + version + "\0" + config;
+	}
+
+	/**
+	 * Loads the journal of a pipeline. Superseded entries are dropped by rewriting the journal atomically.
+	 *
+	 * @param descriptionName Name of the pipeline description
+	 * @return journal
+	 */
+	public static PipelineJournal load(String descriptionName) throws IOException {
+		Files.createDirectories(LibraryPaths.PIPELINE_JOURNALS);
+		Path journalFile = LibraryPaths.PIPELINE_JOURNALS.resolve(descriptionName + ".jsonl");
+		Map<String, Entry> entries = new LinkedHashMap<>();
+		if (!Files.exists(journalFile)) {
+			return new PipelineJournal(journalFile, entries);
+		}
+		List<String> lines = Files.readAllLines(journalFile, StandardCharsets.UTF_8);
+		for (String line : lines) {
+			Entry entry;
+			try {
+				entry = GSON.fromJson(line, Entry.class);
+			} catch (JsonParseException e) {
+				// Torn line, written while crashing
+				continue;
+			}
+			if (entry != null && entry.step() != null && entry.version() != null && entry.config() != null && entry.outputs() != null) {
+				entries.put(taskKey(entry.step(), entry.version(), entry.config()), entry);
+			}
+		}
+		if (entries.size() < lines.size()) {
+			Path compactedFile = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+			Files.write(compactedFile, entries.values().stream().sorted(Comparator.comparingLong(Entry::sequence)).map(GSON::toJson).toList(), StandardCharsets.UTF_8);
+			Files.move(compactedFile, journalFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			MiscHelper.println("Compacted pipeline journal '%s' from %s to %s entries", descriptionName, lines.size(), entries.size());
+		}
+		return new PipelineJournal(journalFile, entries);
+	}
+
+	/**
+	 * Records a completed task.
+	 *
+	 * @param step    Name of the step
+	 * @param version Version
+	 * @param config  Description of the configuration
+	 * @param outputs     Outputs of the task
+	 * @param sharedFiles Files in shared stores, that the task needs (e.g. libraries of a version)
+	 */
+	public synchronized void append(String step, String version, String config, Collection<Path> outputs, Collection<Path> sharedFiles) throws IOException {
+		List<Output> recordedOutputs = new ArrayList<>(outputs.size());
+		for (Path output : outputs) {
+			recordedOutputs.add(Output.of(output));
+		}
+		List<Output> recordedSharedFiles = new ArrayList<>(sharedFiles.size());
+		for (Path sharedFile : sharedFiles) {
+			recordedSharedFiles.add(Output.of(sharedFile));
+		}
+		Entry entry = new Entry(++this.sequence, step, version, config, recordedOutputs, recordedSharedFiles);
+		ByteBuffer line = ByteBuffer.wrap((GSON.toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+		try (FileChannel channel = FileChannel.open(this.journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			while (line.hasRemaining()) {
+				channel.write(line);
+			}
+			channel.force(false);
+		}
+		this.entries.put(taskKey(step, version, config), entry);
+	}
+
+	/**
+	 * @param step    Name of the step
+	 * @param version Version
+	 * @param config  Description of the configuration
+	 * @return the latest entry of the task, if all of its outputs and files in shared stores are unchanged
+	 */
+	public synchronized Optional<Entry> getValidEntry(String step, String version, String config) {
+		Entry entry = this.entries.get(taskKey(step, version, config));
+		if (entry == null || !entry.isUnchanged()) {
+			return Optional.empty();
+		}
+		return Optional.of(entry);
+	}
+}
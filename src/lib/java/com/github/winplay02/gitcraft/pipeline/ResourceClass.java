@@ -0,0 +1,28 @@
+package com.github.winplay02.gitcraft.pipeline;
+
+/**
+ * Classes of resources, which steps of a pipeline compete for. Each class is limited separately,
+ * so that e.g. network-bound steps can overlap with CPU-bound steps.
+ */
+public enum ResourceClass {
+	/**
+	 * Concurrent network-bound steps
+	 */
+	NETWORK,
+	/**
+	 * CPU cores
+	 */
+	CPU,
+	/**
+	 * Concurrent disk-bound steps
+	 */
+	DISK_IO,
+	/**
+	 * Heap, in MiB
+	 */
+	HEAP,
+	/**
+	 * Concurrently running subprocesses (e.g. other JVMs)
+	 */
+	SUBPROCESS
+}
@@ -0,0 +1,162 @@
+package com.github.winplay02.gitcraft.pipeline;
+
+import com.github.winplay02.gitcraft.config.GlobalConfiguration;
+import com.github.winplay02.gitcraft.util.DownloadPriority;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Weighted permits for each {@link ResourceClass}.
+ * <p>
+ * All demands of a step are acquired at once (or not at all), so that a waiting step never holds any permits.
+ * Demands exceeding the limit of a class are capped to the limit, such a step then runs without any other step using the same class.
+ * <p>
+ * {@link ResourceClass#NETWORK} permits are granted in the order of the {@link DownloadPriority} of the waiting steps (and in arrival order for equal priorities),
+ * so that a step, which downloads only few files for a CPU-heavy stage, does not queue behind steps fetching bulk files.
+ * Waiting steps, that cannot run because of the demands of any other class, are skipped, so that they do not hold back steps with a lower priority.
+ */
+public final class ResourceLimiter {
+	private record Waiter(Map<ResourceClass, Integer> demands, DownloadPriority priority, long sequence) {
+	}
+
+	private static final Comparator<Waiter> WAITER_ORDER = Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::sequence);
+
+	private final EnumMap<ResourceClass, Integer> limits = new EnumMap<>(ResourceClass.class);
+	private final EnumMap<ResourceClass, Integer> available = new EnumMap<>(ResourceClass.class);
+	private final PriorityQueue<Waiter> networkWaiters = new PriorityQueue<>(WAITER_ORDER);
+	private long sequence = 0L;
+
+	/**
+	 * @param limits Limits for each resource class, classes without a positive limit are unlimited
+	 */
+	public ResourceLimiter(Map<ResourceClass, Integer> limits) {
+		for (Map.Entry<ResourceClass, Integer> limit : limits.entrySet()) {
+			if (limit.getValue() > 0) {
+				this.limits.put(limit.getKey(), limit.getValue());
+				this.available.put(limit.getKey(), limit.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @param configuration Configuration, providing the limit of each resource class
+	 * @return limiter for pipeline steps
+	 */
+	public static ResourceLimiter fromConfiguration(GlobalConfiguration configuration) {
+		return new ResourceLimiter(Map.of(
+			ResourceClass.NETWORK, configuration.networkPermits(),
+			ResourceClass.CPU, configuration.cpuPermits(),
+			ResourceClass.DISK_IO, configuration.diskIoPermits(),
+			ResourceClass.HEAP, configuration.heapPermitsMiB(),
+			ResourceClass.SUBPROCESS, configuration.subprocessPermits()
+		));
+	}
+
+	private int capped(ResourceClass resourceClass, int demand) {
+		Integer limit = this.limits.get(resourceClass);
+		return limit == null ? 0 : Math.min(Math.max(demand, 0), limit);
+	}
+
+	/**
+	 * @param demands Demands of a step
+	 * @return whether all demands were acquired, nothing is acquired otherwise
+	 */
+	public synchronized boolean tryAcquire(Map<ResourceClass, Integer> demands) {
+		for (Map.Entry<ResourceClass, Integer> demand : demands.entrySet()) {
+			int permits = this.capped(demand.getKey(), demand.getValue());
+			if (permits > 0 && this.available.get(demand.getKey()) < permits) {
+				return false;
+			}
+		}
+		for (Map.Entry<ResourceClass, Integer> demand : demands.entrySet()) {
+			int permits = this.capped(demand.getKey(), demand.getValue());
+			if (permits > 0) {
+				this.available.merge(demand.getKey(), -permits, Integer::sum);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param waiter Waiting step
+	 * @return whether the demands of the step, except for network permits, cannot be acquired currently
+	 */
+	private boolean isBlockedByOtherClasses(Waiter waiter) {
+		for (Map.Entry<ResourceClass, Integer> demand : waiter.demands().entrySet()) {
+			int permits = this.capped(demand.getKey(), demand.getValue());
+			if (demand.getKey() != ResourceClass.NETWORK && permits > 0 && this.available.get(demand.getKey()) < permits) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param waiter Waiting step, demanding network permits
+	 * @return whether no step with a higher priority waits for network permits, without being blocked by any other class
+	 */
+	private boolean isNetworkTurn(Waiter waiter) {
+		for (Waiter other : this.networkWaiters) {
+			if (WAITER_ORDER.compare(other, waiter) < 0 && !this.isBlockedByOtherClasses(other)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until all demands can be acquired at once.
+	 *
+	 * @param demands Demands of a step
+	 */
+	public void acquireUninterruptibly(Map<ResourceClass, Integer> demands) {
+		this.acquireUninterruptibly(demands, DownloadPriority.UNSPECIFIED);
+	}
+
+	/**
+	 * Waits until all demands can be acquired at once. Demands of network permits additionally wait for all waiting steps with a higher priority, that demand network permits as well,
+	 * unless these are blocked by the demands of any other class.
+	 *
+	 * @param demands  Demands of a step
+	 * @param priority Priority of the downloads of the step
+	 */
+	public synchronized void acquireUninterruptibly(Map<ResourceClass, Integer> demands, DownloadPriority priority) {
+		Waiter waiter = null;
+		if (this.capped(ResourceClass.NETWORK, demands.getOrDefault(ResourceClass.NETWORK, 0)) > 0) {
+			waiter = new Waiter(demands, priority, this.sequence++);
+			this.networkWaiters.add(waiter);
+		}
+		boolean interrupted = false;
+		while ((waiter != null && !this.isNetworkTurn(waiter)) || !this.tryAcquire(demands)) {
+			try {
+				this.wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (waiter != null) {
+			this.networkWaiters.remove(waiter);
+			// The next network waiter may proceed as well
+			this.notifyAll();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @param demands Demands of a step, that were acquired before
+	 */
+	public synchronized void release(Map<ResourceClass, Integer> demands) {
+		for (Map.Entry<ResourceClass, Integer> demand : demands.entrySet()) {
+			int permits = this.capped(demand.getKey(), demand.getValue());
+			if (permits > 0) {
+				this.available.merge(demand.getKey(), permits, Integer::sum);
+			}
+		}
+		this.notifyAll();
+	}
+}
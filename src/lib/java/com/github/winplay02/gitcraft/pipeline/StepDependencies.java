@@ -82,4 +82,8 @@ public record StepDependencies<T extends AbstractVersion<T>, C extends IStepCont
 	public StepDependencies<T, C, D> filterIntraOnly() {
 		return new StepDependencies<>(this.dependencyTypes, Set.of());
 	}
+
+	public StepDependencies<T, C, D> retainSteps(Set<IStep<T, ?, C, D>> steps) {
+		return new StepDependencies<>(this.dependencyTypes.entrySet().stream().filter(dep -> steps.contains(dep.getKey())).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)), this.interVersionDependency.stream().filter(steps::contains).collect(Collectors.toSet()));
+	}
 }
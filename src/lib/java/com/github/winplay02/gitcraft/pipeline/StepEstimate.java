@@ -0,0 +1,27 @@
+package com.github.winplay02.gitcraft.pipeline;
+
+/**
+ * Estimate of the work a step will do, made without running it (e.g. for explaining an execution plan).
+ *
+ * @param upToDate      Whether all outputs of the step already exist, so that running it will not do any work
+ * @param downloadBytes Amount of bytes the step is expected to download (lower bound, if sizes are not known)
+ */
+public record StepEstimate(boolean upToDate, long downloadBytes) {
+	/**
+	 * Nothing is known about the step, it is expected to run
+	 */
+	public static final StepEstimate UNKNOWN = new StepEstimate(false, 0L);
+	/**
+	 * All outputs of the step exist already
+	 */
+	public static final StepEstimate UP_TO_DATE = new StepEstimate(true, 0L);
+
+	/**
+	 * @param missingFiles  Amount of files that need to be downloaded
+	 * @param downloadBytes Size of these files
+	 * @return estimate of a step fetching files
+	 */
+	public static StepEstimate ofDownloads(long missingFiles, long downloadBytes) {
+		return missingFiles == 0 ? UP_TO_DATE : new StepEstimate(false, downloadBytes);
+	}
+}
@@ -0,0 +1,65 @@
+package com.github.winplay02.gitcraft.pipeline;
+
+import com.github.winplay02.gitcraft.LibraryPaths;
+import com.github.winplay02.gitcraft.util.SerializationHelper;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent timings of previously executed steps (keyed by the name of the step), used to estimate the cost of future runs.
+ * Only steps that actually did work (succeeded, not up-to-date) are recorded.
+ */
+public class StepTimingHistory {
+	/**
+	 * @param runs          Amount of recorded runs
+	 * @param totalNanos    Sum of the durations of all recorded runs
+	 * @param peakHeapBytes Largest share of the used heap attributed to a single run (used heap after the step, divided by the amount of steps running at that time)
+	 */
+	public record StepTiming(long runs, long totalNanos, long peakHeapBytes) {
+		public long averageNanos() {
+			return this.runs() > 0 ? this.totalNanos() / this.runs() : 0L;
+		}
+
+		private StepTiming add(long nanos, long heapBytes) {
+			return new StepTiming(this.runs() + 1, this.totalNanos() + nanos, Math.max(this.peakHeapBytes(), heapBytes));
+		}
+	}
+
+	private static ConcurrentHashMap<String, StepTiming> stepTimings = new ConcurrentHashMap<>();
+
+	public static void saveStepTimingHistory() throws IOException {
+		try {
+			SerializationHelper.writeAllToPath(LibraryPaths.STEP_TIMING_HISTORY, SerializationHelper.serialize(stepTimings));
+		} catch (NoSuchFileException ignored) {}
+		// Same as the maven cache, this can only fail in a testing environment, after cleaning up
+	}
+
+	public static void loadStepTimingHistory() throws IOException {
+		if (Files.exists(LibraryPaths.STEP_TIMING_HISTORY)) {
+			stepTimings = SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(LibraryPaths.STEP_TIMING_HISTORY), new TypeToken<ConcurrentHashMap<String, StepTiming>>() {});
+		}
+	}
+
+	/**
+	 * Records a single run of a step.
+	 *
+	 * @param stepName  Name of the step
+	 * @param nanos     Duration of the run
+	 * @param heapBytes Share of the used heap attributed to the run
+	 */
+	public static void record(String stepName, long nanos, long heapBytes) {
+		stepTimings.compute(stepName, (_, timing) -> (timing != null ? timing : new StepTiming(0L, 0L, 0L)).add(nanos, heapBytes));
+	}
+
+	/**
+	 * @param stepName Name of the step
+	 * @return recorded timings of the step, or null if it has never been recorded
+	 */
+	public static StepTiming get(String stepName) {
+		return stepTimings.get(stepName);
+	}
+}
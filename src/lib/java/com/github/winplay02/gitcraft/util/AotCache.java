@@ -0,0 +1,105 @@
+package com.github.winplay02.gitcraft.util;
+
+import com.github.winplay02.gitcraft.Library;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * JDK AOT caches (JEP 483, JEP 514) for Java subprocesses, which are started repeatedly with the same classpath (e.g. datagen or launching a version).
+ * <p>
+ * The first invocation is a training run, which writes the cache when the subprocess exits. Later invocations with the same classpath start from the cache.
+ * Caches are keyed by the JVM version, the JVM options and the path and SHA1 checksum of every classpath entry, so that changing the contents of any jar invalidates the cache,
+ * while rewriting a jar with the same contents (e.g. unbundling it again) does not. Checksums of unchanged jars are answered by the checksum cache.
+ */
+public final class AotCache {
+	private static final String CACHE_EXTENSION = ".aot";
+	private static final int FINGERPRINT_LENGTH = 16;
+	private static final int MIN_JAVA_FEATURE_VERSION = 25;
+
+	private AotCache() {}
+
+	/**
+	 * @param jvmArgs        Additional JVM options for the subprocess
+	 * @param trainingOutput Temporary cache file written by a training run, null if an existing cache is used
+	 * @param cacheFile      Cache file
+	 */
+	public record Invocation(List<String> jvmArgs, Path trainingOutput, Path cacheFile) {
+		private static final Invocation NONE = new Invocation(List.of(), null, null);
+
+		/**
+		 * Publishes the cache written by a training run. Must be called after the subprocess has exited.
+		 */
+		public void complete() throws IOException {
+			if (this.trainingOutput() == null) {
+				return;
+			}
+			if (Files.exists(this.trainingOutput())) {
+				Files.move(this.trainingOutput(), this.cacheFile(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				MiscHelper.println("Created AOT cache %s (%s)", this.cacheFile().getFileName(), FileTransferHelper.formatBytes(Files.size(this.cacheFile())));
+			}
+		}
+	}
+
+	/**
+	 * @param cacheDirectory Directory containing all caches
+	 * @param name           Name of the cache, e.g. describing the version and the kind of subprocess; older caches with the same name are removed
+	 * @param classpath      Classpath of the subprocess (or the jar started with -jar)
+	 * @param jvmArgs        Other JVM options of the subprocess
+	 * @return options to start the subprocess with
+	 */
+	public static Invocation prepare(Path cacheDirectory, String name, List<Path> classpath, List<String> jvmArgs) throws IOException {
+		if (!Library.CONF_GLOBAL.useAotCaches() || Runtime.version().feature() < MIN_JAVA_FEATURE_VERSION) {
+			return Invocation.NONE;
+		}
+		Files.createDirectories(cacheDirectory);
+		String cacheFileName = String.format("%s-%s%s", name, fingerprint(classpath, jvmArgs), CACHE_EXTENSION);
+		Path cacheFile = cacheDirectory.resolve(cacheFileName);
+		if (Files.exists(cacheFile)) {
+			return new Invocation(List.of(String.format("-XX:AOTCache=%s", cacheFile.toAbsolutePath())), null, cacheFile);
+		}
+		// Only caches named exactly <name>-<fingerprint>.aot are stale, not those of other names sharing the same prefix (e.g. 1.18 and 1.18-pre1)
+		Pattern staleCachePattern = Pattern.compile(String.format("%s-[0-9a-f]{%s}%s", Pattern.quote(name), FINGERPRINT_LENGTH, Pattern.quote(CACHE_EXTENSION)));
+		try (Stream<Path> caches = Files.list(cacheDirectory)) {
+			for (Path staleCache : caches.filter(path -> staleCachePattern.matcher(path.getFileName().toString()).matches()).toList()) {
+				MiscHelper.deleteFile(staleCache);
+			}
+		}
+		Path trainingOutput = cacheDirectory.resolve(String.format("%s-%s.tmp", cacheFileName, System.nanoTime()));
+		return new Invocation(List.of(String.format("-XX:AOTCacheOutput=%s", trainingOutput.toAbsolutePath())), trainingOutput, cacheFile);
+	}
+
+	private static String fingerprint(List<Path> classpath, List<String> jvmArgs) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA1");
+			digest.update(Runtime.version().toString().getBytes(StandardCharsets.UTF_8));
+			for (String jvmArg : jvmArgs) {
+				digest.update((byte) 0);
+				digest.update(jvmArg.getBytes(StandardCharsets.UTF_8));
+			}
+			for (Path entry : classpath) {
+				String checksum = Library.IA_SHA1.getChecksumFile(entry);
+				if (checksum == null) {
+					// Checksums are disabled, fall back to size and modification time
+					BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+					checksum = String.format("%s\0%s", attributes.size(), attributes.lastModifiedTime().toMillis());
+				}
+				digest.update((byte) 0);
+				digest.update(String.format("%s\0%s", entry.toAbsolutePath(), checksum).getBytes(StandardCharsets.UTF_8));
+			}
+			return HexFormat.of().formatHex(digest.digest()).substring(0, FINGERPRINT_LENGTH);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.github.winplay02.gitcraft.util;
+
+import com.github.winplay02.gitcraft.LibraryPaths;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of datagen results, shared by all pipelines and mapping flavours.
+ * <p>
+ * The results of datagen only depend on the server jar, the datagen arguments and the provided inputs, so they are keyed by checksums of exactly those.
+ * Every result archive is stored once in {@link LibraryPaths#DATAGEN_CACHE}, and hardlinked (or copied, if hardlinks are not supported) to the artifacts of every version using it.
+ * The cache is bounded by {@link #MAX_CACHE_SIZE}, once exceeded, the oldest results are removed (they are generated again if needed).
+ */
+public final class DatagenResultCache {
+	// Part of every key, should be changed if the format of result archives changes
+	private static final String CACHE_FORMAT = "1";
+	private static final String ARCHIVE_EXTENSION = ".jar";
+	private static final long MAX_CACHE_SIZE = 2L * 1024 * 1024 * 1024;
+
+	private DatagenResultCache() {}
+
+	/**
+	 * @param arguments Datagen arguments, which are not paths (e.g. "--reports")
+	 * @param checksums SHA1 checksums of the server jar and all other inputs, empty strings for absent optional inputs
+	 * @return key of the result
+	 */
+	public static String key(String arguments, String... checksums) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA1");
+			digest.update(CACHE_FORMAT.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(arguments.getBytes(StandardCharsets.UTF_8));
+			for (String checksum : checksums) {
+				digest.update((byte) 0);
+				digest.update(checksum.getBytes(StandardCharsets.UTF_8));
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Path getCachedArchive(String key) {
+		return LibraryPaths.DATAGEN_CACHE.resolve(key.substring(0, 2)).resolve(key + ARCHIVE_EXTENSION);
+	}
+
+	/**
+	 * Places a cached result at the location of an artifact.
+	 *
+	 * @param key      Key of the result
+	 * @param artifact Artifact to create
+	 * @return whether the result was cached
+	 */
+	public static boolean restore(String key, Path artifact) throws IOException {
+		Path cachedArchive = getCachedArchive(key);
+		if (!Files.isRegularFile(cachedArchive)) {
+			return false;
+		}
+		Files.createDirectories(artifact.getParent());
+		linkOrCopy(cachedArchive, artifact);
+		return true;
+	}
+
+	/**
+	 * Adds a result to the cache, if it is not cached yet, and prunes the cache afterwards.
+	 *
+	 * @param key      Key of the result
+	 * @param artifact Artifact containing the result
+	 */
+	public static void store(String key, Path artifact) throws IOException {
+		Path cachedArchive = getCachedArchive(key);
+		if (Files.exists(cachedArchive)) {
+			return;
+		}
+		Files.createDirectories(cachedArchive.getParent());
+		linkOrCopy(artifact, cachedArchive);
+		prune(MAX_CACHE_SIZE);
+	}
+
+	/**
+	 * Removes the oldest results, until the cache is not larger than the provided size. Artifacts linked to removed results are kept.
+	 *
+	 * @param maxSize Max size of all cached results, in bytes
+	 * @return amount of removed results
+	 */
+	public static int prune(long maxSize) throws IOException {
+		if (!Files.isDirectory(LibraryPaths.DATAGEN_CACHE)) {
+			return 0;
+		}
+		record CachedArchive(Path path, long size, long lastModified) {
+		}
+		List<CachedArchive> cachedArchives;
+		try (Stream<Path> paths = Files.walk(LibraryPaths.DATAGEN_CACHE, 2)) {
+			cachedArchives = paths.filter(path -> Files.isRegularFile(path) && path.getFileName().toString().endsWith(ARCHIVE_EXTENSION)).map(path -> {
+				try {
+					return new CachedArchive(path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+				} catch (IOException e) {
+					// Removed by a concurrent run
+					return null;
+				}
+			}).filter(Objects::nonNull).sorted(Comparator.comparingLong(CachedArchive::lastModified)).toList();
+		}
+		long size = cachedArchives.stream().mapToLong(CachedArchive::size).sum();
+		int pruned = 0;
+		for (int i = 0; i < cachedArchives.size() && size > maxSize; ++i) {
+			Files.deleteIfExists(cachedArchives.get(i).path());
+			size -= cachedArchives.get(i).size();
+			++pruned;
+		}
+		return pruned;
+	}
+
+	private static void linkOrCopy(Path source, Path target) throws IOException {
+		// Concurrent runs may place the same result at the same time, they are identical, so the last one wins
+		Path temporaryTarget = target.resolveSibling(String.format("%s.%s.tmp", target.getFileName(), System.nanoTime()));
+		try {
+			Files.createLink(temporaryTarget, source);
+		} catch (IOException | UnsupportedOperationException e) {
+			Files.copy(source, temporaryTarget, StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.move(temporaryTarget, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
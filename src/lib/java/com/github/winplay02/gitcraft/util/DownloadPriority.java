@@ -0,0 +1,73 @@
+package com.github.winplay02.gitcraft.util;
+
+import java.util.Comparator;
+
+/**
+ * Priority of downloads, derived from the (step, version) requesting them. Downloads with a lower priority only start, if no download with a higher priority is waiting for the same origin.
+ * <p>
+ * The priority is held by the thread running a step, and inherited by all threads started from it.
+ *
+ * @param tier Tier of the requesting step
+ * @param rank Rank within the tier, lower ranks first (e.g. the topological index of the requesting version, so that earlier versions are fed first)
+ */
+public record DownloadPriority(Tier tier, int rank) implements Comparable<DownloadPriority> {
+	private static final Comparator<DownloadPriority> ORDER = Comparator.comparing(DownloadPriority::tier).thenComparingInt(DownloadPriority::rank);
+
+	/**
+	 * Used for downloads outside of any step (e.g. while loading metadata)
+	 */
+	public static final DownloadPriority UNSPECIFIED = new DownloadPriority(Tier.DEFAULT, 0);
+
+	private static final InheritableThreadLocal<DownloadPriority> CURRENT = new InheritableThreadLocal<>();
+
+	public enum Tier {
+		/**
+		 * Downloads gating the CPU-heavy stages (e.g. jars and mappings, which remapping and decompiling wait for)
+		 */
+		CRITICAL,
+		/**
+		 * Everything else
+		 */
+		DEFAULT,
+		/**
+		 * Many small files, that no CPU-heavy stage waits for (e.g. asset objects)
+		 */
+		BULK
+	}
+
+	public interface Scope extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	/**
+	 * @return priority of downloads requested by the current thread
+	 */
+	public static DownloadPriority current() {
+		DownloadPriority priority = CURRENT.get();
+		return priority != null ? priority : UNSPECIFIED;
+	}
+
+	/**
+	 * Sets the priority of downloads requested by the current thread (and threads started from it), until the scope is closed.
+	 *
+	 * @param priority Priority
+	 * @return scope, restoring the previous priority when closed
+	 */
+	public static Scope enter(DownloadPriority priority) {
+		DownloadPriority previous = CURRENT.get();
+		CURRENT.set(priority);
+		return () -> {
+			if (previous != null) {
+				CURRENT.set(previous);
+			} else {
+				CURRENT.remove();
+			}
+		};
+	}
+
+	@Override
+	public int compareTo(DownloadPriority other) {
+		return ORDER.compare(this, other);
+	}
+}
@@ -14,16 +14,17 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -68,41 +69,36 @@ public class FileSystemNetworkManager {
 			Objects.equals(completedJobs.get(localFileInfo.targetFile()).integrityAlgorithm, localFileInfo.integrityAlgorithm())) {
 			MiscHelper.panic("Cannot fulfill download to %s, there are multiple requests with different outcomes to the same file", localFileInfo.targetFile());
 		}
+		// Captured here, as the download runs on another thread
+		DownloadPriority priority = DownloadPriority.current();
 		try (LockGuard $ = acquireDownloadJobsWriteLock()) {
 			if (downloadJobs.containsKey(localFileInfo.targetFile())) {
 				return downloadJobs.get(localFileInfo.targetFile()).future();
 			}
 			CompletableFuture<StepStatus> f = CompletableFuture.supplyAsync(() -> {
 				if (checksumCheckFileIsValidAndExists(localFileInfo, false, tolerateHashUnavailable)) {
+					publishToSharedArtifactStore(localFileInfo);
 					return StepStatus.UP_TO_DATE;
 				}
 				if (completedJobs.containsKey(localFileInfo.targetFile())) {
 					MiscHelper.panic("Cannot fulfill download to %s, there are multiple requests with different outcomes to the same file", localFileInfo.targetFile());
 				}
-				do {
-					try {
-						MiscHelper.println("Fetching %s %s from: %s", localFileInfo.outputFileKind(), localFileInfo.outputFileId(), url);
-						try {
-							FileSystemNetworkManager.fetchFileAsync(url, localFileInfo.targetFile(), concurrentLimit).get();
-							if (!retry) {
-								break;
-							}
-						} catch (ExecutionException ee) {
-							throw ee.getCause();
+				if (SharedArtifactStore.isApplicable(localFileInfo.integrityAlgorithm(), localFileInfo.checksum())) {
+					// Other processes (or roots) may fetch the same object concurrently, only one of them downloads it
+					try (SharedArtifactStore.ObjectLock $$ = SharedArtifactStore.lock(localFileInfo.integrityAlgorithm(), localFileInfo.checksum())) {
+						if (SharedArtifactStore.restore(localFileInfo.integrityAlgorithm(), localFileInfo.checksum(), localFileInfo.targetFile())) {
+							MiscHelper.println("Reused %s %s from the shared artifact store", localFileInfo.outputFileKind(), localFileInfo.outputFileId());
+						} else {
+							failIfOffline(url, localFileInfo);
+							fetchRemoteWithRetries(url, localFileInfo, retry, concurrentLimit, priority);
+							publishToSharedArtifactStore(localFileInfo);
 						}
-					} catch (FileNotFoundException | URISyntaxException e1) {
-						MiscHelper.println("\u001B[31mFailed to fetch URL: %s (%s)\u001B[0m", url, e1);
-						MiscHelper.deleteFile(localFileInfo.targetFile());
-						MiscHelper.panicBecause(e1, "File download failed");
-					} catch (Throwable e1) {
-						MiscHelper.println("\u001B[31mFailed to fetch URL (retrying in %sms): %s (%s)\u001B[0m", Library.CONF_GLOBAL.failedFetchRetryInterval(), url, e1);
-						e1.printStackTrace();
-						MiscHelper.deleteFile(localFileInfo.targetFile());
-						MiscHelper.sleep(Library.CONF_GLOBAL.failedFetchRetryInterval());
+					} catch (IOException e) {
+						MiscHelper.panicBecause(e, "Cannot access shared artifact store for %s %s", localFileInfo.outputFileKind(), localFileInfo.outputFileId());
 					}
-				} while (!checksumCheckFileIsValidAndExists(localFileInfo, true, true));
-				if (!retry && !checksumCheckFileIsValidAndExists(localFileInfo, true, true)) {
-					MiscHelper.panic("File download failed");
+				} else {
+					failIfOffline(url, localFileInfo);
+					fetchRemoteWithRetries(url, localFileInfo, retry, concurrentLimit, priority);
 				}
 				try (LockGuard $$ = acquireDownloadJobsReadLock()) {
 					completedJobs.put(localFileInfo.targetFile(), downloadJobs.get(localFileInfo.targetFile()));
@@ -115,14 +111,60 @@ public class FileSystemNetworkManager {
 		}
 	}
 
+	private static void failIfOffline(URI url, LocalFileInfo localFileInfo) {
+		if (Library.CONF_GLOBAL.offline()) {
+			MiscHelper.panic("%s %s is neither available locally nor in the shared artifact store, cannot fetch it from %s in offline mode", localFileInfo.outputFileKind(), localFileInfo.outputFileId(), url);
+		}
+	}
+
+	private static void publishToSharedArtifactStore(LocalFileInfo localFileInfo) {
+		if (!SharedArtifactStore.isApplicable(localFileInfo.integrityAlgorithm(), localFileInfo.checksum()) || !localFileInfo.integrityAlgorithm().fileMatchesChecksum(localFileInfo.targetFile(), localFileInfo.checksum())) {
+			return;
+		}
+		try {
+			SharedArtifactStore.publish(localFileInfo.integrityAlgorithm(), localFileInfo.checksum(), localFileInfo.targetFile());
+		} catch (IOException e) {
+			MiscHelper.panicBecause(e, "Cannot publish %s %s to the shared artifact store", localFileInfo.outputFileKind(), localFileInfo.outputFileId());
+		}
+	}
+
+	private static void fetchRemoteWithRetries(URI url, LocalFileInfo localFileInfo, boolean retry, int concurrentLimit, DownloadPriority priority) {
+		do {
+			try {
+				MiscHelper.println("Fetching %s %s from: %s", localFileInfo.outputFileKind(), localFileInfo.outputFileId(), url);
+				try {
+					FileSystemNetworkManager.fetchFileAsync(url, localFileInfo.targetFile(), concurrentLimit, priority).get();
+					if (!retry) {
+						break;
+					}
+				} catch (ExecutionException ee) {
+					throw ee.getCause();
+				}
+			} catch (FileNotFoundException | URISyntaxException e1) {
+				MiscHelper.println("\u001B[31mFailed to fetch URL: %s (%s)\u001B[0m", url, e1);
+				MiscHelper.deleteFile(localFileInfo.targetFile());
+				MiscHelper.panicBecause(e1, "File download failed");
+			} catch (Throwable e1) {
+				MiscHelper.println("\u001B[31mFailed to fetch URL (retrying in %sms): %s (%s)\u001B[0m", Library.CONF_GLOBAL.failedFetchRetryInterval(), url, e1);
+				e1.printStackTrace();
+				MiscHelper.deleteFile(localFileInfo.targetFile());
+				MiscHelper.sleep(Library.CONF_GLOBAL.failedFetchRetryInterval());
+			}
+		} while (!checksumCheckFileIsValidAndExists(localFileInfo, true, true));
+		if (!retry && !checksumCheckFileIsValidAndExists(localFileInfo, true, true)) {
+			MiscHelper.panic("File download failed");
+		}
+	}
+
 	protected static final HttpClient httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
 
-	protected static final Map<String, Semaphore> connectionLimiter = new ConcurrentHashMap<>();
+	// Per origin, waiting downloads are started in the order of their priority
+	protected static final Map<String, PrioritySemaphore> connectionLimiter = new ConcurrentHashMap<>();
 
-	protected static CompletableFuture<HttpResponse<Path>> fetchFileAsync(URI uri, Path targetFile, int concurrentLimit) {
+	protected static CompletableFuture<HttpResponse<Path>> fetchFileAsync(URI uri, Path targetFile, int concurrentLimit, DownloadPriority priority) {
 		HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
-		final Semaphore semaphore = connectionLimiter.computeIfAbsent(uri.getHost().toLowerCase(Locale.ROOT), $ ->
-				new Semaphore(concurrentLimit > 0 ?
+		final PrioritySemaphore semaphore = connectionLimiter.computeIfAbsent(uri.getHost().toLowerCase(Locale.ROOT), _ ->
+				new PrioritySemaphore(concurrentLimit > 0 ?
 						Math.min(concurrentLimit, Library.CONF_GLOBAL.maxConcurrentHttpRequestsPerOrigin())
 						: Library.CONF_GLOBAL.maxConcurrentHttpRequestsPerOrigin()));
 		if (targetFile.getParent() != null) {
@@ -132,21 +174,90 @@ public class FileSystemNetworkManager {
 				MiscHelper.panicBecause(e, "Cannot create directories to store artifact %s in", targetFile);
 			}
 		}
-		semaphore.acquireUninterruptibly();
-		return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofFile(targetFile, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE, StandardOpenOption.WRITE)).thenApply(response -> {
+		// Downloaded to a temporary file and moved into place afterwards, as the target may be linked to the shared artifact store, which must never be written through
+		Path temporaryFile = targetFile.resolveSibling(String.format("%s.%s.tmp", targetFile.getFileName(), System.nanoTime()));
+		semaphore.acquireUninterruptibly(priority);
+		return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofFile(temporaryFile, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE, StandardOpenOption.WRITE)).thenApply(response -> {
 			if (response.statusCode() == 404) {
 				MiscHelper.throwUnchecked(new FileNotFoundException(uri.toString()));
 			}
+			try {
+				Files.move(temporaryFile, targetFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				MiscHelper.throwUnchecked(e);
+			}
 			return response;
-		}).whenComplete(($, $$) -> semaphore.release());
+		}).whenComplete(($, $$) -> {
+			semaphore.release();
+			// Only left over, if the download failed
+			MiscHelper.deleteFile(temporaryFile);
+		});
 	}
 
+	/**
+	 * Fetches metadata, using the {@link MetadataCache}: fresh responses are used without any request, stale responses are revalidated using a conditional request.
+	 * In offline mode, cached responses are always used, and missing responses fail immediately.
+	 * If revalidation fails (e.g. a server error), the stale response is used; without a cached response, any unsuccessful response fails.
+	 *
+	 * @param url URL of the metadata
+	 * @return body of the response
+	 */
 	public static String fetchAllFromURLSync(URL url) throws IOException, URISyntaxException, InterruptedException {
-		HttpRequest request = HttpRequest.newBuilder(url.toURI()).GET().build();
-		HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+		String cacheKey = url.toString();
+		Optional<MetadataCache.Entry> cachedEntry = MetadataCache.get(cacheKey);
+		if (Library.CONF_GLOBAL.offline()) {
+			return cachedEntry.orElseThrow(() -> new IOException(String.format("%s is not cached, cannot fetch it in offline mode", url))).body();
+		}
+		if (cachedEntry.isPresent() && cachedEntry.get().isFresh()) {
+			return cachedEntry.get().body();
+		}
+		HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(url.toURI()).GET();
+		if (cachedEntry.isPresent()) {
+			if (cachedEntry.get().etag() != null) {
+				requestBuilder.header("If-None-Match", cachedEntry.get().etag());
+			}
+			if (cachedEntry.get().lastModified() != null) {
+				requestBuilder.header("If-Modified-Since", cachedEntry.get().lastModified());
+			}
+		}
+		HttpResponse<String> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+		if (response.statusCode() == 404) {
+			throw new FileNotFoundException(url.toString());
+		}
+		if (response.statusCode() == 304 && cachedEntry.isPresent()) {
+			MetadataCache.put(cachedEntry.get().revalidated());
+			return cachedEntry.get().body();
+		}
+		if (response.statusCode() != 200) {
+			// Never hand out an error page as metadata; a stale entry is still better than failing
+			if (cachedEntry.isPresent()) {
+				MiscHelper.println("\u001B[31mRevalidating %s failed with status %s, using the stale cached response\u001B[0m", url, response.statusCode());
+				return cachedEntry.get().body();
+			}
+			throw new IOException(String.format("Fetching %s failed with status %s", url, response.statusCode()));
+		}
+		MetadataCache.put(new MetadataCache.Entry(cacheKey, response.headers().firstValue("ETag").orElse(null), response.headers().firstValue("Last-Modified").orElse(null), System.currentTimeMillis(), response.body()));
+		return response.body();
+	}
+
+	/**
+	 * Fetches a small resource without using the {@link MetadataCache}, e.g. for lookups that are cached by the caller.
+	 * Any unsuccessful response fails, as does offline mode.
+	 *
+	 * @param url URL of the resource
+	 * @return body of the response
+	 */
+	public static String fetchAllFromURLSyncUncached(URL url) throws IOException, URISyntaxException, InterruptedException {
+		if (Library.CONF_GLOBAL.offline()) {
+			throw new IOException(String.format("Cannot fetch %s in offline mode", url));
+		}
+		HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(url.toURI()).GET().build(), HttpResponse.BodyHandlers.ofString());
 		if (response.statusCode() == 404) {
 			throw new FileNotFoundException(url.toString());
 		}
+		if (response.statusCode() != 200) {
+			throw new IOException(String.format("Fetching %s failed with status %s", url, response.statusCode()));
+		}
 		return response.body();
 	}
 
@@ -0,0 +1,190 @@
+package com.github.winplay02.gitcraft.util;
+
+import com.github.winplay02.gitcraft.Library;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Copies or hardlinks many (small) files at once.
+ * Directories are created up front, files are transferred in batches on a bounded amount of threads.
+ * Hardlinks are only created within a single file store. If hardlinks are not supported or not permitted within a file store, all further files are copied instead.
+ * Other failures of creating a hardlink only fall back to copying the affected file.
+ */
+public class FileTransferHelper {
+	/**
+	 * Amount of files that are transferred by a single task
+	 */
+	public static final int BATCH_SIZE = 256;
+	/**
+	 * Transfers with at least this amount of files report their throughput
+	 */
+	public static final int REPORT_THRESHOLD = 1000;
+
+	public enum TransferMode {
+		COPY,
+		HARDLINK
+	}
+
+	public record FileTransfer(Path source, Path target) {
+	}
+
+	public record TransferStatistics(long files, long bytes, long hardlinked, long copied, Duration duration) {
+		public String describe() {
+			double seconds = Math.max(this.duration().toNanos(), 1) / 1_000_000_000.0d;
+			return String.format("%d files (%s) in %.2fs, %.0f files/s, %s/s, %d hardlinked, %d copied", this.files(), formatBytes(this.bytes()), seconds, this.files() / seconds, formatBytes((long) (this.bytes() / seconds)), this.hardlinked(), this.copied());
+		}
+	}
+
+	private record FileStorePair(FileStore source, FileStore target) {
+	}
+
+	public static String formatBytes(long bytes) {
+		if (bytes < 1024) {
+			return String.format("%d B", bytes);
+		}
+		int exponent = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+		return String.format("%.1f %siB", bytes / (double) (1L << (exponent * 10)), "KMGTPE".charAt(exponent - 1));
+	}
+
+	public static TransferStatistics transferFiles(String description, Collection<FileTransfer> transfers, TransferMode mode) throws IOException {
+		return transferFiles(description, transfers.stream().map(transfer -> transfer.target().getParent()).collect(Collectors.toSet()), transfers, mode, null);
+	}
+
+	/**
+	 * Creates all provided directories and transfers all provided files.
+	 *
+	 * @param description        Description used for reporting, may be null to disable reporting
+	 * @param directories        Directories to create in the target (including directories without files)
+	 * @param transfers          File transfers
+	 * @param mode               Whether files should be hardlinked (if possible) or copied
+	 * @param contentTransformer Transformer applied to copied files, may be null
+	 * @return statistics about the transfer
+	 * @throws IOException if any file cannot be transferred
+	 */
+	public static TransferStatistics transferFiles(String description, Collection<Path> directories, Collection<FileTransfer> transfers, TransferMode mode, MiscHelper.PathContentTransformer contentTransformer) throws IOException {
+		long timeStart = System.nanoTime();
+		// Writing into non-default file systems (e.g. archives) is serialized by the file system implementation anyway
+		boolean defaultFileSystemTarget = transfers.stream().allMatch(transfer -> transfer.target().getFileSystem() == FileSystems.getDefault())
+			&& directories.stream().allMatch(directory -> directory.getFileSystem() == FileSystems.getDefault());
+		int threads = defaultFileSystemTarget ? Library.CONF_GLOBAL.fileTransferThreads() : 1;
+		AtomicLong bytes = new AtomicLong();
+		AtomicLong hardlinked = new AtomicLong();
+		AtomicLong copied = new AtomicLong();
+		ConcurrentHashMap<Path, FileStore> fileStores = new ConcurrentHashMap<>();
+		Set<FileStorePair> hardlinkUnsupported = ConcurrentHashMap.newKeySet();
+		try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("File-Transfer-", 0).factory())) {
+			// Directories: sorted, so that parents are usually created before their children are attempted
+			List<Path> sortedDirectories = directories.stream().distinct().sorted(Comparator.comparingInt(Path::getNameCount)).toList();
+			MiscHelper.runTasksInParallelAndAwaitResult(threads, executor, batches(sortedDirectories, batch -> {
+				for (Path directory : batch) {
+					Files.createDirectories(directory);
+				}
+			}));
+			// Files
+			MiscHelper.runTasksInParallelAndAwaitResult(threads, executor, batches(List.copyOf(transfers), batch -> {
+				for (FileTransfer transfer : batch) {
+					if (mode == TransferMode.HARDLINK && contentTransformer == null && tryHardlink(transfer, fileStores, hardlinkUnsupported)) {
+						bytes.addAndGet(Files.size(transfer.target()));
+						hardlinked.incrementAndGet();
+						continue;
+					}
+					if (contentTransformer != null && contentTransformer.shouldTransform(transfer.source())) {
+						byte[] content = contentTransformer.transform(transfer.source(), Files.readAllBytes(transfer.source()));
+						Files.write(transfer.target(), content, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+						bytes.addAndGet(content.length);
+					} else {
+						Files.copy(transfer.source(), transfer.target(), StandardCopyOption.REPLACE_EXISTING);
+						bytes.addAndGet(Files.size(transfer.target()));
+					}
+					copied.incrementAndGet();
+				}
+			}));
+		}
+		TransferStatistics statistics = new TransferStatistics(transfers.size(), bytes.get(), hardlinked.get(), copied.get(), Duration.ofNanos(System.nanoTime() - timeStart));
+		if (description != null && statistics.files() >= REPORT_THRESHOLD) {
+			MiscHelper.println("%s: %s", description, statistics.describe());
+		}
+		return statistics;
+	}
+
+	private interface BatchAction<T> {
+		void run(List<T> batch) throws IOException;
+	}
+
+	private static <T> List<Callable<Void>> batches(List<T> elements, BatchAction<T> action) {
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < elements.size(); i += BATCH_SIZE) {
+			List<T> batch = elements.subList(i, Math.min(i + BATCH_SIZE, elements.size()));
+			tasks.add(() -> {
+				action.run(batch);
+				return null;
+			});
+		}
+		return tasks;
+	}
+
+	private static FileStore getFileStore(Path path, ConcurrentHashMap<Path, FileStore> fileStores) throws IOException {
+		Path directory = path.toAbsolutePath().getParent();
+		FileStore fileStore = fileStores.get(directory);
+		if (fileStore == null) {
+			fileStore = Files.getFileStore(directory);
+			fileStores.put(directory, fileStore);
+		}
+		return fileStore;
+	}
+
+	private static boolean tryHardlink(FileTransfer transfer, ConcurrentHashMap<Path, FileStore> fileStores, Set<FileStorePair> hardlinkUnsupported) throws IOException {
+		if (transfer.source().getFileSystem() != transfer.target().getFileSystem()) {
+			return false;
+		}
+		FileStorePair fileStorePair = new FileStorePair(getFileStore(transfer.source(), fileStores), getFileStore(transfer.target(), fileStores));
+		if (hardlinkUnsupported.contains(fileStorePair)) {
+			return false;
+		}
+		if (!fileStorePair.source().equals(fileStorePair.target())) {
+			// Hardlinks never cross file stores (EXDEV)
+			if (hardlinkUnsupported.add(fileStorePair)) {
+				MiscHelper.println("Hardlinks from %s to %s are not possible (different file stores), copying instead", fileStorePair.source(), fileStorePair.target());
+			}
+			return false;
+		}
+		try {
+			try {
+				Files.createLink(transfer.target(), transfer.source());
+			} catch (FileAlreadyExistsException e) {
+				Files.delete(transfer.target());
+				Files.createLink(transfer.target(), transfer.source());
+			}
+			return true;
+		} catch (UnsupportedOperationException | AccessDeniedException e) {
+			// Not supported by the file system, or not permitted: this applies to all hardlinks within the file store
+			if (hardlinkUnsupported.add(fileStorePair)) {
+				MiscHelper.println("Hardlinks from %s to %s are not possible (%s), copying instead", fileStorePair.source(), fileStorePair.target(), e);
+			}
+			return false;
+		} catch (IOException e) {
+			// Only this file is copied, e.g. if it was replaced concurrently
+			return false;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.github.winplay02.gitcraft.util;
+
+import com.github.winplay02.gitcraft.LibraryPaths;
+import com.google.gson.reflect.TypeToken;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent mapping from SHA1 checksums of content-addressed files (e.g. asset objects) to their git blob ids.
+ * This allows staging these files in a repository, without reading them again.
+ */
+public class GitBlobIdCache {
+	private static ConcurrentHashMap<String, String> sha1BlobIdMap = new ConcurrentHashMap<>();
+
+	public static void saveGitBlobIdCache() throws IOException {
+		try {
+			SerializationHelper.writeAllToPath(LibraryPaths.GIT_BLOB_ID_CACHE, SerializationHelper.serialize(sha1BlobIdMap));
+		} catch (NoSuchFileException ignored) {}
+		// Same as the maven cache, this can only fail in a testing environment, after cleaning up
+	}
+
+	public static void loadGitBlobIdCache() throws IOException {
+		if (Files.exists(LibraryPaths.GIT_BLOB_ID_CACHE)) {
+			sha1BlobIdMap = SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(LibraryPaths.GIT_BLOB_ID_CACHE), new TypeToken<ConcurrentHashMap<String, String>>() {});
+		}
+	}
+
+	/**
+	 * Looks up the git blob id of a file with a known SHA1 checksum.
+	 * If the blob id is not yet known, it is calculated from the file and remembered.
+	 *
+	 * @param sha1 SHA1 checksum of the file contents
+	 * @param file File, that is read if the blob id is not yet known
+	 * @return Git blob id of the file contents
+	 * @throws IOException if the file cannot be read
+	 */
+	public static ObjectId getBlobId(String sha1, Path file) throws IOException {
+		String cachedBlobId = sha1BlobIdMap.get(sha1);
+		if (cachedBlobId != null) {
+			return ObjectId.fromString(cachedBlobId);
+		}
+		ObjectId blobId;
+		try (InputStream stream = Files.newInputStream(file); ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+			blobId = formatter.idFor(Constants.OBJ_BLOB, Files.size(file), stream);
+		}
+		sha1BlobIdMap.put(sha1, blobId.name());
+		return blobId;
+	}
+}
@@ -0,0 +1,162 @@
+package com.github.winplay02.gitcraft.util;
+
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraphWriter;
+import org.eclipse.jgit.internal.storage.commitgraph.GraphCommits;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.internal.storage.file.Pack;
+import org.eclipse.jgit.internal.storage.file.PackIndex;
+import org.eclipse.jgit.internal.storage.pack.PackExt;
+import org.eclipse.jgit.internal.storage.pack.PackWriter;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.pack.PackConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Adapter for the parts of JGit's file based storage, that are only reachable through {@code org.eclipse.jgit.internal} (packs, pack writing, commit-graphs and statistics).
+ * <p>
+ * JGit makes no compatibility guarantees for its internal packages, so every usage is kept in this class, and the JGit version is pinned in {@code gradle.properties}.
+ * When upgrading JGit, only this class needs to be checked.
+ */
+final class JGitStorage {
+	/**
+	 * @param packFile    Path of the {@code .pack} file
+	 * @param objectCount Amount of objects in the pack
+	 */
+	record PackInfo(Path packFile, long objectCount) {
+	}
+
+	record Statistics(long packFiles, long packedObjects, long packedBytes, long looseObjects, long looseBytes, long bitmaps) {
+	}
+
+	private JGitStorage() {
+	}
+
+	private static FileRepository getFileRepository(Repository repository) {
+		if (!(repository instanceof FileRepository fileRepository)) {
+			MiscHelper.panic("Incremental maintenance is only supported for file based repositories");
+			return null;
+		}
+		return fileRepository;
+	}
+
+	static Path getObjectsDirectory(Repository repository) {
+		return getFileRepository(repository).getObjectDatabase().getDirectory().toPath();
+	}
+
+	static Path getPackDirectory(Repository repository) {
+		return getFileRepository(repository).getObjectDatabase().getPackDirectory().toPath();
+	}
+
+	/**
+	 * @param repository Repository
+	 * @return all packs, that are not marked to be kept
+	 */
+	static List<PackInfo> listPacks(Repository repository) throws IOException {
+		List<PackInfo> packs = new ArrayList<>();
+		for (Pack pack : getFileRepository(repository).getObjectDatabase().getPacks()) {
+			if (!pack.shouldBeKept()) {
+				packs.add(new PackInfo(pack.getPackFile().toPath(), pack.getIndex().getObjectCount()));
+			}
+		}
+		return packs;
+	}
+
+	/**
+	 * @param repository Repository
+	 * @param packs      Packs, previously returned by {@link #listPacks(Repository)}
+	 * @return ids of all objects contained in the provided packs
+	 */
+	static Set<ObjectId> listPackedObjects(Repository repository, Collection<PackInfo> packs) {
+		Set<Path> packFiles = new HashSet<>();
+		for (PackInfo pack : packs) {
+			packFiles.add(pack.packFile());
+		}
+		Set<ObjectId> objects = new LinkedHashSet<>();
+		for (Pack pack : getFileRepository(repository).getObjectDatabase().getPacks()) {
+			if (packFiles.contains(pack.getPackFile().toPath())) {
+				for (PackIndex.MutableEntry entry : pack) {
+					objects.add(entry.toObjectId());
+				}
+			}
+		}
+		return objects;
+	}
+
+	/**
+	 * @return all file extensions (including the dot), that belong to a pack
+	 */
+	static List<String> getPackExtensions() {
+		return Arrays.stream(PackExt.values()).map(PackExt::getExtension).toList();
+	}
+
+	static String getPackExtension() {
+		return PackExt.PACK.getExtension();
+	}
+
+	static String getIndexExtension() {
+		return PackExt.INDEX.getExtension();
+	}
+
+	/**
+	 * Writes a pack and its index containing the provided objects.
+	 *
+	 * @param repository  Repository
+	 * @param objectIds   Objects to pack
+	 * @param packStream  Stream receiving the pack
+	 * @param indexStream Stream receiving the index, written after the pack
+	 * @return name of the pack (without {@code pack-} prefix and extension)
+	 */
+	static String writePack(Repository repository, Collection<ObjectId> objectIds, OutputStream packStream, OutputStream indexStream) throws IOException {
+		try (ObjectReader reader = repository.newObjectReader();
+			 RevWalk walk = new RevWalk(reader);
+			 PackWriter packWriter = new PackWriter(new PackConfig(repository), reader)) {
+			List<RevObject> objects = new ArrayList<>(objectIds.size());
+			for (ObjectId objectId : objectIds) {
+				objects.add(walk.lookupAny(objectId, reader.open(objectId).getType()));
+			}
+			packWriter.preparePack(objects.iterator());
+			packWriter.writePack(NullProgressMonitor.INSTANCE, NullProgressMonitor.INSTANCE, packStream);
+			packWriter.writeIndex(indexStream);
+			return packWriter.computeName().name();
+		}
+	}
+
+	/**
+	 * Writes a commit-graph containing all commits reachable from the provided commits.
+	 *
+	 * @param wants  Commits, parsed by the provided walk
+	 * @param walk   Walk
+	 * @param stream Stream receiving the commit-graph
+	 */
+	static void writeCommitGraph(Set<? extends ObjectId> wants, RevWalk walk, OutputStream stream) throws IOException {
+		new CommitGraphWriter(GraphCommits.fromWalk(NullProgressMonitor.INSTANCE, wants, walk)).write(NullProgressMonitor.INSTANCE, stream);
+	}
+
+	static Statistics getStatistics(Repository repository) throws IOException {
+		GC.RepoStatistics statistics = new GC(getFileRepository(repository)).getStatistics();
+		return new Statistics(
+			statistics.numberOfPackFiles,
+			statistics.numberOfPackedObjects,
+			statistics.sizeOfPackedObjects,
+			statistics.numberOfLooseObjects,
+			statistics.sizeOfLooseObjects,
+			statistics.numberOfBitmaps
+		);
+	}
+}
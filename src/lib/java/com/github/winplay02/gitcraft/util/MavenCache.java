@@ -4,25 +4,153 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public record MavenCache(HashMap<String, String> shaUrlMap) {
-	public MavenCache() {
-		this(new HashMap<>());
+/**
+ * Persistent, thread-safe cache of SHA1 checksums of maven artifacts, looked up from their ".sha1" files.
+ * <p>
+ * Missing ".sha1" files are remembered as well, but only for {@link #NEGATIVE_TTL}, as they may be published later.
+ * Concurrent lookups of the same URL are deduplicated, so only one request is made.
+ * As checksums are persisted by this cache, lookups bypass the {@link MetadataCache}.
+ */
+public final class MavenCache {
+	private static final Duration NEGATIVE_TTL = Duration.ofDays(1);
+	private static final int MAX_PARALLEL_LOOKUPS = 32;
+
+	private final ConcurrentHashMap<String, String> shaUrlMap = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Long> missingUrlMap = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, CompletableFuture<String>> runningLookups = new ConcurrentHashMap<>();
+
+	/**
+	 * Persisted form of the cache. Caches written by older versions only contain {@link #shaUrlMap}, with null values for missing files.
+	 *
+	 * @param shaUrlMap     Checksums by URL of the ".sha1" file
+	 * @param missingUrlMap Time a ".sha1" file was found to be missing (in milliseconds), by its URL
+	 */
+	private record Stored(HashMap<String, String> shaUrlMap, HashMap<String, Long> missingUrlMap) {
+	}
+
+	/**
+	 * Loads the cache, if it exists.
+	 *
+	 * @param path Path of the cache
+	 * @return cache
+	 */
+	public static MavenCache load(Path path) throws IOException {
+		MavenCache cache = new MavenCache();
+		if (Files.exists(path)) {
+			Stored stored = SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(path), Stored.class);
+			if (stored != null && stored.shaUrlMap() != null) {
+				// Missing files of older caches were never expiring, they are looked up again
+				stored.shaUrlMap().forEach((url, sha1) -> {
+					if (sha1 != null) {
+						cache.shaUrlMap.put(url, sha1);
+					}
+				});
+			}
+			if (stored != null && stored.missingUrlMap() != null) {
+				cache.missingUrlMap.putAll(stored.missingUrlMap());
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Saves the cache atomically, so that concurrent processes and crashes never leave a partially written cache behind.
+	 *
+	 * @param path Path of the cache
+	 */
+	public void save(Path path) throws IOException {
+		Path temporaryPath = path.resolveSibling(String.format("%s.%s.tmp", path.getFileName(), System.nanoTime()));
+		SerializationHelper.writeAllToPath(temporaryPath, SerializationHelper.serialize(new Stored(new HashMap<>(this.shaUrlMap), new HashMap<>(this.missingUrlMap))));
+		Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private boolean isKnownMissing(String urlSha1) {
+		Long missingSince = this.missingUrlMap.get(urlSha1);
+		return missingSince != null && System.currentTimeMillis() - missingSince < NEGATIVE_TTL.toMillis();
 	}
 
+	/**
+	 * @param urlSha1 URL of the ".sha1" file of an artifact
+	 * @return SHA1 checksum of the artifact, null if the ".sha1" file does not exist
+	 */
 	public String getSha1ForURL(String urlSha1) throws IOException {
-		if (!this.shaUrlMap.containsKey(urlSha1)) {
+		String cachedSha1 = this.shaUrlMap.get(urlSha1);
+		if (cachedSha1 != null) {
+			return cachedSha1;
+		}
+		if (this.isKnownMissing(urlSha1)) {
+			return null;
+		}
+		CompletableFuture<String> lookup = new CompletableFuture<>();
+		CompletableFuture<String> runningLookup = this.runningLookups.putIfAbsent(urlSha1, lookup);
+		if (runningLookup != null) {
+			try {
+				return runningLookup.join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+			}
+		}
+		try {
 			String sha1 = null;
 			try {
-				sha1 = FileSystemNetworkManager.fetchAllFromURLSync(new URL(urlSha1));
+				sha1 = FileSystemNetworkManager.fetchAllFromURLSyncUncached(new URL(urlSha1)).trim();
 			} catch (FileNotFoundException ignored) {
 			} catch (URISyntaxException | InterruptedException e) {
 				throw new IOException(e);
 			}
-			this.shaUrlMap.put(urlSha1, sha1);
+			if (sha1 != null) {
+				this.shaUrlMap.put(urlSha1, sha1);
+				this.missingUrlMap.remove(urlSha1);
+			} else {
+				this.missingUrlMap.put(urlSha1, System.currentTimeMillis());
+			}
+			lookup.complete(sha1);
+			return sha1;
+		} catch (IOException | RuntimeException e) {
+			lookup.completeExceptionally(e);
+			throw e;
+		} finally {
+			this.runningLookups.remove(urlSha1, lookup);
 		}
+	}
 
-		return this.shaUrlMap.get(urlSha1);
+	/**
+	 * Looks up the checksums of many artifacts in parallel, so that later lookups are answered from the cache (or wait for the running lookup).
+	 *
+	 * @param urlsSha1 URLs of ".sha1" files
+	 */
+	public void prefetch(Collection<String> urlsSha1) {
+		List<Callable<String>> lookups = urlsSha1.stream()
+			.distinct()
+			.filter(urlSha1 -> !this.shaUrlMap.containsKey(urlSha1) && !this.isKnownMissing(urlSha1))
+			.<Callable<String>>map(urlSha1 -> () -> {
+				try {
+					return this.getSha1ForURL(urlSha1);
+				} catch (IOException e) {
+					// Failures are reported by the lookup on demand
+					return null;
+				}
+			})
+			.toList();
+		if (lookups.size() <= 1) {
+			return; // nothing to batch, the lookup happens on demand
+		}
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			MiscHelper.runTasksInParallelAndAwaitResult(MAX_PARALLEL_LOOKUPS, executor, lookups);
+		}
 	}
 }
@@ -0,0 +1,150 @@
+package com.github.winplay02.gitcraft.util;
+
+import com.github.winplay02.gitcraft.Library;
+import com.github.winplay02.gitcraft.LibraryPaths;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of fetched metadata (version manifests, meta listings, GitHub contents API responses, ...).
+ * <p>
+ * Every response is stored along with its HTTP validators (ETag and Last-Modified).
+ * Within the time-to-live of its source, a cached response is used without any request. Afterwards, it is revalidated using a conditional request,
+ * which only transfers the response again if it has changed.
+ * Entries that have neither been fetched nor revalidated for {@link #MAX_UNUSED_AGE} are {@link #prune() pruned}.
+ */
+public final class MetadataCache {
+	private static final Duration DEFAULT_TTL = Duration.ofMinutes(15);
+	private static final Duration MAX_UNUSED_AGE = Duration.ofDays(30);
+	private static final Map<String, Duration> HOST_TTLS = Map.of(
+		// New versions should be noticed quickly
+		"piston-meta.mojang.com", Duration.ofMinutes(5),
+		"launchermeta.mojang.com", Duration.ofMinutes(5),
+		"meta.fabricmc.net", Duration.ofMinutes(30),
+		"meta.ornithemc.net", Duration.ofMinutes(30),
+		// Archives change rarely
+		"skyrising.github.io", Duration.ofHours(6),
+		"meta.omniarchive.uk", Duration.ofHours(6),
+		// Unauthenticated requests are limited to 60 per hour
+		"api.github.com", Duration.ofHours(1),
+		"raw.githubusercontent.com", Duration.ofHours(1)
+	);
+
+	private MetadataCache() {}
+
+	/**
+	 * @param url          Fetched URL
+	 * @param etag         ETag of the response, may be null
+	 * @param lastModified Last-Modified of the response, may be null
+	 * @param validatedAt  Time the response was last fetched or revalidated, in milliseconds
+	 * @param body         Body of the response
+	 */
+	public record Entry(String url, String etag, String lastModified, long validatedAt, String body) {
+		/**
+		 * @return whether the entry can be used without revalidation
+		 */
+		public boolean isFresh() {
+			return System.currentTimeMillis() - this.validatedAt() < getTtl(URI.create(this.url())).toMillis();
+		}
+
+		/**
+		 * @return this entry, revalidated now
+		 */
+		public Entry revalidated() {
+			return new Entry(this.url(), this.etag(), this.lastModified(), System.currentTimeMillis(), this.body());
+		}
+	}
+
+	/**
+	 * @param uri URL of the metadata
+	 * @return time-to-live of responses of the source of the URL
+	 */
+	public static Duration getTtl(URI uri) {
+		return uri.getHost() == null ? DEFAULT_TTL : HOST_TTLS.getOrDefault(uri.getHost().toLowerCase(Locale.ROOT), DEFAULT_TTL);
+	}
+
+	private static Path getEntryPath(String url) {
+		try {
+			String key = HexFormat.of().formatHex(MessageDigest.getInstance("SHA1").digest(url.getBytes(StandardCharsets.UTF_8)));
+			return LibraryPaths.METADATA_CACHE.resolve(key.substring(0, 2)).resolve(key + ".json");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param url Fetched URL
+	 * @return cached response, regardless of whether it is fresh
+	 */
+	public static Optional<Entry> get(String url) {
+		Path entryPath = getEntryPath(url);
+		if (!Files.isRegularFile(entryPath)) {
+			return Optional.empty();
+		}
+		try {
+			Entry entry = SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(entryPath), Entry.class);
+			// Hash collisions and damaged entries are treated as misses
+			return entry != null && url.equals(entry.url()) && entry.body() != null ? Optional.of(entry) : Optional.empty();
+		} catch (IOException | JsonParseException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Stores a response. Concurrent processes may store the same URL at the same time, the last one wins.
+	 *
+	 * @param entry Response
+	 */
+	public static void put(Entry entry) throws IOException {
+		Path entryPath = getEntryPath(entry.url());
+		Files.createDirectories(entryPath.getParent());
+		Path temporaryPath = entryPath.resolveSibling(String.format("%s.%s.tmp", entryPath.getFileName(), System.nanoTime()));
+		SerializationHelper.writeAllToPath(temporaryPath, SerializationHelper.serialize(entry));
+		Files.move(temporaryPath, entryPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Removes entries (and left over temporary files), which have not been written for {@link #MAX_UNUSED_AGE}, e.g. of sources that are no longer used.
+	 * Every fetch or revalidation rewrites the entry, so the modification time is the time the entry was last used.
+	 * In offline mode, nothing is removed, as any cached response may still be needed.
+	 *
+	 * @return amount of removed files
+	 */
+	public static int prune() throws IOException {
+		if (Library.CONF_GLOBAL.offline() || !Files.isDirectory(LibraryPaths.METADATA_CACHE)) {
+			return 0;
+		}
+		long cutoff = System.currentTimeMillis() - MAX_UNUSED_AGE.toMillis();
+		int pruned = 0;
+		try (Stream<Path> entryPaths = Files.walk(LibraryPaths.METADATA_CACHE, 2)) {
+			for (Path entryPath : entryPaths.filter(Files::isRegularFile).toList()) {
+				try {
+					if (Files.getLastModifiedTime(entryPath).toMillis() < cutoff && Files.deleteIfExists(entryPath)) {
+						++pruned;
+					}
+				} catch (NoSuchFileException ignored) {
+					// Removed by a concurrent process
+				}
+			}
+		}
+		if (pruned > 0) {
+			MiscHelper.println("Pruned %s unused metadata cache entries", pruned);
+		}
+		return pruned;
+	}
+}
@@ -5,12 +5,9 @@ import com.github.winplay02.gitcraft.Library;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -59,18 +56,7 @@ public class MiscHelper {
 	}
 
 	public static void copyLargeDir(Path source, Path target) {
-		try (Stream<Path> walk = Files.walk(source)) {
-			for (Path path : (Iterable<? extends Path>) walk::iterator) {
-				Path resultPath = target.resolve(source.relativize(path).toString());
-				if (Files.isDirectory(path) && Files.notExists(resultPath)) {
-					Files.createDirectories(resultPath);
-				} else if (Files.isRegularFile(path)) {
-					Files.copy(path, resultPath, StandardCopyOption.REPLACE_EXISTING);
-				}
-			}
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
-		}
+		copyLargeDir(source, target, (PathContentTransformer) null);
 	}
 
 	public interface PathContentTransformer {
@@ -80,44 +66,25 @@ public class MiscHelper {
 	}
 
 	public static void copyLargeDir(Path source, Path target, PathContentTransformer contentTransformer) {
+		List<Path> directories = new ArrayList<>();
+		List<FileTransferHelper.FileTransfer> transfers = new ArrayList<>();
 		try (Stream<Path> walk = Files.walk(source)) {
 			for (Path path : (Iterable<? extends Path>) walk::iterator) {
 				Path resultPath = target.resolve(source.relativize(path).toString());
 				if (Files.isDirectory(path) && Files.notExists(resultPath)) {
-					Files.createDirectories(resultPath);
+					directories.add(resultPath);
 				} else if (Files.isRegularFile(path)) {
-					if (contentTransformer.shouldTransform(path)) {
-						Files.write(resultPath, contentTransformer.transform(path, Files.readAllBytes(path)), StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
-					} else {
-						Files.copy(path, resultPath, StandardCopyOption.REPLACE_EXISTING);
-					}
+					transfers.add(new FileTransferHelper.FileTransfer(path, resultPath));
 				}
 			}
+			FileTransferHelper.transferFiles(String.format("Copied %s", source), directories, transfers, FileTransferHelper.TransferMode.COPY, contentTransformer);
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
 	public static void copyLargeDirExcept(Path source, Path target, List<Path> exceptions) {
-		Map<Path, Integer> pathUsage = new HashMap<>();
-		try (Stream<Path> walk = Files.walk(source)) {
-			for (Path path : (Iterable<? extends Path>) walk::iterator) {
-				Path resultPath = target.resolve(source.relativize(path).toString());
-				if (exceptions.contains(path) || exceptions.stream().anyMatch(path::startsWith)) {
-					continue;
-				}
-				if (Files.isDirectory(path) && Files.notExists(resultPath)) {
-					Files.createDirectories(resultPath);
-					pathUsage.compute(resultPath.getParent(), (k, v) -> v == null ? 1 : v + 1);
-				} else if (Files.isRegularFile(path)) {
-					Files.copy(path, resultPath, StandardCopyOption.REPLACE_EXISTING);
-					pathUsage.compute(resultPath.getParent(), (k, v) -> v == null ? 1 : v + 1);
-				}
-			}
-			removeUnusedDirectories(pathUsage);
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
-		}
+		copyLargeDirExceptNoFileExt(source, target, exceptions, Set.of());
 	}
 
 	public static void moveLargeDir(Path source, Path target) throws IOException {
@@ -138,20 +105,24 @@ public class MiscHelper {
 		}
 	}
 
-	private static void removeUnusedDirectories(Map<Path, Integer> pathUsage) throws IOException {
-		// Remove unused directories
+	private static Set<Path> findUnusedDirectories(Map<Path, Integer> pathUsage) {
+		// Find directories that would remain empty, as all their contents have been excluded
+		Set<Path> unusedDirectories = new HashSet<>();
 		while (pathUsage.values().stream().anyMatch(num -> num == 0)) {
 			List<Path> unusedPaths = pathUsage.entrySet().stream().filter(entry -> entry.getValue() == 0).map(Map.Entry::getKey).toList();
 			for (Path uPath : unusedPaths) {
-				Files.delete(uPath);
+				unusedDirectories.add(uPath);
 				pathUsage.remove(uPath);
-				pathUsage.compute(uPath.getParent(), (k, v) -> Objects.requireNonNull(v) - 1);
+				pathUsage.computeIfPresent(uPath.getParent(), (k, v) -> v - 1);
 			}
 		}
+		return unusedDirectories;
 	}
 
 	public static void copyLargeDirExceptNoFileExt(Path source, Path target, List<Path> exceptions, Set<String> fileExtensionExceptions) {
 		Map<Path, Integer> pathUsage = new HashMap<>();
+		List<Path> directories = new ArrayList<>();
+		List<FileTransferHelper.FileTransfer> transfers = new ArrayList<>();
 		try (Stream<Path> walk = Files.walk(source)) {
 			for (Path path : (Iterable<? extends Path>) walk::iterator) {
 				Path resultPath = target.resolve(source.relativize(path).toString());
@@ -159,20 +130,20 @@ public class MiscHelper {
 					continue;
 				}
 				if (Files.isDirectory(path) && Files.notExists(resultPath)) {
-					Files.createDirectories(resultPath);
+					directories.add(resultPath);
 					pathUsage.compute(resultPath.getParent(), (k, v) -> v == null ? 1 : v + 1);
 				} else if (Files.isRegularFile(path)) {
 					if (fileExtensionExceptions.stream().noneMatch(ext -> path.toString().endsWith("." + ext))) {
-						Files.copy(path, resultPath, StandardCopyOption.REPLACE_EXISTING);
+						transfers.add(new FileTransferHelper.FileTransfer(path, resultPath));
 						pathUsage.compute(resultPath.getParent(), (k, v) -> v == null ? 1 : v + 1);
 					} else {
 						pathUsage.putIfAbsent(resultPath.getParent(), 0);
 					}
 				}
 			}
-			try {
-				removeUnusedDirectories(pathUsage);
-			} catch (DirectoryNotEmptyException ignored) {}
+			Set<Path> unusedDirectories = findUnusedDirectories(pathUsage);
+			directories.removeIf(unusedDirectories::contains);
+			FileTransferHelper.transferFiles(String.format("Copied %s", source), directories, transfers, FileTransferHelper.TransferMode.COPY, null);
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
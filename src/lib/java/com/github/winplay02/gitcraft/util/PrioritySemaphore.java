@@ -0,0 +1,62 @@
+package com.github.winplay02.gitcraft.util;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Counting semaphore, that grants permits to waiting threads in the order of their {@link DownloadPriority} (and in arrival order for equal priorities).
+ */
+public final class PrioritySemaphore {
+	private record Waiter(DownloadPriority priority, long sequence) {
+	}
+
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::sequence));
+	private int available;
+	private long sequence = 0L;
+
+	/**
+	 * @param permits Number of permits
+	 */
+	public PrioritySemaphore(int permits) {
+		this.available = permits;
+	}
+
+	/**
+	 * Waits until a permit is available, and no waiting thread has a higher priority.
+	 *
+	 * @param priority Priority of the current thread
+	 */
+	public synchronized void acquireUninterruptibly(DownloadPriority priority) {
+		if (this.available > 0 && this.waiters.isEmpty()) {
+			--this.available;
+			return;
+		}
+		Waiter waiter = new Waiter(priority, this.sequence++);
+		this.waiters.add(waiter);
+		boolean interrupted = false;
+		while (this.available <= 0 || this.waiters.peek() != waiter) {
+			try {
+				this.wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		this.waiters.poll();
+		--this.available;
+		if (this.available > 0 && !this.waiters.isEmpty()) {
+			// The next waiter may proceed as well
+			this.notifyAll();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Releases a permit, that was acquired before.
+	 */
+	public synchronized void release() {
+		++this.available;
+		this.notifyAll();
+	}
+}
@@ -0,0 +1,265 @@
+package com.github.winplay02.gitcraft.util;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reachability index of all commits of a repository.
+ * <p>
+ * All commits are walked once in topological order (children before parents), and every commit is assigned the set of refs containing it.
+ * The index also maps commit messages to commits, so that looking up commits of versions does not require walking the history again.
+ * Before each query, the current refs are compared to the indexed ones (without reading any objects):
+ * Deleted refs are just ignored, while new or moved refs are updated incrementally (lazily, on the next query):
+ * Starting from the new tip, only commits not yet containing the ref are visited, so a fast-forward only reads the new commits.
+ * If a ref was moved backwards or sideways, it is first removed from all commits (without reading any objects).
+ * Symbolic refs (e.g. HEAD) are answered through the ref they point to.
+ */
+public class RefContainmentIndex {
+	private final Repository repository;
+	private Map<String, ObjectId> indexedRefTargets = null;
+	// Commit each indexed ref was peeled to, when its containment was computed
+	private final Map<String, ObjectId> indexedRefCommits = new HashMap<>();
+	private final Map<String, Integer> refIndices = new HashMap<>();
+	private final Map<ObjectId, BitSet> containingRefs = new HashMap<>();
+	private final Map<String, List<ObjectId>> commitsByMessage = new HashMap<>();
+	// Refs of the current state, cached until the next query
+	private final List<Ref> currentRefs = new ArrayList<>();
+	private final BitSet currentRefMask = new BitSet();
+
+	public RefContainmentIndex(Repository repository) {
+		this.repository = repository;
+	}
+
+	private ObjectId peelToCommit(RevWalk walk, Ref ref) throws IOException {
+		if (!ref.isPeeled()) {
+			ref = this.repository.getRefDatabase().peel(ref);
+		}
+		ObjectId objectId = ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+		if (objectId == null) {
+			return null;
+		}
+		try {
+			return walk.parseCommit(objectId).copy();
+		} catch (MissingObjectException | IncorrectObjectTypeException ignored) {
+			return null;
+		}
+	}
+
+	/**
+	 * Compares the current refs to the indexed ones, and updates the index for every ref, that was created or moved.
+	 */
+	private void refresh() throws IOException {
+		List<Ref> refs = this.repository.getRefDatabase().getRefs();
+		Map<String, ObjectId> refTargets = new LinkedHashMap<>();
+		for (Ref ref : refs) {
+			if (!ref.isSymbolic() && ref.getObjectId() != null) {
+				refTargets.put(ref.getName(), ref.getObjectId());
+			}
+		}
+		if (this.indexedRefTargets == null) {
+			this.rebuild(refs);
+		} else {
+			for (Ref ref : refs) {
+				if (!ref.isSymbolic() && ref.getObjectId() != null && !ref.getObjectId().equals(this.indexedRefTargets.get(ref.getName()))) {
+					this.update(ref);
+				}
+			}
+		}
+		this.indexedRefTargets = refTargets;
+		this.currentRefs.clear();
+		this.currentRefMask.clear();
+		for (Ref ref : refs) {
+			Integer refIndex = this.refIndices.get(ref.getLeaf().getName());
+			if (refIndex != null) {
+				this.currentRefs.add(ref);
+				this.currentRefMask.set(refIndex);
+			}
+		}
+	}
+
+	private void rebuild(List<Ref> refs) throws IOException {
+		long timeStart = System.nanoTime();
+		this.refIndices.clear();
+		this.indexedRefCommits.clear();
+		this.containingRefs.clear();
+		this.commitsByMessage.clear();
+		try (RevWalk walk = new RevWalk(this.repository)) {
+			walk.sort(RevSort.TOPO);
+			for (Ref ref : refs) {
+				if (ref.isSymbolic()) {
+					continue;
+				}
+				ObjectId commitId = this.peelToCommit(walk, ref);
+				if (commitId == null) {
+					continue;
+				}
+				int refIndex = this.refIndices.size();
+				this.refIndices.put(ref.getName(), refIndex);
+				this.indexedRefCommits.put(ref.getName(), commitId);
+				this.containingRefs.computeIfAbsent(commitId, _ -> new BitSet()).set(refIndex);
+				walk.markStart(walk.parseCommit(commitId));
+			}
+			if (this.refIndices.isEmpty()) {
+				return;
+			}
+			for (RevCommit commit : walk) {
+				ObjectId commitId = commit.copy();
+				BitSet containing = this.containingRefs.computeIfAbsent(commitId, _ -> new BitSet());
+				// All children are emitted before their parents, so the set of refs is complete at this point
+				for (RevCommit parent : commit.getParents()) {
+					this.containingRefs.computeIfAbsent(parent.copy(), _ -> new BitSet()).or(containing);
+				}
+				this.commitsByMessage.computeIfAbsent(commit.getFullMessage(), _ -> new ArrayList<>(1)).add(commitId);
+			}
+		}
+		MiscHelper.println("Indexed reachability of %s commits from %s refs (%.2fs)", this.commitsByMessage.values().stream().mapToInt(List::size).sum(), this.refIndices.size(), (System.nanoTime() - timeStart) / 1e9d);
+	}
+
+	/**
+	 * Updates the index for a single ref, that was created or moved since it was indexed.
+	 */
+	private void update(Ref ref) throws IOException {
+		try (RevWalk walk = new RevWalk(this.repository)) {
+			ObjectId commitId = this.peelToCommit(walk, ref);
+			Integer refIndex = this.refIndices.get(ref.getName());
+			ObjectId previousCommitId = this.indexedRefCommits.get(ref.getName());
+			if (refIndex != null && (commitId == null || previousCommitId == null || !this.isAncestor(walk, previousCommitId, commitId))) {
+				// Moved backwards or sideways, commits only reachable from the previous tip no longer contain the ref
+				for (BitSet refs : this.containingRefs.values()) {
+					refs.clear(refIndex);
+				}
+			}
+			if (commitId == null) {
+				this.indexedRefCommits.remove(ref.getName());
+				return;
+			}
+			if (refIndex == null) {
+				refIndex = this.refIndices.size();
+				this.refIndices.put(ref.getName(), refIndex);
+			}
+			this.indexedRefCommits.put(ref.getName(), commitId);
+			this.markContaining(walk, commitId, refIndex);
+		}
+	}
+
+	private boolean isAncestor(RevWalk walk, ObjectId ancestorId, ObjectId commitId) throws IOException {
+		try {
+			return walk.isMergedInto(walk.parseCommit(ancestorId), walk.parseCommit(commitId));
+		} catch (MissingObjectException | IncorrectObjectTypeException ignored) {
+			return false;
+		} finally {
+			walk.reset();
+		}
+	}
+
+	/**
+	 * Marks the commit and all its ancestors as contained in the ref. As the ancestors of a commit containing a ref contain it as well, the walk stops at commits already marked.
+	 */
+	private void markContaining(RevWalk walk, ObjectId commitId, int refIndex) throws IOException {
+		Deque<ObjectId> pending = new ArrayDeque<>();
+		pending.push(commitId);
+		while (!pending.isEmpty()) {
+			ObjectId pendingId = pending.pop();
+			BitSet containing = this.containingRefs.get(pendingId);
+			if (containing != null && containing.get(refIndex)) {
+				continue;
+			}
+			RevCommit commit = walk.parseCommit(pendingId);
+			if (containing == null) {
+				containing = new BitSet();
+				this.containingRefs.put(commit.copy(), containing);
+				this.commitsByMessage.computeIfAbsent(commit.getFullMessage(), _ -> new ArrayList<>(1)).add(commit.copy());
+			}
+			containing.set(refIndex);
+			for (RevCommit parent : commit.getParents()) {
+				pending.push(parent.copy());
+			}
+		}
+	}
+
+	private List<Ref> toRefs(BitSet refs) {
+		List<Ref> result = new ArrayList<>();
+		if (refs == null) {
+			return result;
+		}
+		for (Ref ref : this.currentRefs) {
+			if (refs.get(this.refIndices.get(ref.getLeaf().getName()))) {
+				result.add(ref);
+			}
+		}
+		return result;
+	}
+
+	private boolean isReachable(AnyObjectId commitId) {
+		BitSet refs = this.containingRefs.get(commitId);
+		return refs != null && refs.intersects(this.currentRefMask);
+	}
+
+	/**
+	 * @param commitId Commit
+	 * @return all refs (including symbolic refs), from which the commit is reachable
+	 */
+	public synchronized List<Ref> getRefsContaining(AnyObjectId commitId) throws IOException {
+		this.refresh();
+		return this.toRefs(this.containingRefs.get(commitId));
+	}
+
+	/**
+	 * Batched version of {@link #getRefsContaining(AnyObjectId)}, refreshing the index at most once.
+	 *
+	 * @param commitIds Commits
+	 * @return refs containing each commit, keyed by the provided commits
+	 */
+	public synchronized <T extends AnyObjectId> Map<T, List<Ref>> getRefsContaining(Collection<T> commitIds) throws IOException {
+		this.refresh();
+		Map<T, List<Ref>> result = new LinkedHashMap<>();
+		for (T commitId : commitIds) {
+			result.put(commitId, this.toRefs(this.containingRefs.get(commitId)));
+		}
+		return result;
+	}
+
+	/**
+	 * @param commitId Commit
+	 * @param refName  Name of the ref (e.g. a branch), may be symbolic
+	 * @return whether the commit is reachable from the ref, false if the ref does not exist
+	 */
+	public synchronized boolean isReachableFrom(AnyObjectId commitId, String refName) throws IOException {
+		this.refresh();
+		Ref ref = this.repository.getRefDatabase().findRef(refName);
+		if (ref == null) {
+			return false;
+		}
+		Integer refIndex = this.refIndices.get(ref.getLeaf().getName());
+		BitSet refs = this.containingRefs.get(commitId);
+		return refIndex != null && refs != null && refs.get(refIndex);
+	}
+
+	/**
+	 * @param message Full commit message
+	 * @return any commit with the provided message, that is reachable from any ref
+	 */
+	public synchronized Optional<ObjectId> findCommitByMessage(String message) throws IOException {
+		this.refresh();
+		return this.commitsByMessage.getOrDefault(message, List.of()).stream().filter(this::isReachable).findFirst();
+	}
+}
@@ -16,8 +16,8 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.util.Collection;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 
@@ -64,16 +64,23 @@ public class RemoteHelper {
 
 	public static void saveMavenCache() throws IOException {
 		try {
-			SerializationHelper.writeAllToPath(LibraryPaths.MAVEN_CACHE, SerializationHelper.serialize(mavenCache));
+			mavenCache.save(LibraryPaths.MAVEN_CACHE);
 		} catch (NoSuchFileException ignored) {}
 		// If it can't save, it probably means, we're in a testing environment, after cleaning up
 		// If this occurs during normal use, it just won't cache anything. Too bad.
 	}
 
 	public static void loadMavenCache() throws IOException {
-		if (Files.exists(LibraryPaths.MAVEN_CACHE)) {
-			mavenCache = SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(LibraryPaths.MAVEN_CACHE), MavenCache.class);
-		}
+		mavenCache = MavenCache.load(LibraryPaths.MAVEN_CACHE);
+	}
+
+	/**
+	 * Looks up the checksums of many maven artifacts in parallel, instead of one after another when they are needed.
+	 *
+	 * @param mavenUrls URLs of maven artifacts
+	 */
+	public static void prefetchMavenChecksums(Collection<String> mavenUrls) {
+		mavenCache.prefetch(mavenUrls.stream().map(mavenUrl -> urlencodedURL(mavenUrl + ".sha1")).toList());
 	}
 
 	public static ArtifactMetadata createMavenURLFromMavenArtifact(String mavenUrl) throws IOException {
@@ -0,0 +1,258 @@
+package com.github.winplay02.gitcraft.util;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Incremental maintenance of a repository, as an alternative to a full garbage collection.
+ * <p>
+ * Loose objects are packed into a new pack, small packs are combined with a geometric progression (each pack has at least {@link #GEOMETRIC_FACTOR} times the objects of the next smaller pack),
+ * and a commit-graph is written. Reachability bitmaps can only be built for a pack containing all objects, so they are only written, if all packs would be combined anyway.
+ * This way, the cost of maintenance is proportional to the amount of new objects, instead of the size of the repository.
+ * <p>
+ * Access to JGit internals (packs, pack writing, commit-graphs) goes through {@link JGitStorage}.
+ */
+public class RepoMaintenance {
+	public static final int GEOMETRIC_FACTOR = 2;
+	/**
+	 * Fan-out directory used to estimate the amount of loose objects, in the same way git does
+	 */
+	private static final String LOOSE_OBJECT_SAMPLE_DIRECTORY = "17";
+
+	private static Path getObjectsDirectory(RepoWrapper repo) {
+		return JGitStorage.getObjectsDirectory(repo.getGit().getRepository());
+	}
+
+	/**
+	 * Runs all incremental maintenance tasks, each reporting its timing and the resulting repository statistics.
+	 *
+	 * @param repo Repository
+	 */
+	public static void runIncrementalMaintenance(RepoWrapper repo) throws IOException, GitAPIException {
+		MiscHelper.executeTimedStep("Packing loose objects...", () -> packLooseObjects(repo));
+		printStatistics(repo);
+		MiscHelper.executeTimedStep("Repacking geometrically...", () -> geometricRepack(repo));
+		printStatistics(repo);
+		MiscHelper.executeTimedStep("Writing commit-graph...", () -> writeCommitGraph(repo));
+	}
+
+	/**
+	 * Packs all loose objects, if there are (approximately) more loose objects than the provided threshold.
+	 *
+	 * @param repo      Repository
+	 * @param threshold Amount of loose objects, a value of 0 or less disables packing
+	 */
+	public static void packLooseObjectsIfNeeded(RepoWrapper repo, int threshold) throws IOException {
+		if (threshold <= 0) {
+			return;
+		}
+		long estimatedLooseObjects = estimateLooseObjects(repo);
+		if (estimatedLooseObjects > threshold) {
+			MiscHelper.executeTimedStep(String.format("Packing approximately %s loose objects...", estimatedLooseObjects), () -> packLooseObjects(repo));
+			printStatistics(repo);
+		}
+	}
+
+	public static long estimateLooseObjects(RepoWrapper repo) throws IOException {
+		Path sampleDirectory = getObjectsDirectory(repo).resolve(LOOSE_OBJECT_SAMPLE_DIRECTORY);
+		if (!Files.isDirectory(sampleDirectory)) {
+			return 0;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(sampleDirectory)) {
+			long count = 0;
+			for (Path ignored : stream) {
+				++count;
+			}
+			return count * 256;
+		}
+	}
+
+	private static List<ObjectId> listLooseObjects(RepoWrapper repo) throws IOException {
+		List<ObjectId> looseObjects = new ArrayList<>();
+		Path objectsDirectory = getObjectsDirectory(repo);
+		for (int fanOut = 0; fanOut < 256; ++fanOut) {
+			String fanOutName = String.format("%02x", fanOut);
+			Path fanOutDirectory = objectsDirectory.resolve(fanOutName);
+			if (!Files.isDirectory(fanOutDirectory)) {
+				continue;
+			}
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(fanOutDirectory)) {
+				for (Path object : stream) {
+					String objectName = fanOutName + object.getFileName().toString();
+					if (ObjectId.isId(objectName)) {
+						looseObjects.add(ObjectId.fromString(objectName));
+					}
+				}
+			}
+		}
+		return looseObjects;
+	}
+
+	/**
+	 * Moves all loose objects into a new pack.
+	 *
+	 * @param repo Repository
+	 */
+	public static void packLooseObjects(RepoWrapper repo) throws IOException {
+		List<ObjectId> looseObjects = listLooseObjects(repo);
+		if (looseObjects.isEmpty()) {
+			return;
+		}
+		writePack(repo, looseObjects);
+		Path objectsDirectory = getObjectsDirectory(repo);
+		for (ObjectId looseObject : looseObjects) {
+			String name = looseObject.name();
+			Files.deleteIfExists(objectsDirectory.resolve(name.substring(0, 2)).resolve(name.substring(2)));
+		}
+		MiscHelper.println("Packed %s loose objects", looseObjects.size());
+	}
+
+	/**
+	 * Combines the smallest packs, so that the remaining packs form a geometric progression.
+	 * If this would combine all packs, a full garbage collection is run instead, which also writes reachability bitmaps.
+	 *
+	 * @param repo Repository
+	 */
+	public static void geometricRepack(RepoWrapper repo) throws IOException, GitAPIException {
+		Repository repository = repo.getGit().getRepository();
+		List<JGitStorage.PackInfo> packs = JGitStorage.listPacks(repository).stream().sorted(Comparator.comparingLong(JGitStorage.PackInfo::objectCount)).toList();
+		int split = findGeometricSplit(packs.stream().mapToLong(JGitStorage.PackInfo::objectCount).toArray());
+		if (split < 2) {
+			MiscHelper.println("Packs already form a geometric progression (%s packs)", packs.size());
+			return;
+		}
+		if (split == packs.size()) {
+			MiscHelper.println("All %s packs need to be combined, running full garbage collection (including bitmaps)", packs.size());
+			repo.gc();
+			return;
+		}
+		List<JGitStorage.PackInfo> combinedPacks = packs.subList(0, split);
+		Set<ObjectId> objects = JGitStorage.listPackedObjects(repository, combinedPacks);
+		writePack(repo, objects);
+		// Close all packs, so that the combined ones can be deleted; they are opened again on the next access
+		repository.getObjectDatabase().close();
+		String packExtension = JGitStorage.getPackExtension();
+		for (JGitStorage.PackInfo pack : combinedPacks) {
+			String baseName = pack.packFile().getFileName().toString();
+			baseName = baseName.substring(0, baseName.length() - packExtension.length());
+			for (String extension : JGitStorage.getPackExtensions()) {
+				Files.deleteIfExists(pack.packFile().resolveSibling(baseName + extension));
+			}
+		}
+		MiscHelper.println("Combined %s packs (%s objects), %s packs remain untouched", combinedPacks.size(), objects.size(), packs.size() - combinedPacks.size());
+	}
+
+	/**
+	 * Finds the amount of smallest packs, that need to be combined, to restore the geometric progression.
+	 *
+	 * @param objectCounts Object counts of all packs, sorted ascending
+	 * @return amount of packs to combine, starting with the smallest one
+	 */
+	static int findGeometricSplit(long[] objectCounts) {
+		int split = 0;
+		for (int i = objectCounts.length - 1; i > 0; --i) {
+			if (objectCounts[i] < GEOMETRIC_FACTOR * objectCounts[i - 1]) {
+				split = i;
+				break;
+			}
+		}
+		long combinedObjects = 0;
+		for (int i = 0; i < split; ++i) {
+			combinedObjects += objectCounts[i];
+		}
+		while (split < objectCounts.length && objectCounts[split] < GEOMETRIC_FACTOR * combinedObjects) {
+			combinedObjects += objectCounts[split];
+			++split;
+		}
+		return split;
+	}
+
+	private static void writePack(RepoWrapper repo, Collection<ObjectId> objectIds) throws IOException {
+		Repository repository = repo.getGit().getRepository();
+		Path packDirectory = Files.createDirectories(JGitStorage.getPackDirectory(repository));
+		Path tmpPack = Files.createTempFile(packDirectory, "gitcraft_", ".pack.tmp");
+		Path tmpIndex = Files.createTempFile(packDirectory, "gitcraft_", ".idx.tmp");
+		try {
+			String packName;
+			try (OutputStream packStream = new BufferedOutputStream(Files.newOutputStream(tmpPack));
+				 OutputStream indexStream = new BufferedOutputStream(Files.newOutputStream(tmpIndex))) {
+				packName = "pack-" + JGitStorage.writePack(repository, objectIds, packStream, indexStream);
+			}
+			// The index is moved last, as packs are only discovered through their index
+			Files.move(tmpPack, packDirectory.resolve(packName + JGitStorage.getPackExtension()), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tmpIndex, packDirectory.resolve(packName + JGitStorage.getIndexExtension()), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmpPack);
+			Files.deleteIfExists(tmpIndex);
+		}
+	}
+
+	/**
+	 * Writes a commit-graph file for all commits reachable from any ref and enables its usage.
+	 *
+	 * @param repo Repository
+	 */
+	public static void writeCommitGraph(RepoWrapper repo) throws IOException {
+		Repository repository = repo.getGit().getRepository();
+		Path infoDirectory = Files.createDirectories(getObjectsDirectory(repo).resolve("info"));
+		Set<ObjectId> wants = new HashSet<>();
+		try (RevWalk walk = new RevWalk(repository)) {
+			for (Ref ref : repository.getRefDatabase().getRefs()) {
+				ObjectId objectId = ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+				if (objectId != null && walk.parseAny(objectId) instanceof RevCommit commit) {
+					wants.add(commit);
+				}
+			}
+			if (wants.isEmpty()) {
+				return;
+			}
+			Path tmpCommitGraph = Files.createTempFile(infoDirectory, "gitcraft_", ".commit-graph.tmp");
+			try {
+				try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(tmpCommitGraph))) {
+					JGitStorage.writeCommitGraph(wants, walk, stream);
+				}
+				Files.move(tmpCommitGraph, infoDirectory.resolve("commit-graph"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tmpCommitGraph);
+			}
+		}
+		StoredConfig config = repository.getConfig();
+		if (!config.getBoolean(ConfigConstants.CONFIG_CORE_SECTION, ConfigConstants.CONFIG_COMMIT_GRAPH, false)) {
+			config.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_COMMIT_GRAPH, true);
+			config.save();
+		}
+		MiscHelper.println("Wrote commit-graph for %s ref tips", wants.size());
+	}
+
+	public static void printStatistics(RepoWrapper repo) throws IOException {
+		JGitStorage.Statistics statistics = JGitStorage.getStatistics(repo.getGit().getRepository());
+		MiscHelper.println("Repository: %s packs (%s objects, %s), %s loose objects (%s), %s bitmaps",
+			statistics.packFiles(),
+			statistics.packedObjects(),
+			FileTransferHelper.formatBytes(statistics.packedBytes()),
+			statistics.looseObjects(),
+			FileTransferHelper.formatBytes(statistics.looseBytes()),
+			statistics.bitmaps()
+		);
+	}
+}
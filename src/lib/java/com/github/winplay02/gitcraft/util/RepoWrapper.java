@@ -2,32 +2,55 @@ package com.github.winplay02.gitcraft.util;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.errors.IncorrectObjectTypeException;
-import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectDatabase;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RepoWrapper implements Closeable {
 	private final Git git;
 	private final Path root_path;
+	private final Set<ObjectId> knownBlobs = ConcurrentHashMap.newKeySet();
+	private final RefContainmentIndex refContainmentIndex;
 
 	public Git getGit() {
 		return this.git;
@@ -36,6 +59,11 @@ public class RepoWrapper implements Closeable {
 	public RepoWrapper(Path root_path, String initial_branch) throws Exception {
 		this.root_path = Objects.requireNonNull(root_path);
 		this.git = Git.init().setInitialBranch(initial_branch).setDirectory(this.root_path.toFile()).call();
+		this.refContainmentIndex = new RefContainmentIndex(this.git.getRepository());
+	}
+
+	public RefContainmentIndex getRefContainmentIndex() {
+		return this.refContainmentIndex;
 	}
 
 	@Override
@@ -63,7 +91,7 @@ public class RepoWrapper implements Closeable {
 		if (this.git.getRepository().resolve(Constants.HEAD) == null) {
 			return false;
 		}
-		return this.git.log().all().setRevFilter(new CommitMsgFilter(commitMessage)).call().iterator().hasNext();
+		return this.refContainmentIndex.findCommitByMessage(commitMessage).isPresent();
 	}
 
 	public boolean existsRevWithCommitMessageNoExcept(String commitMessage) {
@@ -76,11 +104,13 @@ public class RepoWrapper implements Closeable {
 	}
 
 	public RevCommit findRevByCommitMessage(String commitMessage) throws GitAPIException, IOException {
-		Iterator<RevCommit> iterator = this.git.log().all().setRevFilter(new CommitMsgFilter(commitMessage)).call().iterator();
-		if (iterator.hasNext()) {
-			return iterator.next();
+		Optional<ObjectId> commitId = this.refContainmentIndex.findCommitByMessage(commitMessage);
+		if (commitId.isEmpty()) {
+			return null;
+		}
+		try (RevWalk walk = new RevWalk(this.git.getRepository())) {
+			return walk.parseCommit(commitId.orElseThrow());
 		}
-		return null;
 	}
 
 	public boolean doesBranchExist(String target_branch) throws IOException {
@@ -108,13 +138,242 @@ public class RepoWrapper implements Closeable {
 		}
 	}
 
-	public void createCommitUsingAllChanges(String authorName, String authorMail, Date authoredDateTime, TimeZone authoredTimeZone, String message) throws GitAPIException {
+	/**
+	 * Index entry for a blob, that is not present in the working tree.
+	 *
+	 * @param path     Path relative to the repository root, separated by forward slashes
+	 * @param blobId   Git blob id of the contents
+	 * @param fileMode Mode of the file
+	 * @param length   Length of the contents, or 0 if unknown
+	 * @param source   File with the contents, only read if the blob is not yet contained in the repository. May be null for blobs known to exist.
+	 */
+	public record DirectIndexEntry(String path, ObjectId blobId, FileMode fileMode, long length, Path source) {
+		public DirectIndexEntry(String path, ObjectId blobId, long length, Path source) {
+			this(path, blobId, FileMode.REGULAR_FILE, length, source);
+		}
+	}
+
+	/**
+	 * Lists the files of the tree of HEAD, that are located directly in one of the provided directories.
+	 * These entries can be staged again for the next commit, without them being present in the working tree.
+	 *
+	 * @param directories Directories, of which only files directly contained are listed
+	 * @return entries of HEAD, or an empty list if HEAD does not point to a commit
+	 * @throws IOException if the tree cannot be read
+	 */
+	public List<DirectIndexEntry> listHeadEntries(Set<String> directories) throws IOException {
+		ObjectId headTree = this.git.getRepository().resolve(Constants.HEAD + "^{tree}");
+		if (headTree == null || directories.isEmpty()) {
+			return List.of();
+		}
+		List<DirectIndexEntry> entries = new ArrayList<>();
+		try (TreeWalk treeWalk = new TreeWalk(this.git.getRepository())) {
+			treeWalk.addTree(headTree);
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(PathFilterGroup.createFromStrings(directories));
+			while (treeWalk.next()) {
+				String path = treeWalk.getPathString();
+				int separator = path.lastIndexOf('/');
+				String parent = separator == -1 ? "" : path.substring(0, separator);
+				if (directories.contains(parent)) {
+					ObjectId blobId = treeWalk.getObjectId(0);
+					entries.add(new DirectIndexEntry(path, blobId, treeWalk.getFileMode(0), 0, null));
+					this.knownBlobs.add(blobId);
+				}
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Looks up subtrees of the tree of HEAD. These trees can be referenced as-is by the next commit, see {@link #createCommitUsingAllChanges(String, String, Date, TimeZone, String, Collection, Map)}.
+	 *
+	 * @param subtrees Paths of the subtrees, separated by forward slashes
+	 * @return tree ids keyed by path, subtrees that do not exist are missing
+	 * @throws IOException if the tree cannot be read
+	 */
+	public Map<String, ObjectId> getHeadSubtrees(Set<String> subtrees) throws IOException {
+		ObjectId headTree = this.git.getRepository().resolve(Constants.HEAD + "^{tree}");
+		if (headTree == null || subtrees.isEmpty()) {
+			return Map.of();
+		}
+		Map<String, ObjectId> trees = new HashMap<>();
+		for (String subtree : subtrees) {
+			try (TreeWalk treeWalk = TreeWalk.forPath(this.git.getRepository(), subtree, headTree)) {
+				if (treeWalk != null && treeWalk.getFileMode(0) == FileMode.TREE) {
+					trees.put(subtree, treeWalk.getObjectId(0));
+				}
+			}
+		}
+		return trees;
+	}
+
+	public Optional<ObjectId> getHeadCommitId() throws IOException {
+		return Optional.ofNullable(this.git.getRepository().resolve(Constants.HEAD));
+	}
+
+	public void createCommitUsingAllChanges(String authorName, String authorMail, Date authoredDateTime, TimeZone authoredTimeZone, String message) throws GitAPIException, IOException {
+		this.createCommitUsingAllChanges(authorName, authorMail, authoredDateTime, authoredTimeZone, message, List.of(), Map.of());
+	}
+
+	/**
+	 * Commits all changes of the working tree, along with entries and trees that are not part of the working tree.
+	 * <p>
+	 * Direct entries and trees are never written to the working tree, and trees are not written to the index either: After committing, both are intentionally detached from HEAD.
+	 * The working tree of generated repositories is only a staging area, that is cleared before every commit, so nothing depends on it matching HEAD.
+	 * A complete working tree can be restored at any time using {@code git reset --hard}.
+	 *
+	 * @param directIndexEntries Entries written to the index in addition to the working tree
+	 * @param trees              Existing trees, referenced as-is at their paths (separated by forward slashes) by the created commit
+	 */
+	public void createCommitUsingAllChanges(String authorName, String authorMail, Date authoredDateTime, TimeZone authoredTimeZone, String message, Collection<DirectIndexEntry> directIndexEntries, Map<String, ObjectId> trees) throws GitAPIException, IOException {
 		// Remove removed files from index
 		this.git.add().addFilepattern(".").setRenormalize(false).setUpdate(true).call();
 		// Stage new files
 		this.git.add().addFilepattern(".").setRenormalize(false).call();
+		// Stage files that are not part of the working tree
+		if (!directIndexEntries.isEmpty() || !trees.isEmpty()) {
+			this.insertMissingBlobs(directIndexEntries);
+			DirCache dirCache = this.git.getRepository().lockDirCache();
+			try {
+				DirCacheEditor editor = dirCache.editor();
+				for (String tree : trees.keySet()) {
+					editor.add(new DirCacheEditor.DeleteTree(tree));
+				}
+				for (DirectIndexEntry entry : directIndexEntries) {
+					editor.add(new DirCacheEditor.PathEdit(entry.path()) {
+						@Override
+						public void apply(DirCacheEntry dirCacheEntry) {
+							dirCacheEntry.setFileMode(entry.fileMode());
+							dirCacheEntry.setObjectId(entry.blobId());
+							dirCacheEntry.setLength(entry.length());
+						}
+					});
+				}
+				editor.commit();
+			} finally {
+				dirCache.unlock();
+			}
+		}
 		PersonIdent author = new PersonIdent(authorName, authorMail, authoredDateTime.toInstant(), authoredTimeZone.toZoneId());
-		this.git.commit().setMessage(message).setAuthor(author).setCommitter(author).setSign(false).call();
+		if (trees.isEmpty()) {
+			this.git.commit().setMessage(message).setAuthor(author).setCommitter(author).setSign(false).call();
+		} else {
+			this.commitIndexWithTrees(author, message, trees);
+		}
+	}
+
+	/**
+	 * Entry of a tree object.
+	 */
+	private record TreeEntry(String name, FileMode fileMode, ObjectId objectId) {
+		/**
+		 * Entries of trees are ordered by name, with trees being compared as if their name ended with a slash.
+		 */
+		private static final Comparator<TreeEntry> ORDER = (a, b) -> Arrays.compareUnsigned(a.sortKey(), b.sortKey());
+
+		private byte[] sortKey() {
+			return (this.fileMode() == FileMode.TREE ? this.name() + "/" : this.name()).getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Inserts a tree into another tree, replacing anything at its path.
+	 *
+	 * @param baseTree Tree to insert into, may be null to insert into an empty tree
+	 * @param path     Path components of the inserted tree
+	 * @param depth    Index of the path component, that is located in the base tree
+	 * @param tree     Inserted tree
+	 * @return id of the resulting tree
+	 */
+	private static ObjectId insertTree(ObjectReader reader, ObjectInserter inserter, ObjectId baseTree, String[] path, int depth, ObjectId tree) throws IOException {
+		List<TreeEntry> entries = new ArrayList<>();
+		ObjectId childTree = null;
+		if (baseTree != null) {
+			CanonicalTreeParser parser = new CanonicalTreeParser(null, reader, baseTree);
+			for (; !parser.eof(); parser.next()) {
+				TreeEntry entry = new TreeEntry(parser.getEntryPathString(), parser.getEntryFileMode(), parser.getEntryObjectId());
+				if (!entry.name().equals(path[depth])) {
+					entries.add(entry);
+				} else if (entry.fileMode() == FileMode.TREE) {
+					childTree = entry.objectId();
+				}
+			}
+		}
+		ObjectId insertedTree = depth == path.length - 1 ? tree : insertTree(reader, inserter, childTree, path, depth + 1, tree);
+		entries.add(new TreeEntry(path[depth], FileMode.TREE, insertedTree));
+		entries.sort(TreeEntry.ORDER);
+		TreeFormatter formatter = new TreeFormatter();
+		for (TreeEntry entry : entries) {
+			formatter.append(entry.name(), entry.fileMode(), entry.objectId());
+		}
+		return inserter.insert(formatter);
+	}
+
+	/**
+	 * Commits the index with additional trees, the same way {@code git commit} would (including pending merges).
+	 */
+	private void commitIndexWithTrees(PersonIdent author, String message, Map<String, ObjectId> trees) throws IOException {
+		Repository repository = this.git.getRepository();
+		ObjectId headCommit = repository.resolve(Constants.HEAD);
+		List<ObjectId> parents = new ArrayList<>();
+		if (headCommit != null) {
+			parents.add(headCommit);
+		}
+		List<ObjectId> mergeHeads = repository.readMergeHeads();
+		if (mergeHeads != null) {
+			parents.addAll(mergeHeads);
+		}
+		ObjectId commitId;
+		try (ObjectInserter inserter = repository.newObjectInserter(); ObjectReader reader = inserter.newReader()) {
+			ObjectId treeId = repository.readDirCache().writeTree(inserter);
+			for (Map.Entry<String, ObjectId> tree : new TreeMap<>(trees).entrySet()) {
+				treeId = insertTree(reader, inserter, treeId, tree.getKey().split("/"), 0, tree.getValue());
+			}
+			CommitBuilder commit = new CommitBuilder();
+			commit.setTreeId(treeId);
+			commit.setParentIds(parents);
+			commit.setAuthor(author);
+			commit.setCommitter(author);
+			commit.setMessage(message);
+			commitId = inserter.insert(commit);
+			inserter.flush();
+		}
+		RefUpdate refUpdate = repository.updateRef(Constants.HEAD);
+		refUpdate.setNewObjectId(commitId);
+		refUpdate.setExpectedOldObjectId(headCommit != null ? headCommit : ObjectId.zeroId());
+		refUpdate.setRefLogIdent(author);
+		refUpdate.setRefLogMessage(String.format("commit%s: %s", parents.size() > 1 ? " (merge)" : "", message.lines().findFirst().orElse("")), false);
+		RefUpdate.Result result = refUpdate.update();
+		if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD && result != RefUpdate.Result.FORCED) {
+			MiscHelper.panic("Unsuccessfully updated HEAD to commit %s, result was: %s", commitId.name(), result);
+		}
+		if (mergeHeads != null) {
+			repository.writeMergeCommitMsg(null);
+			repository.writeMergeHeads(null);
+		}
+	}
+
+	private void insertMissingBlobs(Collection<DirectIndexEntry> directIndexEntries) throws IOException {
+		ObjectDatabase objectDatabase = this.git.getRepository().getObjectDatabase();
+		try (ObjectInserter inserter = objectDatabase.newInserter()) {
+			for (DirectIndexEntry entry : directIndexEntries) {
+				if (this.knownBlobs.contains(entry.blobId())) {
+					continue;
+				}
+				if (!objectDatabase.has(entry.blobId())) {
+					ObjectId insertedBlobId;
+					try (InputStream stream = Files.newInputStream(entry.source())) {
+						insertedBlobId = inserter.insert(Constants.OBJ_BLOB, entry.length(), stream);
+					}
+					if (!insertedBlobId.equals(entry.blobId())) {
+						MiscHelper.panic("Blob inserted from %s has id %s, but %s was expected", entry.source(), insertedBlobId.name(), entry.blobId().name());
+					}
+				}
+				this.knownBlobs.add(entry.blobId());
+			}
+			inserter.flush();
+		}
 	}
 
 	public void createBranchFromCurrentCommit(String branchName) throws GitAPIException, IOException {
@@ -161,33 +420,15 @@ public class RepoWrapper implements Closeable {
 	}
 
 	public List<Ref> getRefsContainingCommit(RevCommit targetCommit) throws IOException {
-		List<Ref> refs = this.git.getRepository().getRefDatabase().getRefs();
-		List<Ref> refsContaining = new ArrayList<>();
-		try (RevWalk walk = new RevWalk(this.git.getRepository())) {
-			for (Ref ref : refs) {
-				if (!ref.isPeeled()) {
-					ref = this.git.getRepository().getRefDatabase().peel(ref);
-				}
+		return this.refContainmentIndex.getRefsContaining(targetCommit);
+	}
 
-				ObjectId objectId = ref.getPeeledObjectId();
-				if (objectId == null)
-					objectId = ref.getObjectId();
-				RevCommit commit = null;
-				try {
-					commit = walk.parseCommit(objectId);
-				} catch (MissingObjectException | IncorrectObjectTypeException ignored) {
-				}
-				if (commit != null) {
-					walk.markStart(commit);
-					walk.setRevFilter(new CommitRevFilter(targetCommit.getId()));
-					if (walk.iterator().hasNext()) {
-						refsContaining.add(ref);
-					}
-				}
-				walk.reset();
-			}
-			return refsContaining;
-		}
+	public <T extends ObjectId> Map<T, List<Ref>> getRefsContainingCommits(Collection<T> targetCommits) throws IOException {
+		return this.refContainmentIndex.getRefsContaining(targetCommits);
+	}
+
+	public boolean isCommitReachableFrom(ObjectId targetCommit, String refName) throws IOException {
+		return this.refContainmentIndex.isReachableFrom(targetCommit, refName);
 	}
 
 	public void createSymbolicHEAD(String refTarget) throws IOException {
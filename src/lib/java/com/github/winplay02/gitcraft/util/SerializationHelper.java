@@ -2,20 +2,23 @@ package com.github.winplay02.gitcraft.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.Strictness;
 import com.google.gson.TypeAdapter;
 import com.google.gson.TypeAdapterFactory;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -24,11 +27,11 @@ import java.nio.file.StandardOpenOption;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Queue;
+import java.util.TreeMap;
 import java.util.function.Function;
 
 public class SerializationHelper {
@@ -128,25 +131,143 @@ public class SerializationHelper {
 		return outStream.toString(StandardCharsets.UTF_8);
 	}
 
-	private static JsonElement sortJsonElement(JsonElement element) {
-		Queue<JsonElement> queue = new LinkedList<>();
-		queue.add(element);
-		while (!queue.isEmpty()) {
-			JsonElement subject = queue.poll();
-			if (subject instanceof final JsonObject object) {
-				Map<String, JsonElement> mappings = new HashMap<>(object.asMap());
-				object.asMap().clear();
-				mappings.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach((entry) -> object.add(entry.getKey(), entry.getValue()));
-				mappings.values().stream().filter(entry -> entry instanceof JsonObject || entry instanceof JsonArray).forEach(queue::add);
+	/**
+	 * Escaped forms of ASCII characters in strings, matching a html-safe {@link JsonWriter}
+	 */
+	private static final String[] ESCAPED_CHARS = new String[128];
+
+	static {
+		for (int i = 0; i < 0x20; ++i) {
+			ESCAPED_CHARS[i] = String.format("\\u%04x", i);
+		}
+		ESCAPED_CHARS['"'] = "\\\"";
+		ESCAPED_CHARS['\\'] = "\\\\";
+		ESCAPED_CHARS['\t'] = "\\t";
+		ESCAPED_CHARS['\b'] = "\\b";
+		ESCAPED_CHARS['\n'] = "\\n";
+		ESCAPED_CHARS['\r'] = "\\r";
+		ESCAPED_CHARS['\f'] = "\\f";
+		ESCAPED_CHARS['<'] = "\\u003c";
+		ESCAPED_CHARS['>'] = "\\u003e";
+		ESCAPED_CHARS['&'] = "\\u0026";
+		ESCAPED_CHARS['='] = "\\u003d";
+		ESCAPED_CHARS['\''] = "\\u0027";
+	}
+
+	private static void appendSortedJsonString(StringBuilder out, String value) {
+		out.append('"');
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c < ESCAPED_CHARS.length && ESCAPED_CHARS[c] != null) {
+				out.append(ESCAPED_CHARS[c]);
+			} else if (c == '\u2028' || c == '\u2029') {
+				out.append(String.format("\\u%04x", (int) c));
+			} else {
+				out.append(c);
+			}
+		}
+		out.append('"');
+	}
+
+	private static void appendSortedJsonLineBreak(StringBuilder out, int depth) {
+		out.append('\n');
+		for (int i = 0; i < depth; ++i) {
+			out.append('\t');
+		}
+	}
+
+	/**
+	 * Copies a single JSON value from reader to out, sorting all object keys, formatted in the same way as {@link #serialize(Object)}.
+	 * Arrays are streamed element by element. Members of objects have to be known before they can be written in order,
+	 * so every member is formatted into its own buffer, already indented to the depth it is written at (no tree of the document is built).
+	 *
+	 * @param depth Nesting depth of the value in the written document
+	 */
+	private static void copySortedJson(JsonReader reader, StringBuilder out, int depth) throws IOException {
+		switch (reader.peek()) {
+			case BEGIN_ARRAY -> {
+				reader.beginArray();
+				out.append('[');
+				boolean empty = true;
+				while (reader.hasNext()) {
+					if (!empty) {
+						out.append(',');
+					}
+					appendSortedJsonLineBreak(out, depth + 1);
+					copySortedJson(reader, out, depth + 1);
+					empty = false;
+				}
+				reader.endArray();
+				if (!empty) {
+					appendSortedJsonLineBreak(out, depth);
+				}
+				out.append(']');
+			}
+			case BEGIN_OBJECT -> {
+				TreeMap<String, StringBuilder> members = new TreeMap<>();
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+					if (reader.peek() == JsonToken.NULL) {
+						// Null members are not serialized
+						reader.nextNull();
+						continue;
+					}
+					StringBuilder member = new StringBuilder();
+					copySortedJson(reader, member, depth + 1);
+					members.put(name, member);
+				}
+				reader.endObject();
+				out.append('{');
+				boolean empty = true;
+				for (Map.Entry<String, StringBuilder> entry : members.entrySet()) {
+					if (!empty) {
+						out.append(',');
+					}
+					appendSortedJsonLineBreak(out, depth + 1);
+					appendSortedJsonString(out, entry.getKey());
+					out.append(": ").append(entry.getValue());
+					empty = false;
+				}
+				if (!empty) {
+					appendSortedJsonLineBreak(out, depth);
+				}
+				out.append('}');
 			}
-			if (subject instanceof final JsonArray array) {
-				array.asList().stream().filter(entry -> entry instanceof JsonObject || entry instanceof JsonArray).forEach(queue::add);
+			case STRING -> appendSortedJsonString(out, reader.nextString());
+			case NUMBER -> out.append(reader.nextString());
+			case BOOLEAN -> out.append(reader.nextBoolean());
+			case NULL -> {
+				reader.nextNull();
+				out.append("null");
 			}
+			default -> throw new JsonSyntaxException(String.format("Unexpected token %s at %s", reader.peek(), reader.getPath()));
 		}
-		return element;
 	}
 
-	public static void sortJSONFile(Path path) throws IOException {
-		writeAllToPath(path, serialize(sortJsonElement(gson.fromJson(fetchAllFromPath(path), JsonElement.class))));
+	/**
+	 * Sorts all object keys of a JSON file, using the same formatting as {@link #serialize(Object)}.
+	 * The file is only rewritten, if the sorted content differs from the existing content.
+	 *
+	 * @param path JSON file
+	 * @return whether the file was rewritten
+	 * @throws IOException        if the file cannot be read or written
+	 * @throws JsonSyntaxException if the file does not contain valid JSON
+	 */
+	public static boolean sortJSONFile(Path path) throws IOException {
+		byte[] original = Files.readAllBytes(path);
+		StringBuilder sorted = new StringBuilder(original.length);
+		try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(original), StandardCharsets.UTF_8))) {
+			reader.setStrictness(Strictness.LENIENT);
+			copySortedJson(reader, sorted, 0);
+		} catch (MalformedJsonException | EOFException e) {
+			throw new JsonSyntaxException(e);
+		}
+		byte[] sortedBytes = sorted.toString().getBytes(StandardCharsets.UTF_8);
+		if (Arrays.equals(original, sortedBytes)) {
+			return false;
+		}
+		Files.write(path, sortedBytes);
+		return true;
 	}
 }
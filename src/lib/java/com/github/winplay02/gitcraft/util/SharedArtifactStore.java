@@ -0,0 +1,165 @@
+package com.github.winplay02.gitcraft.util;
+
+import com.github.winplay02.gitcraft.Library;
+import com.github.winplay02.gitcraft.LibraryPaths;
+import com.github.winplay02.gitcraft.integrity.IntegrityAlgorithm;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Content-addressed store of fetched artifacts (libraries, asset objects, version jars, mappings, ...), shared by all filesystem roots and processes on the same host.
+ * <p>
+ * Objects are keyed by the checksum they were verified against, and are hardlinked (or copied, if hardlinks are not supported) into the root requesting them.
+ * Fetching an object is guarded by a lock file, locked by the process and by the thread fetching it, so concurrent processes fetch every object only once.
+ * Objects share lock files by a prefix of their checksum ({@link #LOCK_STRIPE_LENGTH}), so the amount of lock files (and locks of threads) is bounded, instead of growing with the amount of objects.
+ * Objects are only published using an atomic rename after their checksum was verified, so incomplete objects are never visible to other processes.
+ * Objects are verified again before they are restored, corrupted objects are removed.
+ */
+public final class SharedArtifactStore {
+	/**
+	 * Length of the checksum prefix identifying a lock file, which results in at most 4096 lock files per algorithm.
+	 * Objects sharing a lock file are only fetched one after another, which rarely happens for the amount of concurrent downloads.
+	 */
+	private static final int LOCK_STRIPE_LENGTH = 3;
+	private static final Map<Path, ReentrantLock> threadLocks = new ConcurrentHashMap<>();
+
+	private SharedArtifactStore() {}
+
+	/**
+	 * Lock of an object (and the other objects sharing its lock file), held by this thread and this process.
+	 */
+	public interface ObjectLock extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	private static Path getRoot() {
+		String configuredStore = Library.CONF_GLOBAL.sharedArtifactStore();
+		return configuredStore.isEmpty() ? LibraryPaths.MAIN_ARTIFACT_STORE.resolve("objects") : Path.of(configuredStore);
+	}
+
+	/**
+	 * @param integrityAlgorithm Algorithm of the checksum
+	 * @param checksum           Checksum of the object
+	 * @return location of the object in the store, the object may not exist
+	 */
+	public static Path getObject(IntegrityAlgorithm integrityAlgorithm, String checksum) {
+		String normalizedChecksum = checksum.toLowerCase(Locale.ROOT);
+		return getRoot().resolve(integrityAlgorithm.getAlgorithmName().toLowerCase(Locale.ROOT)).resolve(normalizedChecksum.substring(0, 2)).resolve(normalizedChecksum);
+	}
+
+	/**
+	 * @param integrityAlgorithm Algorithm of the checksum, may be null
+	 * @param checksum           Expected checksum of the artifact, may be null
+	 * @return whether artifacts with this checksum can be shared (their content must be verifiable)
+	 */
+	public static boolean isApplicable(IntegrityAlgorithm integrityAlgorithm, String checksum) {
+		return Library.CONF_INTEGRITY.verifyChecksums() && integrityAlgorithm != null && checksum != null && checksum.length() > 2;
+	}
+
+	/**
+	 * Locks an object, blocking until no other thread or process holds the lock.
+	 *
+	 * @param integrityAlgorithm Algorithm of the checksum
+	 * @param checksum           Checksum of the object
+	 * @return lock, which must be closed
+	 */
+	public static ObjectLock lock(IntegrityAlgorithm integrityAlgorithm, String checksum) throws IOException {
+		Path lockFile = getRoot().resolve(integrityAlgorithm.getAlgorithmName().toLowerCase(Locale.ROOT)).resolve("locks").resolve(checksum.substring(0, LOCK_STRIPE_LENGTH).toLowerCase(Locale.ROOT) + ".lock");
+		// File locks are held by the whole JVM, so threads of this process need to be serialized separately
+		ReentrantLock threadLock = threadLocks.computeIfAbsent(lockFile, _ -> new ReentrantLock());
+		threadLock.lock();
+		FileChannel channel = null;
+		try {
+			Files.createDirectories(lockFile.getParent());
+			channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			FileLock fileLock = channel.lock();
+			FileChannel lockedChannel = channel;
+			return () -> {
+				try {
+					fileLock.release();
+					lockedChannel.close();
+				} catch (IOException e) {
+					MiscHelper.panicBecause(e, "Cannot release lock of shared artifact %s", checksum);
+				} finally {
+					threadLock.unlock();
+				}
+			};
+		} catch (IOException | RuntimeException e) {
+			if (channel != null) {
+				channel.close();
+			}
+			threadLock.unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Places an object at the location of an artifact, replacing any existing file atomically. The object is verified first, and removed if it is corrupted.
+	 *
+	 * @param integrityAlgorithm Algorithm of the checksum
+	 * @param checksum           Checksum of the object
+	 * @param target             Artifact to create
+	 * @return whether the object was stored and valid
+	 */
+	public static boolean restore(IntegrityAlgorithm integrityAlgorithm, String checksum, Path target) throws IOException {
+		Path object = getObject(integrityAlgorithm, checksum);
+		if (!Files.isRegularFile(object)) {
+			return false;
+		}
+		if (!integrityAlgorithm.fileMatchesChecksum(object, checksum)) {
+			MiscHelper.println("Shared artifact %s is corrupted and will be fetched again", checksum);
+			MiscHelper.deleteFile(object);
+			integrityAlgorithm.invalidateFile(object);
+			return false;
+		}
+		if (target.getParent() != null) {
+			Files.createDirectories(target.getParent());
+		}
+		linkOrCopy(object, target);
+		return true;
+	}
+
+	/**
+	 * Adds a verified artifact to the store, if it is not stored yet.
+	 *
+	 * @param integrityAlgorithm Algorithm of the checksum
+	 * @param checksum           Checksum of the artifact, which must have been verified
+	 * @param source             Artifact
+	 */
+	public static void publish(IntegrityAlgorithm integrityAlgorithm, String checksum, Path source) throws IOException {
+		Path object = getObject(integrityAlgorithm, checksum);
+		if (Files.exists(object)) {
+			return;
+		}
+		Files.createDirectories(object.getParent());
+		linkOrCopy(source, object);
+	}
+
+	private static void linkOrCopy(Path source, Path target) throws IOException {
+		Path temporaryTarget = target.resolveSibling(String.format("%s.%s.tmp", target.getFileName(), System.nanoTime()));
+		boolean linked = false;
+		if (Library.CONF_GLOBAL.useHardlinks()) {
+			try {
+				Files.createLink(temporaryTarget, source);
+				linked = true;
+			} catch (IOException | UnsupportedOperationException e) {
+				// e.g. the store is located on another file store
+			}
+		}
+		if (!linked) {
+			Files.copy(source, temporaryTarget, StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.move(temporaryTarget, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
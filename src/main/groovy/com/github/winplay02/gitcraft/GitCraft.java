@@ -6,14 +6,29 @@ import com.github.winplay02.gitcraft.config.DataConfiguration;
 import com.github.winplay02.gitcraft.config.RepositoryConfiguration;
 import com.github.winplay02.gitcraft.config.TransientApplicationConfiguration;
 import com.github.winplay02.gitcraft.manifest.metadata.VersionInfo;
+import com.github.winplay02.gitcraft.mappings.MappingFlavour;
 import com.github.winplay02.gitcraft.pipeline.GitCraftPipelineDescription;
 import com.github.winplay02.gitcraft.pipeline.GitCraftPipelineFilesystemStorage;
+import com.github.winplay02.gitcraft.pipeline.GitCraftStepConfig;
 import com.github.winplay02.gitcraft.pipeline.IPipeline;
+import com.github.winplay02.gitcraft.pipeline.IStepContext;
+import com.github.winplay02.gitcraft.pipeline.PipelineFilesystemStorage;
+import com.github.winplay02.gitcraft.pipeline.workers.SubtreeReuse;
+import com.github.winplay02.gitcraft.types.OrderedVersion;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.util.RepoWrapper;
 import com.github.winplay02.gitcraft.util.SerializationHelper;
 import com.github.winplay02.gitcraft.util.SerializationTypes;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 public class GitCraft extends GitCraftApplication {
 	public static final String NAME = "GitCraft";
 	public static final String VERSION = "0.3.0";
@@ -41,11 +56,30 @@ public class GitCraft extends GitCraftApplication {
 	@Override
 	public void run() throws Exception {
 		MiscHelper.println("Decompiler log output is suppressed!");
+		if (getTransientApplicationConfiguration().additionalMappings().length > 0 && !getTransientApplicationConfiguration().explain()) {
+			List<MappingFlavour> mappings = new ArrayList<>();
+			mappings.add(getApplicationConfiguration().usedMapping());
+			Arrays.stream(getTransientApplicationConfiguration().additionalMappings()).filter(mapping -> !mappings.contains(mapping)).forEach(mappings::add);
+			runMultipleFlavours(mappings);
+			return;
+		}
 		versionGraph = doVersionGraphOperations(versionGraph);
 		resetVersionGraph = doVersionGraphOperationsForReset(versionGraph);
+		if (getTransientApplicationConfiguration().explain()) {
+			try (RepoWrapper repo = getExistingRepository()) {
+				if (getTransientApplicationConfiguration().refreshDecompilation()) {
+					MiscHelper.println("Refreshing is not part of the explanation, refreshed versions are listed as already committed");
+				}
+				IPipeline.explain(GitCraftPipelineDescription.DEFAULT_PIPELINE, GitCraftPipelineFilesystemStorage.DEFAULT.get(), repo, versionGraph);
+			}
+			return;
+		}
 		try (RepoWrapper repo = getRepository()) {
 			if (getTransientApplicationConfiguration().refreshDecompilation()) {
 				IPipeline.run(GitCraftPipelineDescription.RESET_PIPELINE, GitCraftPipelineFilesystemStorage.DEFAULT.get(), repo, versionGraph);
+				if (repo != null) {
+					SubtreeReuse.pruneFingerprints(repo);
+				}
 			}
 			IPipeline.run(GitCraftPipelineDescription.DEFAULT_PIPELINE, GitCraftPipelineFilesystemStorage.DEFAULT.get(), repo, versionGraph);
 			if (getRepositoryConfiguration().gcAfterRun()) {
@@ -56,4 +90,62 @@ public class GitCraft extends GitCraftApplication {
 			}
 		}
 	}
+
+	/**
+	 * Publishes multiple mapping flavours, each to its own repository.
+	 * The flavour-independent steps run once for all versions not yet committed to any of the repositories, the remaining steps run once per flavour.
+	 * As the application configuration is global, flavours are handled one after another.
+	 */
+	private void runMultipleFlavours(List<MappingFlavour> mappings) throws Exception {
+		if (getTransientApplicationConfiguration().overrideRepositoryPath() != null) {
+			MiscHelper.panic("ERROR: Publishing additional mappings requires a separate repository per mapping, the repository path cannot be overridden");
+		}
+		ApplicationConfiguration originalConfiguration = getApplicationConfiguration();
+		MinecraftVersionGraph unfilteredVersionGraph = versionGraph;
+		Map<MappingFlavour, MinecraftVersionGraph> flavourVersionGraphs = new LinkedHashMap<>();
+		Set<OrderedVersion> uncommittedVersions = new HashSet<>();
+		try {
+			for (MappingFlavour mapping : mappings) {
+				Configuration.replaceConfiguration(ApplicationConfiguration.class, originalConfiguration.withUsedMapping(mapping));
+				versionGraph = doVersionGraphOperations(unfilteredVersionGraph);
+				resetVersionGraph = doVersionGraphOperationsForReset(versionGraph);
+				flavourVersionGraphs.put(mapping, versionGraph);
+				try (RepoWrapper repo = getRepository()) {
+					if (getTransientApplicationConfiguration().refreshDecompilation()) {
+						IPipeline.run(GitCraftPipelineDescription.RESET_PIPELINE, GitCraftPipelineFilesystemStorage.DEFAULT.get(), repo, versionGraph);
+						if (repo != null) {
+							SubtreeReuse.pruneFingerprints(repo);
+						}
+					}
+					versionGraph.stream().filter(version -> repo == null || !repo.existsRevWithCommitMessageNoExcept(version.toCommitMessage())).forEach(uncommittedVersions::add);
+				}
+			}
+			// Shared intermediates must outlive all flavours but the last one, so only flavour-dependent intermediates may be evicted until then
+			PipelineFilesystemStorage<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> retainingStorage = GitCraftPipelineFilesystemStorage.DEFAULT.get().withEvictableKeys(GitCraftPipelineFilesystemStorage.FLAVOUR_DEPENDENT_INTERMEDIATES);
+			IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> sharedPipeline = null;
+			Configuration.replaceConfiguration(ApplicationConfiguration.class, originalConfiguration);
+			if (!uncommittedVersions.isEmpty()) {
+				MiscHelper.println("Running flavour-independent steps for %s versions (shared by %s)", uncommittedVersions.size(), mappings.stream().map(Object::toString).collect(Collectors.joining(", ")));
+				sharedPipeline = IPipeline.run(GitCraftPipelineDescription.SHARED_PIPELINE, retainingStorage, null, unfilteredVersionGraph.filterOnlyVersion(uncommittedVersions.toArray(OrderedVersion[]::new)));
+			}
+			for (int i = 0; i < mappings.size(); ++i) {
+				MappingFlavour mapping = mappings.get(i);
+				boolean lastFlavour = i == mappings.size() - 1;
+				MiscHelper.println("Running steps for mapping flavour %s", mapping);
+				Configuration.replaceConfiguration(ApplicationConfiguration.class, originalConfiguration.withUsedMapping(mapping));
+				versionGraph = flavourVersionGraphs.get(mapping);
+				try (RepoWrapper repo = getRepository()) {
+					IPipeline.run(GitCraftPipelineDescription.FLAVOUR_PIPELINE, lastFlavour ? GitCraftPipelineFilesystemStorage.DEFAULT.get() : retainingStorage, repo, versionGraph, sharedPipeline);
+					if (getRepositoryConfiguration().gcAfterRun()) {
+						IPipeline.run(GitCraftPipelineDescription.GC_PIPELINE, GitCraftPipelineFilesystemStorage.DEFAULT.get(), repo, versionGraph);
+					}
+					if (repo != null) {
+						MiscHelper.println("Repo for %s can be found at: %s", mapping, repo.getRootPath().toString());
+					}
+				}
+			}
+		} finally {
+			Configuration.replaceConfiguration(ApplicationConfiguration.class, originalConfiguration);
+		}
+	}
 }
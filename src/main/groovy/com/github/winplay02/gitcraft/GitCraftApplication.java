@@ -6,14 +6,19 @@ import com.github.winplay02.gitcraft.config.DataConfiguration;
 import com.github.winplay02.gitcraft.config.RepositoryConfiguration;
 import com.github.winplay02.gitcraft.config.TransientApplicationConfiguration;
 import com.github.winplay02.gitcraft.pipeline.GitCraftPipelineFilesystemRoot;
+import com.github.winplay02.gitcraft.pipeline.StepTimingHistory;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
 import com.github.winplay02.gitcraft.util.FabricHelper;
+import com.github.winplay02.gitcraft.util.GitBlobIdCache;
 import com.github.winplay02.gitcraft.util.GitCraftPaths;
+import com.github.winplay02.gitcraft.util.MetadataCache;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.util.RemoteHelper;
 import com.github.winplay02.gitcraft.util.RepoWrapper;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -62,12 +67,27 @@ public abstract class GitCraftApplication {
 				throw new RuntimeException(e);
 			}
 		}, "Shutdown-Hook-Maven-Cache-Saver"));
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				GitBlobIdCache.saveGitBlobIdCache();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}, "Shutdown-Hook-Git-Blob-Id-Cache-Saver"));
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				StepTimingHistory.saveStepTimingHistory();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}, "Shutdown-Hook-Step-Timing-History-Saver"));
 		// Create Graph
 		try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Manifest-Metadata-Input").factory())) {
 			versionGraph = MinecraftVersionGraph.createFromMetadata(executor, getApplicationConfiguration().manifestSource().getMetadataProvider());
 		}
 
 		RemoteHelper.saveMavenCache();
+		MetadataCache.prune();
 		this.run();
 	}
 
@@ -158,6 +178,25 @@ public abstract class GitCraftApplication {
 	}
 
 	public static RepoWrapper getRepository() throws Exception {
+		Path repositoryPath = getRepositoryPath();
+		if (repositoryPath != null) {
+			return new RepoWrapper(repositoryPath, GitCraft.getRepositoryConfiguration().gitMainlineLinearBranch());
+		}
+		return null;
+	}
+
+	/**
+	 * @return the repository, if it exists already; nothing is created otherwise
+	 */
+	public static RepoWrapper getExistingRepository() throws Exception {
+		Path repositoryPath = getRepositoryPath();
+		if (repositoryPath != null && Files.isDirectory(repositoryPath.resolve(".git"))) {
+			return new RepoWrapper(repositoryPath, GitCraft.getRepositoryConfiguration().gitMainlineLinearBranch());
+		}
+		return null;
+	}
+
+	private static Path getRepositoryPath() {
 		if (!getTransientApplicationConfiguration().noRepo()) {
 			String identifier = versionGraph.repoTagsIdentifier(
 				getApplicationConfiguration().usedMapping(),
@@ -168,14 +207,11 @@ public abstract class GitCraftApplication {
 				getApplicationConfiguration().usedExceptions(),
 				getApplicationConfiguration().enablePreening()
 			);
-			return new RepoWrapper(
-				Objects.requireNonNullElse(
-					getTransientApplicationConfiguration().overrideRepositoryPath() != null ?
-						getTransientApplicationConfiguration().overrideRepositoryPath() :
-						(identifier.isEmpty() ? null : LibraryPaths.CURRENT_WORKING_DIRECTORY.resolve(String.format("minecraft-repo-%s", identifier))),
-					GitCraftPipelineFilesystemRoot.getDefaultRepository().apply(GitCraftPaths.FILESYSTEM_ROOT)),
-				GitCraft.getRepositoryConfiguration().gitMainlineLinearBranch()
-			);
+			return Objects.requireNonNullElse(
+				getTransientApplicationConfiguration().overrideRepositoryPath() != null ?
+					getTransientApplicationConfiguration().overrideRepositoryPath() :
+					(identifier.isEmpty() ? null : LibraryPaths.CURRENT_WORKING_DIRECTORY.resolve(String.format("minecraft-repo-%s", identifier))),
+				GitCraftPipelineFilesystemRoot.getDefaultRepository().apply(GitCraftPaths.FILESYSTEM_ROOT));
 		}
 		return null;
 	}
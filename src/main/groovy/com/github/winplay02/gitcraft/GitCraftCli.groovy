@@ -3,6 +3,7 @@ package com.github.winplay02.gitcraft
 import com.github.winplay02.gitcraft.config.ApplicationConfiguration
 import com.github.winplay02.gitcraft.config.Configuration
 import com.github.winplay02.gitcraft.config.DataConfiguration
+import com.github.winplay02.gitcraft.config.GlobalConfiguration
 import com.github.winplay02.gitcraft.config.IntegrityConfiguration
 import com.github.winplay02.gitcraft.config.RepositoryConfiguration
 import com.github.winplay02.gitcraft.config.TransientApplicationConfiguration
@@ -34,6 +35,8 @@ class GitCraftCli {
 		cli_args._(longOpt: 'exclude-version', args: -2 /*CliBuilder.COMMONS_CLI_UNLIMITED_VALUES*/, valueSeparator: ',', argName:
 			'version', 'Specify version(s) to exclude from decompilation. The exclusion info will be added to the repository name. The normal repository will not be touched.');
 		cli_args._(longOpt: 'no-verify', 'Disables checksum verification');
+		cli_args._(longOpt: 'deep-verify-assets', 'Hashes all asset objects again, even if their assets index was fully verified by a previous run and the objects directory is unchanged since');
+		cli_args._(longOpt: 'offline', 'Nothing is fetched from the network. Metadata (manifests, meta listings) is served from the metadata cache regardless of its age, artifacts from the local and shared artifact stores. Anything that is not cached fails immediately.');
 		cli_args._(longOpt: 'no-datapack', 'Disables data (integrated datapack) versioning');
 		cli_args._(longOpt: 'no-datagen-snbt', 'Disables datagen for converting NBT files (like structures) to SNBT files. If "no-datapack" is set, this flag is automatically set.');
 		cli_args._(longOpt: 'no-datagen-report', 'Disables datagen for versioning reports (like blocks, and other registries)');
@@ -57,6 +60,7 @@ class GitCraftCli {
 				'version', 'Restricts the max. refreshed version to the one provided. This options will cause the git repository to refresh.');
 		cli_args._(longOpt: 'mappings', "Specifies the mappings used to decompile the source tree. Mojmaps are selected by default. Possible values are: ${Arrays.stream(MappingFlavour.values()).map(Object::toString).collect(Collectors.joining(", "))}", type: MappingFlavour, argName: "mapping", defaultValue: "mojmap");
 		cli_args._(longOpt: 'fallback-mappings', args: -2 /*CliBuilder.COMMONS_CLI_UNLIMITED_VALUES*/, valueSeparator: ',', argName: "mapping", "If the primary mapping fails, these mappings are tried (in given order). By default none is tried as a fallback. Possible values are: ${Arrays.stream(MappingFlavour.values()).map(Object::toString).collect(Collectors.joining(", "))}", type: MappingFlavour[]);
+		cli_args._(longOpt: 'additional-mappings', args: -2 /*CliBuilder.COMMONS_CLI_UNLIMITED_VALUES*/, valueSeparator: ',', argName: "mapping", "Publishes these mappings in the same run, each to its own repository, in addition to the primary mapping. Steps that do not depend on the mappings (fetching, unpacking, merging, datagen, patching) run only once per version. Cannot be combined with --override-repo-target. Possible values are: ${Arrays.stream(MappingFlavour.values()).map(Object::toString).collect(Collectors.joining(", "))}", type: MappingFlavour[]);
 		cli_args._(longOpt: 'unpick', "Specifies the unpick information used to unpick constants in the source tree. None is selected by default. Possible values are: ${Arrays.stream(UnpickFlavour.values()).map(Object::toString).collect(Collectors.joining(", "))}", type: UnpickFlavour, argName: "unpick", defaultValue: "none");
 		cli_args._(longOpt: 'fallback-unpick', args: -2 /*CliBuilder.COMMONS_CLI_UNLIMITED_VALUES*/, valueSeparator: ',', argName: "mapping", "If the primary unpick information fails, these are tried (in given order). By default this list is empty. Possible values are: ${Arrays.stream(UnpickFlavour.values()).map(Object::toString).collect(Collectors.joining(", "))}", type: UnpickFlavour[]);
 		cli_args._(longOpt: 'ornithe-intermediary-generation', "Specifies which generation of Ornithe intermediary to use for Ornithe's mapping flavours", type: int, argName: "generation", defaultValue: "1")
@@ -74,6 +78,8 @@ class GitCraftCli {
 		cli_args._(longOpt: 'sort-json', 'Sorts JSON objects contained in JSON files (e.g. models, language files, ...) in natural order. This is disabled by default as it modifies original data.')
 		cli_args._(longOpt: 'manifest-source', "Specifies the manifest source used to fetch the available versions, the mapping to semantic versions and the dependencies between versions. The Minecraft Launcher Meta (from Mojang) is selected by default. Possible values are: ${Arrays.stream(ManifestSource.values()).map(Object::toString).collect(Collectors.joining(", "))}", type: ManifestSource, argName: "manifestsrc", defaultValue: "mojang");
 		cli_args._(longOpt: 'repo-gc', 'Perform a garbage collection pass on the repository after the run. This will probably speed up any subsequent operation on the repo (e.g. viewing diffs).')
+		cli_args._(longOpt: 'repo-gc-full', 'Repack the whole repository during the garbage collection pass, instead of only packing new objects, combining small packs and writing a commit-graph.')
+		cli_args._(longOpt: 'explain', 'Explains what a run would do without running it: which steps run, are skipped or are already up-to-date, the estimated downloads, the estimated time per step (from previous runs), the critical path and the peak heap usage. Nothing is fetched and the repository is not modified.')
 		cli_args.h(longOpt: 'help', 'Displays this help screen');
 		return cli_args;
 	}
@@ -94,11 +100,17 @@ class GitCraftCli {
 
 		// Integrity
 		boolean verifyChecksums = !cli_args_parsed.hasOption("no-verify");
+		boolean deepVerifyAssets = cli_args_parsed.hasOption("deep-verify-assets");
 		Configuration.editConfiguration(IntegrityConfiguration.class, (original) -> new IntegrityConfiguration(
 			original.verifyChecksums() && verifyChecksums,
-			original.cacheChecksums())
+			original.cacheChecksums(),
+			original.deepVerifyAssets() || deepVerifyAssets)
 		);
 
+		// Global
+		boolean offline = cli_args_parsed.hasOption("offline");
+		Configuration.editConfiguration(GlobalConfiguration.class, (original) -> original.withOffline(original.offline() || offline));
+
 		// Data
 		boolean loadIntegratedDatapack = !cli_args_parsed.hasOption("no-datapack");
 		boolean loadAssets = !cli_args_parsed.hasOption("no-assets");
@@ -113,19 +125,23 @@ class GitCraftCli {
 			original.readableNbt() && readableNbt,
 			original.loadDatagenRegistry() && loadDatagenRegistry,
 			original.sortJsonObjects() || sortJsonObjects,
+			original.datagenTempDirectory(),
 		));
 
 		// Repository
 		boolean createVersionBranches = cli_args_parsed.hasOption("create-version-branches");
 		boolean createStableVersionBranches = cli_args_parsed.hasOption("create-stable-version-branches");
 		boolean repoGc = cli_args_parsed.hasOption("repo-gc");
+		boolean repoGcFull = cli_args_parsed.hasOption("repo-gc-full");
 		Configuration.editConfiguration(RepositoryConfiguration.class, (original) -> new RepositoryConfiguration(
 			original.gitUser(),
 			original.gitMail(),
 			original.gitMainlineLinearBranch(),
 			original.createVersionBranches() || createVersionBranches,
 			original.createStableVersionBranches() || createStableVersionBranches,
-			original.gcAfterRun() || repoGc
+			original.gcAfterRun() || repoGc,
+			original.incrementalMaintenance() && !repoGcFull,
+			original.looseObjectsThreshold()
 		));
 
 		// Application
@@ -247,13 +263,20 @@ class GitCraftCli {
 		if (cli_args_parsed.hasOption("refresh-only-version") || cli_args_parsed.hasOption("refresh-min-version") || cli_args_parsed.hasOption("refresh-max-version")) {
 			refreshDecompilation = true;
 		}
+		boolean explain = cli_args_parsed.hasOption("explain");
+		MappingFlavour[] additionalMappings = null;
+		if (cli_args_parsed.hasOption("additional-mappings")) {
+			additionalMappings = cli_args_parsed.'additional-mappings';
+		}
 		Configuration.editConfiguration(TransientApplicationConfiguration.class, (original) -> new TransientApplicationConfiguration(
 			original.noRepo() || noRepo,
 			overrideRepositoryPath,
 			original.refreshDecompilation() || refreshDecompilation,
 			refreshOnlyVersion,
 			refreshMinVersion,
-			refreshMaxVersion
+			refreshMaxVersion,
+			original.explain() || explain,
+			additionalMappings != null ? additionalMappings : original.additionalMappings()
 		));
 		return true;
 	}
@@ -19,10 +19,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -32,13 +34,65 @@ public class MinecraftVersionGraph extends AbstractVersionGraph<OrderedVersion>
 
 	private final Predicate<OrderedVersion> excludeFromMainBranchPredicate = GitCraft.getApplicationConfiguration().manifestSource().getMetadataProvider()::shouldExcludeFromMainBranch;
 
+	/**
+	 * Results of walks through the graph, keyed by start vertex and walk parameters.
+	 * The structure of the graph is not changed after it has been constructed, so these results stay valid.
+	 */
+	private final ConcurrentHashMap<Walk, OrderedVersion> walkCache;
+	private volatile VersionIndex versionIndex = null;
+
+	private record Walk(OrderedVersion start, boolean forward, boolean toEnd, boolean split, boolean stopAtMerge) {
+	}
+
+	/**
+	 * @param byName            Vertices by lowercase launcher friendly name
+	 * @param bySemanticVersion Vertices by lowercase semantic version
+	 */
+	private record VersionIndex(Map<String, OrderedVersion> byName, Map<String, OrderedVersion> bySemanticVersion) {
+	}
+
 	private MinecraftVersionGraph() {
 		super();
+		this.walkCache = new ConcurrentHashMap<>();
 	}
 
 	private MinecraftVersionGraph(MinecraftVersionGraph previous, Predicate<OrderedVersion> predicate, String... tags) {
 		super(previous, predicate, tags);
+		this.walkCache = new ConcurrentHashMap<>();
 		this.findBranchStructure();
+		this.freeze();
+	}
+
+	private MinecraftVersionGraph(MinecraftVersionGraph previous, String... tags) {
+		super(previous, tags);
+		this.walkCache = previous.walkCache;
+		this.versionIndex = previous.versionIndex;
+		this.pathsToTip = previous.pathsToTip;
+	}
+
+	/**
+	 * Filters this graph. If all vertices are retained, a view sharing the structure of this graph is returned instead of a copy.
+	 */
+	private MinecraftVersionGraph filter(Predicate<OrderedVersion> predicate, String... tags) {
+		if (this.edgesBack.keySet().stream().allMatch(predicate)) {
+			return tags.length == 0 ? this : new MinecraftVersionGraph(this, tags);
+		}
+		return new MinecraftVersionGraph(this, predicate, tags);
+	}
+
+	private VersionIndex getVersionIndex() {
+		VersionIndex index = this.versionIndex;
+		if (index == null) {
+			Map<String, OrderedVersion> byName = new HashMap<>();
+			Map<String, OrderedVersion> bySemanticVersion = new HashMap<>();
+			for (OrderedVersion version : this.edgesBack.keySet()) {
+				byName.putIfAbsent(version.launcherFriendlyVersionName().toLowerCase(Locale.ROOT), version);
+				bySemanticVersion.putIfAbsent(version.semanticVersion().toLowerCase(Locale.ROOT), version);
+			}
+			index = new VersionIndex(byName, bySemanticVersion);
+			this.versionIndex = index;
+		}
+		return index;
 	}
 
 	private void findBranchStructure() {
@@ -131,9 +185,11 @@ public class MinecraftVersionGraph extends AbstractVersionGraph<OrderedVersion>
 				graph.edgesFw.computeIfAbsent(previousVersion, _ -> new TreeSet<>()).add(version);
 			}
 		}
+		graph.invalidateStructure();
 		graph.testGraphConnectivity();
 		graph.validateNoCycles();
 		graph.findBranchStructure();
+		graph.freeze();
 		return graph;
 	}
 
@@ -175,32 +231,32 @@ public class MinecraftVersionGraph extends AbstractVersionGraph<OrderedVersion>
 	}
 
 	public MinecraftVersionGraph filterMapping(MappingFlavour mappingFlavour, MappingFlavour[] mappingFallback) {
-		return new MinecraftVersionGraph(this, (entry -> mappingFlavour.exists(entry) || (mappingFallback != null && mappingFallback.length > 0 && Arrays.stream(mappingFallback).anyMatch(mapping -> mapping.exists(entry)))));
+		return this.filter((entry -> mappingFlavour.exists(entry) || (mappingFallback != null && mappingFallback.length > 0 && Arrays.stream(mappingFallback).anyMatch(mapping -> mapping.exists(entry)))));
 	}
 
 	public MinecraftVersionGraph filterUnpick(UnpickFlavour unpickFlavour, UnpickFlavour[] unpickFallback) {
-		return new MinecraftVersionGraph(this, (entry -> unpickFlavour.exists(entry) || (unpickFallback != null && unpickFallback.length > 0 && Arrays.stream(unpickFallback).anyMatch(unpick -> unpick.exists(entry)))));
+		return this.filter((entry -> unpickFlavour.exists(entry) || (unpickFallback != null && unpickFallback.length > 0 && Arrays.stream(unpickFallback).anyMatch(unpick -> unpick.exists(entry)))));
 	}
 
 	public MinecraftVersionGraph filterMainlineVersions() {
-		return new MinecraftVersionGraph(this, this::isMainline);
+		return this.filter(this::isMainline);
 	}
 
 	public MinecraftVersionGraph filterMinVersion(OrderedVersion version) {
-		return new MinecraftVersionGraph(this, (entry -> entry.compareTo(version) >= 0), String.format("min-%s", version.launcherFriendlyVersionName()));
+		return this.filter((entry -> entry.compareTo(version) >= 0), String.format("min-%s", version.launcherFriendlyVersionName()));
 	}
 
 	public MinecraftVersionGraph filterMaxVersion(OrderedVersion version) {
-		return new MinecraftVersionGraph(this, (entry -> entry.compareTo(version) <= 0), String.format("max-%s", version.launcherFriendlyVersionName()));
+		return this.filter((entry -> entry.compareTo(version) <= 0), String.format("max-%s", version.launcherFriendlyVersionName()));
 	}
 
 	public MinecraftVersionGraph filterOnlyVersion(OrderedVersion... version) {
 		TreeSet<OrderedVersion> versionList = new TreeSet<>(Arrays.asList(version));
-		return new MinecraftVersionGraph(this, versionList::contains, versionList.stream().map(OrderedVersion::launcherFriendlyVersionName).collect(Collectors.joining("-")));
+		return this.filter(versionList::contains, versionList.stream().map(OrderedVersion::launcherFriendlyVersionName).collect(Collectors.joining("-")));
 	}
 
 	public MinecraftVersionGraph filterConnectedOrphans() {
-		return new MinecraftVersionGraph(this, Predicate.not(this::isOnConnectedOrphanBranch));
+		return this.filter(Predicate.not(this::isOnConnectedOrphanBranch));
 	}
 
 	public MinecraftVersionGraph filterExcludeVersion(OrderedVersion... version) {
@@ -208,15 +264,15 @@ public class MinecraftVersionGraph extends AbstractVersionGraph<OrderedVersion>
 		if (versionList.isEmpty()) {
 			return this;
 		}
-		return new MinecraftVersionGraph(this, (entry -> !versionList.contains(entry)), "exclude-" + versionList.stream().map(OrderedVersion::launcherFriendlyVersionName).collect(Collectors.joining("-")));
+		return this.filter((entry -> !versionList.contains(entry)), "exclude-" + versionList.stream().map(OrderedVersion::launcherFriendlyVersionName).collect(Collectors.joining("-")));
 	}
 
 	public MinecraftVersionGraph filterStableRelease() {
-		return new MinecraftVersionGraph(this, (entry -> !entry.isSnapshotOrPending()), "stable");
+		return this.filter((entry -> !entry.isSnapshotOrPending()), "stable");
 	}
 
 	public MinecraftVersionGraph filterSnapshots() {
-		return new MinecraftVersionGraph(this, OrderedVersion::isSnapshotOrPending, "snapshot");
+		return this.filter(OrderedVersion::isSnapshotOrPending, "snapshot");
 	}
 
 	public OrderedVersion getMainRootVersion() {
@@ -256,6 +312,17 @@ public class MinecraftVersionGraph extends AbstractVersionGraph<OrderedVersion>
 	}
 
 	private OrderedVersion walkBackToBranchPoint(OrderedVersion mcVersion, boolean root, boolean split, boolean outgoing) {
+		// Not using computeIfAbsent, as walks are recursive; every visited vertex is memoized, as the result of a walk equals the result of its continuation
+		Walk walk = new Walk(mcVersion, false, root, split, outgoing);
+		OrderedVersion result = this.walkCache.get(walk);
+		if (result == null) {
+			result = this.computeWalkBackToBranchPoint(mcVersion, root, split, outgoing);
+			this.walkCache.put(walk, result);
+		}
+		return result;
+	}
+
+	private OrderedVersion computeWalkBackToBranchPoint(OrderedVersion mcVersion, boolean root, boolean split, boolean outgoing) {
 
 		// the following logic assumes there are no secondary branches
 		// this is currently true for all supported manifests
@@ -334,6 +401,16 @@ public class MinecraftVersionGraph extends AbstractVersionGraph<OrderedVersion>
 	}
 
 	private OrderedVersion walkForwardToMergePoint(OrderedVersion mcVersion, boolean tip, boolean split, boolean incoming) {
+		Walk walk = new Walk(mcVersion, true, tip, split, incoming);
+		OrderedVersion result = this.walkCache.get(walk);
+		if (result == null) {
+			result = this.computeWalkForwardToMergePoint(mcVersion, tip, split, incoming);
+			this.walkCache.put(walk, result);
+		}
+		return result;
+	}
+
+	private OrderedVersion computeWalkForwardToMergePoint(OrderedVersion mcVersion, boolean tip, boolean split, boolean incoming) {
 
 		// the following logic assumes there are no secondary branches
 		// this is currently true for all supported manifests
@@ -403,14 +480,14 @@ public class MinecraftVersionGraph extends AbstractVersionGraph<OrderedVersion>
 		if (versionName == null) {
 			return null;
 		}
-		return this.edgesBack.keySet().stream().filter(value -> value.launcherFriendlyVersionName().equalsIgnoreCase(versionName)).findFirst().orElse(null);
+		return this.getVersionIndex().byName().get(versionName.toLowerCase(Locale.ROOT));
 	}
 
 	public OrderedVersion getMinecraftVersionBySemanticVersion(String semanticVersion) {
 		if (semanticVersion == null) {
 			return null;
 		}
-		return this.edgesBack.keySet().stream().filter(value -> value.semanticVersion().equalsIgnoreCase(semanticVersion)).findFirst().orElse(null);
+		return this.getVersionIndex().bySemanticVersion().get(semanticVersion.toLowerCase(Locale.ROOT));
 	}
 
 	public String repoTagsIdentifier(MappingFlavour mappingFlavour, MappingFlavour[] mappingFallback, boolean patchLvt, SignaturesFlavour signaturesFlavour, NestsFlavour nestsFlavour, ExceptionsFlavour exceptionsFlavour, boolean preening) {
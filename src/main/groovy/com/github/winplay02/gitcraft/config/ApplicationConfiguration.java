@@ -169,6 +169,34 @@ public record ApplicationConfiguration(ManifestSource manifestSource,
 		return this.excludedVersion() != null;
 	}
 
+	/**
+	 * @param usedMapping Mappings to use instead
+	 * @return copy of this configuration, using other mappings
+	 */
+	public ApplicationConfiguration withUsedMapping(MappingFlavour usedMapping) {
+		return new ApplicationConfiguration(
+			this.manifestSource(),
+			usedMapping,
+			this.fallbackMappings(),
+			this.usedUnpickFlavour(),
+			this.fallbackUnpickFlavours(),
+			this.singleSideVersionsOnMainBranch(),
+			this.onlyStableReleases(),
+			this.onlySnapshots(),
+			this.skipNonLinear(),
+			this.onlyVersion(),
+			this.minVersion(),
+			this.maxVersion(),
+			this.excludedVersion(),
+			this.ornitheIntermediaryGeneration(),
+			this.patchLvt(),
+			this.usedExceptions(),
+			this.usedSignatures(),
+			this.usedNests(),
+			this.enablePreening()
+		);
+	}
+
 	public Optional<MappingFlavour> getMappingsForMinecraftVersion(OrderedVersion mcVersion) {
 		if (this.usedMapping().exists(mcVersion)) {
 			return Optional.of(this.usedMapping());
@@ -17,13 +17,15 @@ import static com.github.winplay02.gitcraft.config.Configuration.Utils.prim;
  * @param readableNbt Whether raw NBT files should be converted to the readable SNBT format and additionally included in versioning
  * @param loadDatagenRegistry Whether datagenerated registry artifacts should be included in versioning
  * @param sortJsonObjects Whether JSON files should be sorted in a deterministic order to make them more comparable
+ * @param datagenTempDirectory Directory for temporary datagen files, e.g. on a tmpfs with enough space (empty means next to the version artifacts)
  */
 public record DataConfiguration(boolean loadIntegratedDatapack,
 								boolean loadAssets,
 								boolean loadAssetsExtern,
 								boolean readableNbt,
 								boolean loadDatagenRegistry,
-								boolean sortJsonObjects)
+								boolean sortJsonObjects,
+								String datagenTempDirectory)
 	implements Configuration {
 
 	public static final DataConfiguration DEFAULT = new DataConfiguration(
@@ -32,9 +34,16 @@ public record DataConfiguration(boolean loadIntegratedDatapack,
 		true,
 		true,
 		true,
-		false
+		false,
+		""
 	);
 
+	public DataConfiguration {
+		if (datagenTempDirectory == null) {
+			datagenTempDirectory = "";
+		}
+	}
+
 	@Override
 	public Map<String, JsonElement> serialize() {
 		return Map.of(
@@ -43,7 +52,8 @@ public record DataConfiguration(boolean loadIntegratedDatapack,
 			"loadAssetsExtern", prim(this.loadAssetsExtern()),
 			"readableNbt", prim(this.readableNbt()),
 			"loadDatagenRegistry", prim(this.loadDatagenRegistry()),
-			"sortJsonObjects", prim(this.sortJsonObjects())
+			"sortJsonObjects", prim(this.sortJsonObjects()),
+			"datagenTempDirectory", prim(this.datagenTempDirectory())
 		);
 	}
 
@@ -59,6 +69,9 @@ public record DataConfiguration(boolean loadIntegratedDatapack,
 		if (this.sortJsonObjects()) {
 			info.add("JSON files (JSON objects) will be sorted in natural order.");
 		}
+		if (!this.datagenTempDirectory().isEmpty()) {
+			info.add(String.format("Temporary datagen files are stored in: %s", this.datagenTempDirectory()));
+		}
 		return info;
 	}
 
@@ -69,7 +82,8 @@ public record DataConfiguration(boolean loadIntegratedDatapack,
 			Utils.getBoolean(map, "loadAssetsExtern", DEFAULT.loadAssetsExtern()),
 			Utils.getBoolean(map, "readableNbt", DEFAULT.readableNbt()),
 			Utils.getBoolean(map, "loadDatagenRegistry", DEFAULT.loadDatagenRegistry()),
-			Utils.getBoolean(map, "sortJsonObjects", DEFAULT.sortJsonObjects())
+			Utils.getBoolean(map, "sortJsonObjects", DEFAULT.sortJsonObjects()),
+			Utils.getString(map, "datagenTempDirectory", DEFAULT.datagenTempDirectory())
 		);
 	}
 }
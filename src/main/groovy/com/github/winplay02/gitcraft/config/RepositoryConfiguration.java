@@ -16,24 +16,38 @@ import static com.github.winplay02.gitcraft.config.Configuration.Utils.prim;
  * @param createVersionBranches Whether branches should be created for all versions
  * @param createStableVersionBranches Whether branches should be created for stable versions
  * @param gcAfterRun Whether garbage-collection should be run after completing a run
+ * @param incrementalMaintenance Whether garbage-collection should only pack loose objects, combine small packs and write a commit-graph, instead of repacking the whole repository
+ * @param looseObjectsThreshold Amount of loose objects, after which they are packed during a run, 0 disables packing during a run
  */
 public record RepositoryConfiguration(String gitUser,
 									  String gitMail,
 									  String gitMainlineLinearBranch,
 									  boolean createVersionBranches,
 									  boolean createStableVersionBranches,
-									  boolean gcAfterRun)
+									  boolean gcAfterRun,
+									  boolean incrementalMaintenance,
+									  int looseObjectsThreshold)
 	implements Configuration {
 
+	public static final int DEFAULT_LOOSE_OBJECTS_THRESHOLD = 6700;
+
 	public static final RepositoryConfiguration DEFAULT = new RepositoryConfiguration(
 		"Mojang",
 		"gitcraft@decompiled.mc",
 		"master",
 		false,
 		false,
-		true
+		true,
+		true,
+		DEFAULT_LOOSE_OBJECTS_THRESHOLD
 	);
 
+	public RepositoryConfiguration {
+		if (looseObjectsThreshold < 0) {
+			looseObjectsThreshold = 0;
+		}
+	}
+
 	@Override
 	public Map<String, JsonElement> serialize() {
 		return Map.of(
@@ -42,7 +56,9 @@ public record RepositoryConfiguration(String gitUser,
 			"gitMainlineLinearBranch", prim(this.gitMainlineLinearBranch()),
 			"createVersionBranches", prim(this.createVersionBranches()),
 			"createStableVersionBranches", prim(this.createStableVersionBranches()),
-			"gcAfterRun", prim(this.gcAfterRun())
+			"gcAfterRun", prim(this.gcAfterRun()),
+			"incrementalMaintenance", prim(this.incrementalMaintenance()),
+			"looseObjectsThreshold", prim(this.looseObjectsThreshold())
 		);
 	}
 
@@ -63,7 +79,9 @@ public record RepositoryConfiguration(String gitUser,
 			Utils.getString(map, "gitMainlineLinearBranch", DEFAULT.gitMainlineLinearBranch()),
 			Utils.getBoolean(map, "createVersionBranches", DEFAULT.createVersionBranches()),
 			Utils.getBoolean(map, "createStableVersionBranches", DEFAULT.createStableVersionBranches()),
-			Utils.getBoolean(map, "gcAfterRun", DEFAULT.gcAfterRun())
+			Utils.getBoolean(map, "gcAfterRun", DEFAULT.gcAfterRun()),
+			Utils.getBoolean(map, "incrementalMaintenance", DEFAULT.incrementalMaintenance()),
+			Utils.getInt(map, "looseObjectsThreshold", DEFAULT.looseObjectsThreshold())
 		);
 	}
 }
@@ -1,9 +1,11 @@
 package com.github.winplay02.gitcraft.config;
 
+import com.github.winplay02.gitcraft.mappings.MappingFlavour;
 import com.google.gson.JsonElement;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -16,13 +18,17 @@ import java.util.Map;
  * @param refreshOnlyVersion Whether a specific versions should be refreshed
  * @param refreshMinVersion A min version that should be refreshed (all versions greater than this version are also refreshed)
  * @param refreshMaxVersion A max version that should be refreshed (all versions less than this version are also refreshed)
+ * @param explain Whether the execution plan should only be explained (with cost estimates), without fetching anything or modifying the repository
+ * @param additionalMappings Mappings that are published in the same run (each to its own repository), in addition to the used mapping; flavour-independent steps run only once per version
  */
 public record TransientApplicationConfiguration(boolean noRepo,
 												Path overrideRepositoryPath,
 												boolean refreshDecompilation,
 												String[] refreshOnlyVersion,
 												String refreshMinVersion,
-												String refreshMaxVersion)
+												String refreshMaxVersion,
+												boolean explain,
+												MappingFlavour[] additionalMappings)
 	implements Configuration {
 
 	public static final TransientApplicationConfiguration DEFAULT = new TransientApplicationConfiguration(
@@ -31,7 +37,9 @@ public record TransientApplicationConfiguration(boolean noRepo,
 		false,
 		null,
 		null,
-		null
+		null,
+		false,
+		new MappingFlavour[0]
 	);
 
 	@Override
@@ -59,6 +67,12 @@ public record TransientApplicationConfiguration(boolean noRepo,
 				info.add(String.format("Versions to refresh artifacts: all up to %s", this.refreshMaxVersion()));
 			}
 		}
+		if (this.explain()) {
+			info.add("The execution plan will only be explained, no steps will run");
+		}
+		if (this.additionalMappings() != null && this.additionalMappings().length > 0) {
+			info.add(String.format("Additional mappings published in the same run: %s", String.join(", ", Arrays.stream(this.additionalMappings()).map(Object::toString).toList())));
+		}
 		return info;
 	}
 
@@ -57,7 +57,8 @@ class GitCraftLauncherCli {
 		boolean verifyChecksums = !cli_args_parsed.hasOption("no-verify");
 		Configuration.editConfiguration(IntegrityConfiguration.class, (original) -> new IntegrityConfiguration(
 			original.verifyChecksums() && verifyChecksums,
-			original.cacheChecksums())
+			original.cacheChecksums(),
+			original.deepVerifyAssets())
 		);
 
 		// Application
@@ -13,11 +13,14 @@ import com.github.winplay02.gitcraft.pipeline.GitCraftStepWorker;
 import com.github.winplay02.gitcraft.types.Artifact;
 import com.github.winplay02.gitcraft.types.AssetsIndex;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
+import com.github.winplay02.gitcraft.util.FileTransferHelper;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.util.SerializationHelper;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public record LaunchStepHardlinkAssets(GitCraftStepConfig config) implements GitCraftStepWorker<StepInput.Empty> {
@@ -61,12 +64,12 @@ public record LaunchStepHardlinkAssets(GitCraftStepConfig config) implements Git
 			Path assetsPathVfs = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.LAUNCH_ASSETS_VIRTUALFS);
 			MiscHelper.deleteDirectory(assetsPathVfs);
 			Files.createDirectories(assetsPathVfs);
+			List<FileTransferHelper.FileTransfer> transfers = new ArrayList<>();
 			for (Map.Entry<String, AssetsIndexMetadata.Asset> object : assetsIndex.assetsIndex().objects().entrySet()) {
-				Path targetPath = assetsPathVfs.resolve(object.getKey());
-				Files.createDirectories(targetPath.getParent());
 				Artifact assetArtifact = new Artifact(object.getValue().url(), object.getValue().hash(), object.getValue().hash());
-				Files.createLink(targetPath, assetArtifact.resolve(assetsObjectsDir));
+				transfers.add(new FileTransferHelper.FileTransfer(assetArtifact.resolve(assetsObjectsDir), assetsPathVfs.resolve(object.getKey())));
 			}
+			FileTransferHelper.transferFiles("Linked legacy assets", transfers, FileTransferHelper.TransferMode.HARDLINK);
 			// Check for icons
 			for (Map.Entry<String, Artifact> icon : icons.entrySet()) {
 				Path assetFileIcon = assetsPathVfs.resolve(icon.getKey());
@@ -95,13 +98,14 @@ public record LaunchStepHardlinkAssets(GitCraftStepConfig config) implements Git
 				Files.createLink(targetAssetsIndex, context.targetVersion().assetsIndex().resolve(assetsIndexDir));
 			}
 			// Create Link to assets
+			List<FileTransferHelper.FileTransfer> transfers = new ArrayList<>();
 			for (Artifact assetObject : assetsIndex.assets()) {
 				Path outerDirectory = assetsPathObjects.resolve(assetObject.name().substring(0, 2));
-				Files.createDirectories(outerDirectory);
 				if (!Files.exists(assetObject.resolve(outerDirectory))) {
-					Files.createLink(assetObject.resolve(outerDirectory), assetObject.resolve(assetsObjectsDir));
+					transfers.add(new FileTransferHelper.FileTransfer(assetObject.resolve(assetsObjectsDir), assetObject.resolve(outerDirectory)));
 				}
 			}
+			FileTransferHelper.transferFiles("Linked assets", transfers, FileTransferHelper.TransferMode.HARDLINK);
 		}
 		return StepOutput.ofEmptyResultSet(StepStatus.SUCCESS);
 	}
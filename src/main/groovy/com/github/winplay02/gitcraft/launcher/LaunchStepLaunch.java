@@ -19,6 +19,7 @@ import com.github.winplay02.gitcraft.pipeline.key.StorageKey;
 import com.github.winplay02.gitcraft.types.Artifact;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
 import com.github.winplay02.gitcraft.unpick.Unpick;
+import com.github.winplay02.gitcraft.util.AotCache;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import groovy.lang.Tuple2;
 import net.fabricmc.loom.util.FileSystemUtil;
@@ -270,6 +271,12 @@ public record LaunchStepLaunch(GitCraftStepConfig config) implements GitCraftSte
 			cmdArgs.addAll(List.of("--add-opens", "java.base/jdk.internal.loader=ALL-UNNAMED"));
 		}
 		cmdArgs.addAll(List.of("--enable-native-access=ALL-UNNAMED"));
+		// AOT Cache (not with the launch agent, which transforms classes at runtime)
+		AotCache.Invocation aotCache = null;
+		if (!LEGACY_MAIN_CLASS.equals(context.targetVersion().mainClass())) {
+			aotCache = AotCache.prepare(GitCraftPipelineFilesystemRoot.getAotCaches().apply(pipeline.getFilesystemStorage().rootFilesystem()), String.format("client-%s", context.targetVersion().pathName()), classpath, cmdArgs);
+			cmdArgs.addAll(aotCache.jvmArgs());
+		}
 		// Main Class
 		cmdArgs.add(context.targetVersion().mainClass());
 		// Program Args
@@ -279,6 +286,9 @@ public record LaunchStepLaunch(GitCraftStepConfig config) implements GitCraftSte
 		cmdArgs.addAll(programArgs);
 		MiscHelper.println(String.join(" ", cmdArgs));
 		MiscHelper.createJavaSubprocess(context.executorService(), String.format("Client/%s", context.targetVersion().launcherFriendlyVersionName()), GitCraftPipelineFilesystemRoot.getRuntimeDirectory().apply(pipeline.getFilesystemStorage().rootFilesystem()), cmdArgs);
+		if (aotCache != null) {
+			aotCache.complete();
+		}
 		return StepOutput.ofEmptyResultSet(StepStatus.SUCCESS);
 	}
 
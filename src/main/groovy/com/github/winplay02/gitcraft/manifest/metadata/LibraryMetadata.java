@@ -19,14 +19,20 @@ public record LibraryMetadata(String name, Downloads downloads, List<VersionInfo
 			}
 			return artifacts;
 		}
-		final String mavenUrl = RemoteHelper.createMavenURLFromMavenArtifact("https://libraries.minecraft.net", this.name());
 		try {
-			return List.of(RemoteHelper.createMavenURLFromMavenArtifact(mavenUrl));
+			return List.of(RemoteHelper.createMavenURLFromMavenArtifact(this.getMavenUrl()));
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * @return URL of the artifact, for libraries without explicit downloads (their checksum needs to be looked up)
+	 */
+	public String getMavenUrl() {
+		return RemoteHelper.createMavenURLFromMavenArtifact("https://libraries.minecraft.net", this.name());
+	}
+
 	public record Downloads(ArtifactMetadata artifact, Map<String, ArtifactMetadata> classifiers) {
 	}
 
@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 import static com.github.winplay02.gitcraft.pipeline.GitCraftPipelineFilesystemStorage.*;
 
@@ -163,6 +164,53 @@ public final class GitCraftPipelineDescription {
 		GitCraftPipelineDescription::getConfig
 	);
 
+	// Steps of the default pipeline, that do not depend on the mapping flavour (their artifacts are shared by all mapping flavours)
+	public static final Set<IStep<OrderedVersion, ?, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig>> FLAVOUR_INDEPENDENT_STEPS = Set.of(
+		GitCraftStep.FETCH_ARTIFACTS,
+		GitCraftStep.FETCH_LIBRARIES,
+		GitCraftStep.FETCH_ASSETS,
+		GitCraftStep.UNPACK_ARTIFACTS,
+		GitCraftStep.MERGE_OBFUSCATED_JARS,
+		GitCraftStep.DATAGEN,
+		GitCraftStep.PROVIDE_EXCEPTIONS,
+		GitCraftStep.PROVIDE_SIGNATURES,
+		GitCraftStep.PATCH_LOCAL_VARIABLE_TABLES,
+		GitCraftStep.APPLY_EXCEPTIONS,
+		GitCraftStep.APPLY_SIGNATURES
+	);
+
+	/**
+	 * Configuration for flavour-independent steps, which must not depend on the mappings (versions may only have mappings of some of the flavours).
+	 */
+	public static GitCraftStepConfig getFlavourIndependentConfig(OrderedVersion version) {
+		return new GitCraftStepConfig(
+			createIdentifierMap(version),
+			MappingFlavour.IDENTITY_UNMAPPED,
+			UnpickFlavour.NONE,
+			GitCraft.getApplicationConfiguration().getExceptionsForMinecraftVersion(version).orElse(ExceptionsFlavour.NONE),
+			GitCraft.getApplicationConfiguration().getSignaturesForMinecraftVersion(version).orElse(SignaturesFlavour.NONE),
+			NestsFlavour.NONE,
+			GitCraft.getApplicationConfiguration().patchLvt(),
+			GitCraft.getApplicationConfiguration().enablePreening()
+		);
+	}
+
+	// Publishing multiple mapping flavours: the flavour-independent steps run once per version (for all versions needed by any flavour)...
+	public static final PipelineDescription<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> SHARED_PIPELINE = DEFAULT_PIPELINE.restrictTo(
+		"Default (shared by all mapping flavours)",
+		FLAVOUR_INDEPENDENT_STEPS,
+		(graph, versionCtx) -> false,
+		GitCraftPipelineDescription::getFlavourIndependentConfig
+	);
+
+	// ...and then the remaining steps run once per flavour, inheriting the results of the shared pipeline
+	public static final PipelineDescription<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> FLAVOUR_PIPELINE = DEFAULT_PIPELINE.restrictTo(
+		"Default (per mapping flavour)",
+		DEFAULT_PIPELINE.steps().stream().filter(step -> !FLAVOUR_INDEPENDENT_STEPS.contains(step)).collect(Collectors.toSet()),
+		DEFAULT_PIPELINE.skipVersion(),
+		GitCraftPipelineDescription::getConfig
+	);
+
 	// GC does not need to be in the default pipeline, as it is sufficient to only gc at the end once
 	public static final PipelineDescription<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> GC_PIPELINE = new PipelineDescription<>(
 		"GC",
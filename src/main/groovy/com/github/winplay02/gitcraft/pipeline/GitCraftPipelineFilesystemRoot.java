@@ -1,8 +1,12 @@
 package com.github.winplay02.gitcraft.pipeline;
 
+import com.github.winplay02.gitcraft.GitCraft;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.Optional;
 import java.util.function.Function;
 
 public final class GitCraftPipelineFilesystemRoot {
@@ -65,6 +69,27 @@ public final class GitCraftPipelineFilesystemRoot {
 		return root -> root.getByIndex("runtime");
 	}
 
+	public static Function<IPipelineFilesystemRoot, Path> getAotCaches() {
+		return root -> root.getByIndex("aot-caches");
+	}
+
+	/**
+	 * Directory for temporary datagen files, if one is configured (e.g. on a tmpfs), otherwise none (temporary files are stored next to the version artifacts).
+	 * The directory is scoped by the root, so that runs with different roots do not share temporary files.
+	 *
+	 * @return function deriving the directory for temporary datagen files from the root
+	 */
+	public static Function<IPipelineFilesystemRoot, Optional<Path>> getDatagenTemp() {
+		return root -> {
+			String configured = GitCraft.getDataConfiguration().datagenTempDirectory();
+			if (configured.isEmpty()) {
+				return Optional.empty();
+			}
+			Path normalizedRoot = root.getRoot().toAbsolutePath().normalize();
+			return Optional.of(Path.of(configured).resolve(String.format("gitcraft-datagen-%s", HexFormat.of().toHexDigits(normalizedRoot.toString().hashCode()))));
+		};
+	}
+
 	public static void initialize(IPipelineFilesystemRoot fsRoot) throws IOException {
 		Files.createDirectories(getDecompiled().apply(fsRoot));
 		Files.createDirectories(getMappings().apply(fsRoot));
@@ -79,5 +104,6 @@ public final class GitCraftPipelineFilesystemRoot {
 		Files.createDirectories(getPatchesStore().apply(fsRoot));
 		Files.createDirectories(getPatchedStore().apply(fsRoot));
 		Files.createDirectories(getRuntimeDirectory().apply(fsRoot));
+		Files.createDirectories(getAotCaches().apply(fsRoot));
 	}
 }
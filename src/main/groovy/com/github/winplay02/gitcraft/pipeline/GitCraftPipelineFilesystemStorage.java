@@ -3,11 +3,14 @@ package com.github.winplay02.gitcraft.pipeline;
 import com.github.winplay02.gitcraft.pipeline.key.ArtifactKey;
 import com.github.winplay02.gitcraft.pipeline.key.DirectoryKey;
 import com.github.winplay02.gitcraft.pipeline.key.MinecraftJar;
+import com.github.winplay02.gitcraft.pipeline.key.StorageKey;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
 import com.github.winplay02.gitcraft.util.GitCraftPaths;
 import com.github.winplay02.gitcraft.util.LazyValue;
+import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.pipeline.GitCraftStepConfig.FlavourMatcher;
 
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -118,6 +121,30 @@ public final class GitCraftPipelineFilesystemStorage {
 
 	public static final ArtifactKey LAUNCHABLE_CLIENT_JAR = new ArtifactKey(LAUNCH_VERSIONS, SIDE_CLIENT, DIST_JAR);
 
+	// Intermediates produced by steps, that do not depend on the mapping flavour (see GitCraftPipelineDescription#FLAVOUR_INDEPENDENT_STEPS)
+	public static final Set<StorageKey> FLAVOUR_INDEPENDENT_INTERMEDIATES = Set.of(
+		ARTIFACTS_MERGED_JAR, UNPACKED_SERVER_JAR, UNBUNDLED_SERVER_JAR,
+		DATAGEN_SNBT_ARCHIVE, DATAGEN_REPORTS_ARCHIVE,
+		LVT_PATCHED_CLIENT_JAR, LVT_PATCHED_SERVER_JAR, LVT_PATCHED_MERGED_JAR,
+		EXCEPTIONS_PATCHED_CLIENT_JAR, EXCEPTIONS_PATCHED_SERVER_JAR, EXCEPTIONS_PATCHED_MERGED_JAR,
+		SIGNATURES_PATCHED_CLIENT_JAR, SIGNATURES_PATCHED_SERVER_JAR, SIGNATURES_PATCHED_MERGED_JAR
+	);
+
+	public static final Set<StorageKey> FLAVOUR_DEPENDENT_INTERMEDIATES = Set.of(
+		REMAPPED_CLIENT_JAR, REMAPPED_SERVER_JAR, REMAPPED_MERGED_JAR,
+		UNPICKED_CLIENT_JAR, UNPICKED_SERVER_JAR, UNPICKED_MERGED_JAR,
+		NESTED_CLIENT_JAR, NESTED_SERVER_JAR, NESTED_MERGED_JAR,
+		PREENED_CLIENT_JAR, PREENED_SERVER_JAR, PREENED_MERGED_JAR,
+		DECOMPILED_CLIENT_JAR, DECOMPILED_SERVER_JAR, DECOMPILED_MERGED_JAR
+	);
+
+	private static PathDeriver<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> datagenTemp() {
+		// Temporary datagen files are placed in the configured directory (e.g. on a tmpfs) if any, see GitCraftPipelineFilesystemRoot#getDatagenTemp
+		return (storage, context, config) -> GitCraftPipelineFilesystemRoot.getDatagenTemp().apply(storage.rootFilesystem())
+			.map(temp -> temp.resolve(context.targetVersion().pathName()))
+			.orElseGet(() -> storage.resolvePath(ARTIFACTS, context, config, "datagenerator"));
+	}
+
 	public static final LazyValue<PipelineFilesystemStorage<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig>> DEFAULT = LazyValue.of(() -> new PipelineFilesystemStorage<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig>(
 		GitCraftPaths.FILESYSTEM_ROOT,
 		Set.of(
@@ -125,6 +152,7 @@ public final class GitCraftPipelineFilesystemStorage {
 			UNPICKED_CLIENT_JAR, UNPICKED_SERVER_JAR, UNPICKED_MERGED_JAR,
 			DECOMPILED_CLIENT_JAR, DECOMPILED_SERVER_JAR, DECOMPILED_MERGED_JAR
 		),
+		MiscHelper.mergeSetsUnion(new HashSet<>(), FLAVOUR_INDEPENDENT_INTERMEDIATES, FLAVOUR_DEPENDENT_INTERMEDIATES),
 		Map.of(
 			ARTIFACTS, rootPathVersioned(GitCraftPipelineFilesystemRoot.getMcVersionStore()),
 			ARTIFACTS_CLIENT_JAR, createFromKeyWithConfig(ARTIFACTS, "client-%s.jar", MinecraftJar.CLIENT),
@@ -143,12 +171,12 @@ public final class GitCraftPipelineFilesystemStorage {
 			UNBUNDLED_SERVER_JAR, createFromKeyWithConfig(ARTIFACTS, "server-unbundled-%s.jar", MinecraftJar.SERVER)
 		),
 		Map.of(
-			ARTIFACTS_DATAGEN, createFromKey(ARTIFACTS, "datagenerator"),
+			ARTIFACTS_DATAGEN, datagenTemp(),
 			TEMP_DATAGEN_NBT_SOURCE_DIRECTORY, createFromKey(ARTIFACTS_DATAGEN, "input"),
 			TEMP_DATAGEN_NBT_SOURCE_DATA_DIRECTORY, createFromKey(TEMP_DATAGEN_NBT_SOURCE_DIRECTORY, "data"),
 			TEMP_DATAGEN_SNBT_DESTINATION_DIRECTORY, createFromKey(ARTIFACTS_DATAGEN, "output"),
 			TEMP_DATAGEN_SNBT_DESTINATION_DATA_DIRECTORY, createFromKey(TEMP_DATAGEN_SNBT_DESTINATION_DIRECTORY, "data"),
-			TEMP_DATAGEN_REPORTS_DIRECTORY, createFromKey(ARTIFACTS_DATAGEN, "generated", "reports"),
+			TEMP_DATAGEN_REPORTS_DIRECTORY, createFromKey(TEMP_DATAGEN_SNBT_DESTINATION_DIRECTORY, "reports"),
 			DATAGEN_SNBT_ARCHIVE, createFromKeyWithConfig(ARTIFACTS, "datagen-snbt-%s.jar", MinecraftJar.SERVER),
 			DATAGEN_REPORTS_ARCHIVE, createFromKeyWithConfig(ARTIFACTS, "datagen-reports-%s.jar", MinecraftJar.SERVER)
 		),
@@ -1,5 +1,6 @@
 package com.github.winplay02.gitcraft.pipeline;
 
+import com.github.winplay02.gitcraft.Library;
 import com.github.winplay02.gitcraft.launcher.LaunchPrepareLaunchableFile;
 import com.github.winplay02.gitcraft.launcher.LaunchStepHardlinkAssets;
 import com.github.winplay02.gitcraft.launcher.LaunchStepLaunch;
@@ -26,7 +27,9 @@ import com.github.winplay02.gitcraft.pipeline.workers.SignaturesProvider;
 import com.github.winplay02.gitcraft.pipeline.workers.UnpickProvider;
 import com.github.winplay02.gitcraft.pipeline.workers.Unpicker;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
+import com.github.winplay02.gitcraft.util.DownloadPriority;
 
+import java.util.Map;
 import java.util.function.Function;
 
 public enum GitCraftStep implements IStep<OrderedVersion, StepInput, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> {
@@ -80,6 +83,48 @@ public enum GitCraftStep implements IStep<OrderedVersion, StepInput, IStepContex
 		return this.parallelismPolicy;
 	}
 
+	@Override
+	public boolean invalidatesSkipDecision() {
+		// Versions are skipped once they are committed
+		return this == COMMIT;
+	}
+
+	@Override
+	public boolean isResumable() {
+		return switch (this) {
+			case RESET, COMMIT, REPO_GARBAGE_COLLECTOR, LAUNCH_PREPARE_HARDLINK_ASSETS, LAUNCH_PREPARE_CONSTRUCT_LAUNCHABLE_FILE, LAUNCH_CLIENT -> false;
+			default -> true;
+		};
+	}
+
+	@Override
+	public Map<ResourceClass, Integer> getResourceDemands() {
+		return switch (this) {
+			case FETCH_ARTIFACTS, FETCH_LIBRARIES, FETCH_ASSETS -> Map.of(ResourceClass.NETWORK, 1);
+			case PROVIDE_MAPPINGS, PROVIDE_UNPICK, PROVIDE_EXCEPTIONS, PROVIDE_SIGNATURES, PROVIDE_NESTS -> Map.of(ResourceClass.NETWORK, 1, ResourceClass.CPU, 1);
+			case UNPACK_ARTIFACTS, RESET, LAUNCH_PREPARE_HARDLINK_ASSETS, LAUNCH_PREPARE_CONSTRUCT_LAUNCHABLE_FILE -> Map.of(ResourceClass.DISK_IO, 1);
+			case MERGE_OBFUSCATED_JARS, MERGE_REMAPPED_JARS -> Map.of(ResourceClass.CPU, 1, ResourceClass.DISK_IO, 1, ResourceClass.HEAP, 512);
+			case PATCH_LOCAL_VARIABLE_TABLES, APPLY_EXCEPTIONS, APPLY_SIGNATURES, UNPICK_JARS, APPLY_NESTS, PREEN_JARS -> Map.of(ResourceClass.CPU, 1, ResourceClass.HEAP, 512);
+			case REMAP_JARS -> Map.of(ResourceClass.CPU, Library.CONF_GLOBAL.remappingThreads(), ResourceClass.HEAP, 1024);
+			case DECOMPILE_JARS -> Map.of(ResourceClass.CPU, Library.CONF_GLOBAL.decompilingThreads(), ResourceClass.HEAP, 2048);
+			case DATAGEN -> Map.of(ResourceClass.SUBPROCESS, 1, ResourceClass.DISK_IO, 1);
+			case COMMIT -> Map.of(ResourceClass.CPU, 1, ResourceClass.DISK_IO, 1, ResourceClass.HEAP, 512);
+			case REPO_GARBAGE_COLLECTOR -> Map.of(ResourceClass.CPU, Runtime.getRuntime().availableProcessors(), ResourceClass.DISK_IO, 1);
+			case LAUNCH_CLIENT -> Map.of(ResourceClass.SUBPROCESS, 1);
+		};
+	}
+
+	@Override
+	public DownloadPriority.Tier getDownloadTier() {
+		return switch (this) {
+			// Remapping and decompiling wait for jars, libraries and mappings
+			case FETCH_ARTIFACTS, FETCH_LIBRARIES, PROVIDE_MAPPINGS, PROVIDE_UNPICK, PROVIDE_EXCEPTIONS, PROVIDE_SIGNATURES, PROVIDE_NESTS -> DownloadPriority.Tier.CRITICAL;
+			// Only committing waits for assets
+			case FETCH_ASSETS -> DownloadPriority.Tier.BULK;
+			default -> DownloadPriority.Tier.DEFAULT;
+		};
+	}
+
 	public IStepWorker<OrderedVersion, StepInput, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> createWorker(GitCraftStepConfig config) {
 		return workerFactory.apply(config);
 	}
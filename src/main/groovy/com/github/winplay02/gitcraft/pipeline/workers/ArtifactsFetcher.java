@@ -1,9 +1,12 @@
 package com.github.winplay02.gitcraft.pipeline.workers;
 
+import com.github.winplay02.gitcraft.manifest.metadata.ArtifactMetadata;
+import com.github.winplay02.gitcraft.manifest.metadata.VersionInfo;
 import com.github.winplay02.gitcraft.pipeline.GitCraftPipelineFilesystemStorage;
 import com.github.winplay02.gitcraft.pipeline.IPipeline;
 import com.github.winplay02.gitcraft.pipeline.IStepContext;
 import com.github.winplay02.gitcraft.pipeline.GitCraftStepConfig;
+import com.github.winplay02.gitcraft.pipeline.StepEstimate;
 import com.github.winplay02.gitcraft.pipeline.StepInput;
 import com.github.winplay02.gitcraft.pipeline.StepOutput;
 import com.github.winplay02.gitcraft.pipeline.StepResults;
@@ -17,7 +20,9 @@ import com.github.winplay02.gitcraft.util.MiscHelper;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 public record ArtifactsFetcher(GitCraftStepConfig config) implements GitCraftStepWorker<StepInput.Empty> {
@@ -54,6 +59,36 @@ public record ArtifactsFetcher(GitCraftStepConfig config) implements GitCraftSte
 		)));
 	}
 
+	@Override
+	public StepEstimate estimate(
+		IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline,
+		IStepContext.SimpleStepContext<OrderedVersion> context
+	) {
+		VersionInfo.Downloads downloads = context.targetVersion().versionInfo().downloads();
+		long missingFiles = 0;
+		long downloadBytes = 0;
+		Map<StorageKey, ArtifactMetadata> artifacts = new HashMap<>(4);
+		if (downloads.client() != null) {
+			artifacts.put(GitCraftPipelineFilesystemStorage.ARTIFACTS_CLIENT_JAR, downloads.client());
+		}
+		if (downloads.server() != null) {
+			artifacts.put(GitCraftPipelineFilesystemStorage.ARTIFACTS_SERVER_JAR, downloads.server());
+		}
+		if (downloads.windows_server() != null) {
+			artifacts.put(GitCraftPipelineFilesystemStorage.ARTIFACTS_SERVER_EXE, downloads.windows_server());
+		}
+		if (downloads.server_zip() != null) {
+			artifacts.put(GitCraftPipelineFilesystemStorage.ARTIFACTS_SERVER_ZIP, downloads.server_zip());
+		}
+		for (Map.Entry<StorageKey, ArtifactMetadata> artifact : artifacts.entrySet()) {
+			if (!Files.exists(pipeline.getStoragePath(artifact.getKey(), context, this.config))) {
+				++missingFiles;
+				downloadBytes += Math.max(artifact.getValue().size(), 0L);
+			}
+		}
+		return StepEstimate.ofDownloads(missingFiles, downloadBytes);
+	}
+
 	static StepOutput<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> fetchArtifact(
 		IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline,
 		IStepContext.SimpleStepContext<OrderedVersion> context,
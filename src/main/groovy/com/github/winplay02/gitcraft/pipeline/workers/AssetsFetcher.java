@@ -1,17 +1,23 @@
 package com.github.winplay02.gitcraft.pipeline.workers;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.Callable;
 
 import com.github.winplay02.gitcraft.GitCraft;
+import com.github.winplay02.gitcraft.Library;
 import com.github.winplay02.gitcraft.manifest.metadata.AssetsIndexMetadata;
 import com.github.winplay02.gitcraft.pipeline.GitCraftPipelineFilesystemStorage;
 import com.github.winplay02.gitcraft.pipeline.IPipeline;
 import com.github.winplay02.gitcraft.pipeline.IStepContext;
 import com.github.winplay02.gitcraft.pipeline.GitCraftStepConfig;
+import com.github.winplay02.gitcraft.pipeline.StepEstimate;
 import com.github.winplay02.gitcraft.pipeline.StepInput;
 import com.github.winplay02.gitcraft.pipeline.StepOutput;
 import com.github.winplay02.gitcraft.pipeline.StepResults;
@@ -19,11 +25,63 @@ import com.github.winplay02.gitcraft.pipeline.StepStatus;
 import com.github.winplay02.gitcraft.pipeline.GitCraftStepWorker;
 import com.github.winplay02.gitcraft.types.AssetsIndex;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
+import com.github.winplay02.gitcraft.util.GitBlobIdCache;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.util.SerializationHelper;
+import com.google.gson.JsonParseException;
 
 public record AssetsFetcher(GitCraftStepConfig config) implements GitCraftStepWorker<StepInput.Empty> {
 
+	/**
+	 * Written after all objects of an assets index were fetched (and verified, if checksums are verified). As long as it matches, later runs skip checking every single object.
+	 * Objects are never modified in place, so any added, replaced or deleted object changes the modification time of the objects directory.
+	 * The objects of the index are identified by the checksum of the index itself.
+	 *
+	 * @param indexSha1                Checksum of the assets index
+	 * @param checksumsVerified        Whether the checksums of all objects were verified, manifests written without verification do not satisfy runs verifying checksums
+	 * @param objectsDirectoryModified Modification time of the objects directory at verification time, in milliseconds
+	 */
+	private record VerifiedAssetsIndex(String indexSha1, boolean checksumsVerified, long objectsDirectoryModified) {
+		private static VerifiedAssetsIndex of(String indexSha1, Path assetsObjectsDir) throws IOException {
+			return new VerifiedAssetsIndex(indexSha1, Library.CONF_INTEGRITY.verifyChecksums(), Files.getLastModifiedTime(assetsObjectsDir).toMillis());
+		}
+
+		private static Path getPath(Path assetsIndexPath) {
+			return assetsIndexPath.resolveSibling(String.format("%s.verified", assetsIndexPath.getFileName()));
+		}
+
+		private static boolean matches(String indexSha1, Path assetsIndexPath, Path assetsObjectsDir) throws IOException {
+			Path verifiedPath = getPath(assetsIndexPath);
+			if (Library.CONF_INTEGRITY.deepVerifyAssets() || !Files.exists(verifiedPath) || !Files.exists(assetsObjectsDir)) {
+				return false;
+			}
+			VerifiedAssetsIndex verified;
+			try {
+				verified = SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(verifiedPath), VerifiedAssetsIndex.class);
+			} catch (JsonParseException e) {
+				// Damaged manifests are verified again
+				return false;
+			}
+			if (verified == null || (Library.CONF_INTEGRITY.verifyChecksums() && !verified.checksumsVerified())) {
+				return false;
+			}
+			return Objects.equals(indexSha1, verified.indexSha1()) && Files.getLastModifiedTime(assetsObjectsDir).toMillis() == verified.objectsDirectoryModified();
+		}
+
+		private static void write(VerifiedAssetsIndex verified, Path assetsIndexPath) throws IOException {
+			Path verifiedPath = getPath(assetsIndexPath);
+			Path temporaryPath = verifiedPath.resolveSibling(String.format("%s.%s.tmp", verifiedPath.getFileName(), System.nanoTime()));
+			SerializationHelper.writeAllToPath(temporaryPath, SerializationHelper.serialize(verified));
+			Files.move(temporaryPath, verifiedPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private String getIndexSha1(IStepContext.SimpleStepContext<OrderedVersion> context, Path assetsIndexPath) {
+		String indexSha1 = Library.IA_SHA1.getChecksumFile(assetsIndexPath);
+		// Without checksum verification, the index is identified by the checksum it was published with
+		return indexSha1 != null ? indexSha1 : context.targetVersion().assetsIndex().sha1sum();
+	}
+
 	@Override
 	public StepOutput<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> run(
 		IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline,
@@ -42,16 +100,82 @@ public record AssetsFetcher(GitCraftStepConfig config) implements GitCraftStepWo
 		Path assetsIndexPath = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.ASSETS_INDEX_JSON);
 		List<StepOutput<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig>> statuses = new ArrayList<>();
 		statuses.add(ArtifactsFetcher.fetchArtifact(pipeline, context, this.config, context.targetVersion().assetsIndex(), GitCraftPipelineFilesystemStorage.ASSETS_INDEX_JSON, "assets index"));
-		AssetsIndex assetsIndex = AssetsIndex.from(SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(assetsIndexPath), AssetsIndexMetadata.class));
+		if (statuses.getFirst().status() == StepStatus.FAILED) {
+			return StepOutput.merge(statuses);
+		}
+		AssetsIndexMetadata assetsIndexMetadata = SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(assetsIndexPath), AssetsIndexMetadata.class);
+		String indexSha1 = this.getIndexSha1(context, assetsIndexPath);
+		if (VerifiedAssetsIndex.matches(indexSha1, assetsIndexPath, assetsObjectsDir)) {
+			statuses.add(StepOutput.ofEmptyResultSet(StepStatus.UP_TO_DATE));
+			return StepOutput.merge(statuses);
+		}
+		AssetsIndex assetsIndex = AssetsIndex.from(assetsIndexMetadata);
+		boolean deepVerify = Library.CONF_INTEGRITY.deepVerifyAssets();
 
 		int maxRunningTasks = 32;
 		statuses.addAll(
 			MiscHelper.runTasksInParallelAndAwaitResult(
 				maxRunningTasks,
 				context.executorService(),
-				assetsIndex.assets().stream().<Callable<StepOutput<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig>>>map(assetObject -> () -> StepOutput.ofEmptyResultSet(assetObject.fetchArtifact(context.executorService(), assetsObjectsDir, "asset"))).toList()
+				assetsIndex.assets().stream().<Callable<StepOutput<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig>>>map(assetObject -> () -> {
+					if (deepVerify) {
+						// Hash the object again, instead of trusting the cached checksum
+						Library.IA_SHA1.invalidateFile(assetObject.resolve(assetsObjectsDir));
+					}
+					StepStatus status = assetObject.fetchArtifact(context.executorService(), assetsObjectsDir, "asset");
+					// Remember the blob id, so that committing this asset does not need to hash it again
+					if (status != StepStatus.FAILED) {
+						GitBlobIdCache.getBlobId(assetObject.sha1sum(), assetObject.resolve(assetsObjectsDir));
+					}
+					return StepOutput.ofEmptyResultSet(status);
+				}).toList()
 			)
 		);
-		return StepOutput.merge(statuses);
+		StepOutput<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> output = StepOutput.merge(statuses);
+		if (output.status() != StepStatus.FAILED) {
+			VerifiedAssetsIndex.write(VerifiedAssetsIndex.of(indexSha1, assetsObjectsDir), assetsIndexPath);
+		}
+		return output;
+	}
+
+	@Override
+	public Collection<Path> getSharedStoreFiles(
+		IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline,
+		IStepContext.SimpleStepContext<OrderedVersion> context
+	) {
+		if (!GitCraft.getDataConfiguration().loadAssetsExtern() || !GitCraft.getDataConfiguration().loadAssets() || context.targetVersion().assetsIndex() == null) {
+			return List.of();
+		}
+		// Objects are covered by the manifest, which is only written after all objects of the index were verified
+		return List.of(VerifiedAssetsIndex.getPath(pipeline.getStoragePath(GitCraftPipelineFilesystemStorage.ASSETS_INDEX_JSON, context, this.config)));
+	}
+
+	@Override
+	public StepEstimate estimate(
+		IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline,
+		IStepContext.SimpleStepContext<OrderedVersion> context
+	) throws IOException {
+		if (!GitCraft.getDataConfiguration().loadAssetsExtern() || !GitCraft.getDataConfiguration().loadAssets() || context.targetVersion().assetsIndex() == null) {
+			return StepEstimate.UP_TO_DATE;
+		}
+		Path assetsIndexPath = pipeline.getStoragePath(GitCraftPipelineFilesystemStorage.ASSETS_INDEX_JSON, context, this.config);
+		if (!Files.exists(assetsIndexPath)) {
+			// Objects are only known after fetching the index
+			return new StepEstimate(false, Math.max(context.targetVersion().versionInfo().assetIndex().size(), 0L));
+		}
+		Path assetsObjectsDir = pipeline.getStoragePath(GitCraftPipelineFilesystemStorage.ASSETS_OBJECTS, context, this.config);
+		if (VerifiedAssetsIndex.matches(this.getIndexSha1(context, assetsIndexPath), assetsIndexPath, assetsObjectsDir)) {
+			return StepEstimate.UP_TO_DATE;
+		}
+		AssetsIndexMetadata assetsIndex = SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(assetsIndexPath), AssetsIndexMetadata.class);
+		long missingFiles = 0;
+		long downloadBytes = 0;
+		for (AssetsIndexMetadata.Asset asset : assetsIndex.objects().values()) {
+			if (!Files.exists(assetsObjectsDir.resolve(asset.hash()))) {
+				++missingFiles;
+				downloadBytes += asset.size();
+			}
+		}
+		return StepEstimate.ofDownloads(missingFiles, downloadBytes);
 	}
 }
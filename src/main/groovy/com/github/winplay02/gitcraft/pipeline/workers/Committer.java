@@ -15,20 +15,24 @@ import com.github.winplay02.gitcraft.pipeline.GitCraftStepWorker;
 import com.github.winplay02.gitcraft.pipeline.key.StorageKey;
 import com.github.winplay02.gitcraft.types.AssetsIndex;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
+import com.github.winplay02.gitcraft.util.FileTransferHelper;
+import com.github.winplay02.gitcraft.util.GitBlobIdCache;
 import com.github.winplay02.gitcraft.util.MiscHelper;
+import com.github.winplay02.gitcraft.util.RepoMaintenance;
 import com.github.winplay02.gitcraft.util.RepoWrapper;
 import com.github.winplay02.gitcraft.util.SerializationHelper;
 import com.google.gson.JsonSyntaxException;
 import net.fabricmc.loom.util.FileSystemUtil;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -39,6 +43,8 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.StreamSupport;
 
 public record Committer(GitCraftStepConfig config) implements GitCraftStepWorker<Committer.Inputs> {
@@ -62,24 +68,31 @@ public record Committer(GitCraftStepConfig config) implements GitCraftStepWorker
 		if (target_branch.isEmpty()) {
 			return StepOutput.ofEmptyResultSet(StepStatus.UP_TO_DATE);
 		}
-		// Copy to repository
+		// Copy to repository, parts that are unchanged compared to the parent commit are reused
+		final SubtreeReuse subtreeReuse = SubtreeReuse.forHead(context.repository(), String.format("sortJsonObjects=%s", GitCraft.getDataConfiguration().sortJsonObjects()));
+		final List<RepoWrapper.DirectIndexEntry> directIndexEntries = new ArrayList<>();
 		MiscHelper.executeTimedStep("Moving files to repo...", () -> {
 			// Copy decompiled MC code to repo directory
-			copyCode(pipeline, context, input);
+			copyCode(pipeline, context, input, subtreeReuse);
 			// Copy assets & data (it makes sense to track them, atleast the data)
-			copyAssets(pipeline, context, input);
+			copyAssets(pipeline, context, input, subtreeReuse);
 			// External Assets
-			copyExternalAssets(pipeline, context, input);
+			copyExternalAssets(pipeline, context, input, subtreeReuse, directIndexEntries);
+			directIndexEntries.addAll(subtreeReuse.collectReusedEntries());
 		});
+		final Map<String, ObjectId> reusedTrees = subtreeReuse.collectReusedTrees();
 		// Optionally sort copied JSON files
 		if (GitCraft.getDataConfiguration().sortJsonObjects()) {
 			MiscHelper.executeTimedStep("Sorting JSON files...", () -> {
 				// Sort them
-				sortJSONFiles(context.repository());
+				sortJSONFiles(context.executorService(), context.repository());
 			});
 		}
 		// Commit
-		MiscHelper.executeTimedStep("Committing files to repo...", () -> createCommit(context.targetVersion(), context.repository()));
+		MiscHelper.executeTimedStep("Committing files to repo...", () -> createCommit(context.targetVersion(), context.repository(), directIndexEntries, reusedTrees));
+		subtreeReuse.saveFingerprints(context.repository().getHeadCommitId().orElseThrow());
+		// Long runs create many loose objects, pack them before they slow down the repository
+		RepoMaintenance.packLooseObjectsIfNeeded(context.repository(), GitCraft.getRepositoryConfiguration().looseObjectsThreshold());
 		MiscHelper.println("Committed %s to the repository! (Target Branch is %s)", context.targetVersion().launcherFriendlyVersionName(), target_branch.orElseThrow() + (GitCraft.versionGraph.isOnMainBranch(context.targetVersion()) ? "" : " (non-linear)"));
 
 		// Create branch for linear version
@@ -191,22 +204,21 @@ public record Committer(GitCraftStepConfig config) implements GitCraftStepWorker
 		return resultRevs;
 	}
 
-	private void copyCode(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline, IStepContext.SimpleStepContext<OrderedVersion> context, Committer.Inputs input) throws IOException {
-		RepoWrapper repo = context.repository();
+	private void copyCode(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline, IStepContext.SimpleStepContext<OrderedVersion> context, Committer.Inputs input, SubtreeReuse subtreeReuse) throws IOException {
 		if (input.decompiledMerged().isPresent()) {
 			try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(pipeline.getStoragePath(input.decompiledMerged().orElseThrow(), context, this.config))) {
-				MiscHelper.copyLargeDir(fs.get().getPath("."), repo.getRootPath().resolve("minecraft").resolve("src"));
+				subtreeReuse.copyDirectory(fs.get().getPath("."), "minecraft/src");
 			}
 			return;
 		}
 		if (input.decompiledClientOnly().isPresent()) {
 			try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(pipeline.getStoragePath(input.decompiledClientOnly().orElseThrow(), context, this.config))) {
-				MiscHelper.copyLargeDir(fs.get().getPath("."), repo.getRootPath().resolve("minecraft").resolve("client"));
+				subtreeReuse.copyDirectory(fs.get().getPath("."), "minecraft/client");
 			}
 		}
 		if (input.decompiledServerOnly().isPresent()) {
 			try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(pipeline.getStoragePath(input.decompiledServerOnly().orElseThrow(), context, this.config))) {
-				MiscHelper.copyLargeDir(fs.get().getPath("."), repo.getRootPath().resolve("minecraft").resolve("server"));
+				subtreeReuse.copyDirectory(fs.get().getPath("."), "minecraft/server");
 			}
 		}
 		if (input.decompiledClientOnly().isEmpty() && input.decompiledServerOnly().isEmpty()) {
@@ -214,7 +226,7 @@ public record Committer(GitCraftStepConfig config) implements GitCraftStepWorker
 		}
 	}
 
-	private void copyAssets(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline, IStepContext.SimpleStepContext<OrderedVersion> context, Committer.Inputs input) throws IOException {
+	private void copyAssets(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline, IStepContext.SimpleStepContext<OrderedVersion> context, Committer.Inputs input, SubtreeReuse subtreeReuse) throws IOException {
 		RepoWrapper repo = context.repository();
 		if (GitCraft.getDataConfiguration().loadAssets() || GitCraft.getDataConfiguration().loadIntegratedDatapack()) {
 			if (input.serverZip().isPresent()) {
@@ -231,7 +243,7 @@ public record Committer(GitCraftStepConfig config) implements GitCraftStepWorker
 					if (GitCraft.getDataConfiguration().loadAssets()) {
 						Path assetsSrcPath = fs.get().getPath("assets");
 						if (Files.exists(assetsSrcPath)) {
-							MiscHelper.copyLargeDir(fs.get().getPath("assets"), repo.getRootPath().resolve("minecraft").resolve("resources").resolve("assets"));
+							subtreeReuse.copyDirectory(fs.get().getPath("assets"), "minecraft/resources/assets");
 						} else {
 							// Copy old (unstructured) assets
 							for (Path rootPath : fs.get().getRootDirectories()) {
@@ -242,7 +254,7 @@ public record Committer(GitCraftStepConfig config) implements GitCraftStepWorker
 					if (GitCraft.getDataConfiguration().loadIntegratedDatapack()) {
 						Path dataSrcPath = fs.get().getPath("data");
 						if (Files.exists(dataSrcPath)) {
-							MiscHelper.copyLargeDir(fs.get().getPath("data"), repo.getRootPath().resolve("minecraft").resolve("resources").resolve("data"));
+							subtreeReuse.copyDirectory(fs.get().getPath("data"), "minecraft/resources/data");
 						}
 					}
 				}
@@ -252,66 +264,76 @@ public record Committer(GitCraftStepConfig config) implements GitCraftStepWorker
 			if (GitCraft.getDataConfiguration().loadDatagenRegistry() && input.datagenArtifactsReportsJar().isPresent()) {
 				Path datagenReportsArchive = pipeline.getStoragePath(input.datagenArtifactsReportsJar().orElseThrow(), context, this.config);
 				try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(datagenReportsArchive)) {
-					MiscHelper.copyLargeDir(fs.getPath("reports"), repo.getRootPath().resolve("minecraft").resolve("resources").resolve("datagen-reports"));
+					subtreeReuse.copyDirectory(fs.getPath("reports"), "minecraft/resources/datagen-reports");
 				}
 				if (input.datagenExperimentalVanillaDatapack().isPresent()) {
 					Path experimentalWorldgenPackPath = pipeline.getStoragePath(input.datagenExperimentalVanillaDatapack().orElseThrow(), context, this.config);
 					try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(experimentalWorldgenPackPath)) {
-						MiscHelper.copyLargeDir(fs.get().getPath("."), repo.getRootPath().resolve("minecraft").resolve("resources").resolve("exp-vanilla-worldgen"));
+						subtreeReuse.copyDirectory(fs.get().getPath("."), "minecraft/resources/exp-vanilla-worldgen");
 					}
 				}
 			}
 			if (GitCraft.getDataConfiguration().readableNbt() && GitCraft.getDataConfiguration().loadIntegratedDatapack() && input.datagenArtifactsSnbtJar().isPresent()) {
 				Path datagenSnbtArchive = pipeline.getStoragePath(input.datagenArtifactsSnbtJar().orElseThrow(), context, this.config);
 				try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(datagenSnbtArchive)) {
-					MiscHelper.copyLargeDir(fs.getPath("data"), repo.getRootPath().resolve("minecraft").resolve("resources").resolve("datagen-snbt"));
+					subtreeReuse.copyDirectory(fs.getPath("data"), "minecraft/resources/datagen-snbt");
 				}
 			}
 		}
 	}
 
-	private void sortJSONFiles(final RepoWrapper repo) throws IOException {
+	private void sortJSONFiles(final ExecutorService executorService, final RepoWrapper repo) throws IOException {
 		final List<Path> jsonFiles = MiscHelper.listRecursivelyFilteredExtension(repo.getRootPath(), ".json");
-		for (final Path jsonFile : jsonFiles) {
-			try {
-				SerializationHelper.sortJSONFile(jsonFile);
-			} catch (final JsonSyntaxException e) {
-				MiscHelper.println("WARNING: File %s cannot be sorted, skipping...", jsonFile);
-			}
-		}
+		final List<Boolean> rewritten = MiscHelper.runTasksInParallelAndAwaitResult(
+			Library.CONF_GLOBAL.sortingThreads(),
+			executorService,
+			jsonFiles.stream().<Callable<Boolean>>map(jsonFile -> () -> {
+				try {
+					return SerializationHelper.sortJSONFile(jsonFile);
+				} catch (final JsonSyntaxException e) {
+					MiscHelper.println("WARNING: File %s cannot be sorted, skipping...", jsonFile);
+					return false;
+				}
+			}).toList()
+		);
+		MiscHelper.println("Sorted %s JSON files (%s rewritten)", jsonFiles.size(), rewritten.stream().filter(Boolean::booleanValue).count());
 	}
 
-	private void copyExternalAssets(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline, IStepContext.SimpleStepContext<OrderedVersion> context, Committer.Inputs input) throws IOException {
+	private void copyExternalAssets(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline, IStepContext.SimpleStepContext<OrderedVersion> context, Committer.Inputs input, SubtreeReuse subtreeReuse, List<RepoWrapper.DirectIndexEntry> directIndexEntries) throws IOException {
 		if (GitCraft.getDataConfiguration().loadAssets() && GitCraft.getDataConfiguration().loadAssetsExtern()) {
 			if (input.assetsIndexPath().isEmpty() || input.assetsObjectStore().isEmpty()) {
 				MiscHelper.panic("Assets for version %s do not exist", context.targetVersion().launcherFriendlyVersionName());
 			}
+			// External assets are unchanged, if the assets index is unchanged
+			String assetsIndexHash = context.targetVersion().assetsIndex().sha1sum();
+			if (assetsIndexHash != null && subtreeReuse.reuseSubtree("minecraft/external-resources/assets", assetsIndexHash)) {
+				return;
+			}
 			Path assetsIndexPath = pipeline.getStoragePath(input.assetsIndexPath().orElseThrow(), context, this.config);
 			Path artifactObjectStore = pipeline.getStoragePath(input.assetsObjectStore().orElseThrow(), context, this.config);
 
 			AssetsIndex assetsIndex = AssetsIndex.from(SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(assetsIndexPath), AssetsIndexMetadata.class));
-			// Copy Assets
-			Path targetRoot = context.repository().getRootPath().resolve("minecraft").resolve("external-resources").resolve("assets");
-			if (Library.CONF_GLOBAL.useHardlinks() && artifactObjectStore.getFileSystem().equals(targetRoot.getFileSystem()) && !GitCraft.getDataConfiguration().sortJsonObjects()) {
+			// Assets are staged directly from the content-addressed object store using their known blob ids, unless they need to be sorted
+			if (!GitCraft.getDataConfiguration().sortJsonObjects()) {
 				for (Map.Entry<String, AssetsIndexMetadata.Asset> entry : assetsIndex.assetsIndex().objects().entrySet()) {
 					Path sourcePath = artifactObjectStore.resolve(entry.getValue().hash());
-					Path targetPath = targetRoot.resolve(entry.getKey());
-					Files.createDirectories(targetPath.getParent());
-					Files.createLink(targetPath, sourcePath);
-				}
-			} else {
-				for (Map.Entry<String, AssetsIndexMetadata.Asset> entry : assetsIndex.assetsIndex().objects().entrySet()) {
-					Path sourcePath = artifactObjectStore.resolve(entry.getValue().hash());
-					Path targetPath = targetRoot.resolve(entry.getKey());
-					Files.createDirectories(targetPath.getParent());
-					Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+					directIndexEntries.add(new RepoWrapper.DirectIndexEntry("minecraft/external-resources/assets/" + entry.getKey(), GitBlobIdCache.getBlobId(entry.getValue().hash(), sourcePath), entry.getValue().size(), sourcePath));
 				}
+				return;
+			}
+			// Copy Assets
+			Path targetRoot = context.repository().getRootPath().resolve("minecraft").resolve("external-resources").resolve("assets");
+			List<FileTransferHelper.FileTransfer> transfers = new ArrayList<>();
+			for (Map.Entry<String, AssetsIndexMetadata.Asset> entry : assetsIndex.assetsIndex().objects().entrySet()) {
+				transfers.add(new FileTransferHelper.FileTransfer(artifactObjectStore.resolve(entry.getValue().hash()), targetRoot.resolve(entry.getKey())));
 			}
+			// Files are copied, as sorting them must not modify the artifact store through hardlinks
+			FileTransferHelper.transferFiles("Materialized external assets", transfers, FileTransferHelper.TransferMode.COPY);
 		}
 	}
 
-	private void createCommit(OrderedVersion mcVersion, RepoWrapper repo) throws GitAPIException {
-		repo.createCommitUsingAllChanges(GitCraft.getRepositoryConfiguration().gitUser(), GitCraft.getRepositoryConfiguration().gitMail(), new Date(Objects.requireNonNull(mcVersion.timestamp()).toInstant().toEpochMilli()), TimeZone.getTimeZone(Objects.requireNonNull(mcVersion.timestamp()).getZone()), mcVersion.toCommitMessage());
+	private void createCommit(OrderedVersion mcVersion, RepoWrapper repo, List<RepoWrapper.DirectIndexEntry> directIndexEntries, Map<String, ObjectId> reusedTrees) throws GitAPIException, IOException {
+		repo.createCommitUsingAllChanges(GitCraft.getRepositoryConfiguration().gitUser(), GitCraft.getRepositoryConfiguration().gitMail(), new Date(Objects.requireNonNull(mcVersion.timestamp()).toInstant().toEpochMilli()), TimeZone.getTimeZone(Objects.requireNonNull(mcVersion.timestamp()).getZone()), mcVersion.toCommitMessage(), directIndexEntries, reusedTrees);
 	}
 
 	private void createBranchFromCurrentCommit(OrderedVersion mcVersion, RepoWrapper repo) throws GitAPIException, IOException {
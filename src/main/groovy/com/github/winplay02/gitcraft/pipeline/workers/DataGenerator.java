@@ -1,6 +1,8 @@
 package com.github.winplay02.gitcraft.pipeline.workers;
 
 import com.github.winplay02.gitcraft.GitCraft;
+import com.github.winplay02.gitcraft.Library;
+import com.github.winplay02.gitcraft.pipeline.GitCraftPipelineFilesystemRoot;
 import com.github.winplay02.gitcraft.pipeline.GitCraftPipelineFilesystemStorage;
 import com.github.winplay02.gitcraft.pipeline.IPipeline;
 import com.github.winplay02.gitcraft.pipeline.IStepContext;
@@ -13,26 +15,42 @@ import com.github.winplay02.gitcraft.pipeline.GitCraftStepWorker;
 import com.github.winplay02.gitcraft.pipeline.key.StorageKey;
 import com.github.winplay02.gitcraft.types.Artifact;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
+import com.github.winplay02.gitcraft.util.AotCache;
+import com.github.winplay02.gitcraft.util.DatagenResultCache;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 import groovy.lang.Tuple2;
+import net.fabricmc.loom.configuration.providers.BundleMetadata;
 import net.fabricmc.loom.util.FileSystemUtil;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public record DataGenerator(GitCraftStepConfig config) implements GitCraftStepWorker<DataGenerator.Inputs> {
 
 	public static final ExternalWorldgenPacks EXTERNAL_WORLDGEN_PACKS = new ExternalWorldgenPacks();
 	private static final String DATAGEN_AVAILABLE_START_VERSION = "18w01a";
-	private static final String DATAGEN_BUNDLER_START_VERSION = "21w39a";
+	private static final String DATAGEN_MAIN_CLASS = "net.minecraft.data.Main";
 	private static final String EXT_VANILLA_WORLDGEN_PACK_START = "20w28a";
 	private static final String EXT_VANILLA_WORLDGEN_PACK_END = "21w44a";
+	// Fixed timestamp of all archive entries, so that archives only depend on the generated content (shortly after the earliest time representable in zip files)
+	private static final LocalDateTime ARCHIVE_ENTRY_TIME = LocalDateTime.of(1980, 2, 1, 0, 0);
 
 	@Override
 	public boolean shouldExecute(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline, IStepContext.SimpleStepContext<OrderedVersion> context) {
@@ -76,77 +94,232 @@ public record DataGenerator(GitCraftStepConfig config) implements GitCraftStepWo
 		}
 
 		Path executablePath = pipeline.getStoragePath(input.serverJar(), context, this.config);
+		Path dataJarPath = pipeline.getStoragePath(input.dataJar(), context, this.config);
+		StepStatus status = null;
+		Tuple2<OrderedVersion, Artifact> worldgenPack = GitCraft.getDataConfiguration().loadDatagenRegistry() ? EXTERNAL_WORLDGEN_PACKS.get(mcVersion) : null;
+		if (worldgenPack != null) {
+			Path vanillaWorldgenDatapack = results.getPathForDifferentVersionKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.ARTIFACTS_VANILLA_WORLDGEN_DATAPACK_ZIP, worldgenPack.getV1());
+			status = worldgenPack.getV2().fetchArtifactToFile(context.executorService(), vanillaWorldgenDatapack, "vanilla worldgen datapack");
+		}
+
+		// Results only depend on the contents of the inputs, so they are shared by all versions and mapping flavours with the same jars
+		String serverJarChecksum = Library.IA_SHA1.getChecksumFile(executablePath);
+		String snbtCacheKey = null;
+		String reportsCacheKey = null;
+		boolean generateSnbt = false;
+		boolean generateReports = false;
+		if (artifactSnbtArchive != null && !Files.exists(artifactSnbtArchive)) {
+			snbtCacheKey = DatagenResultCache.key("--dev", serverJarChecksum, Library.IA_SHA1.getChecksumFile(dataJarPath));
+			generateSnbt = !DatagenResultCache.restore(snbtCacheKey, artifactSnbtArchive);
+		}
+		if (artifactReportsArchive != null && !Files.exists(artifactReportsArchive)) {
+			// The worldgen pack is not an input of datagen, reports only depend on the server jar
+			reportsCacheKey = DatagenResultCache.key("--reports", serverJarChecksum);
+			generateReports = !DatagenResultCache.restore(reportsCacheKey, artifactReportsArchive);
+		}
+		if (!generateSnbt && !generateReports) {
+			MiscHelper.println("Reused cached datagen results for %s", mcVersion.launcherFriendlyVersionName());
+			return new StepOutput<>(status != null ? status : StepStatus.SUCCESS, results);
+		}
+
 		Path datagenDirectory = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.ARTIFACTS_DATAGEN);
 		Files.createDirectories(datagenDirectory);
+		Path aotCacheDirectory = GitCraftPipelineFilesystemRoot.getAotCaches().apply(pipeline.getFilesystemStorage().rootFilesystem());
+		List<Path> classpath = this.getDatagenClasspath(pipeline, context, executablePath);
 
-		if (GitCraft.getDataConfiguration().readableNbt()) {
+		Path nbtSourceDirectory = null;
+		Path datagenSnbtOutput = null;
+		Path datagenReportsOutput = null;
+		List<String> args = new ArrayList<>();
+		if (generateSnbt) {
 			// Structures (& more)
 			{
-				Path dataJarPath = pipeline.getStoragePath(input.dataJar(), context, this.config);
 				Path nbtSourceDataDirectory = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.TEMP_DATAGEN_NBT_SOURCE_DATA_DIRECTORY);
 				try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(dataJarPath)) {
 					MiscHelper.copyLargeDir(fs.get().getPath("data"), nbtSourceDataDirectory);
 				}
 			}
-			Path nbtSourceDirectory = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.TEMP_DATAGEN_NBT_SOURCE_DIRECTORY);
-			// Delete Output files, as some versions do not work, when files already exist
-			Path datagenSnbtOutput = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.TEMP_DATAGEN_SNBT_DESTINATION_DIRECTORY);
+			nbtSourceDirectory = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.TEMP_DATAGEN_NBT_SOURCE_DIRECTORY);
+			args.addAll(List.of("--dev", "--input", nbtSourceDirectory.toAbsolutePath().toString()));
+		}
+		if (generateReports) {
+			datagenReportsOutput = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.TEMP_DATAGEN_REPORTS_DIRECTORY);
+			args.add("--reports");
+		}
+		// SNBT files are written to <output>/data, reports to <output>/reports
+		// Delete Output files, as some versions do not work, when files already exist
+		Path datagenOutput = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.TEMP_DATAGEN_SNBT_DESTINATION_DIRECTORY);
+		MiscHelper.deleteDirectory(datagenOutput);
+		args.addAll(List.of("--output", datagenOutput.toAbsolutePath().toString()));
+		// Both conversion and reports are done by a single invocation, so that JVM startup and bootstrapping is only paid once
+		// Results are not streamed from the datagen JVM: net.minecraft.data.Main only writes to the --output directory on the default filesystem,
+		// so results are read back from there (configure datagenTempDirectory to keep them on a tmpfs) and packed in a single pass
+		runDatagen(context.executorService(), mcVersion, datagenDirectory, aotCacheDirectory, classpath, args.toArray(String[]::new));
+		if (generateSnbt) {
+			datagenSnbtOutput = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.TEMP_DATAGEN_SNBT_DESTINATION_DATA_DIRECTORY);
+		}
+		// Fall back to separate invocations, in case this version does not support combining them; only the missing outputs are generated again, the other ones are kept
+		if (datagenSnbtOutput != null && !Files.isDirectory(datagenSnbtOutput)) {
+			MiscHelper.println("Combined datagen for %s did not produce SNBT files, running conversion separately", mcVersion.launcherFriendlyVersionName());
 			MiscHelper.deleteDirectory(datagenSnbtOutput);
-			runDatagen(context.executorService(), mcVersion, datagenDirectory, executablePath, "--dev",
+			runDatagen(context.executorService(), mcVersion, datagenDirectory, aotCacheDirectory, classpath, "--dev",
 				"--input", nbtSourceDirectory.toAbsolutePath().toString(),
-				"--output", datagenSnbtOutput.toAbsolutePath().toString()
+				"--output", datagenOutput.toAbsolutePath().toString()
 			);
+		}
+		if (datagenReportsOutput != null && !Files.isDirectory(datagenReportsOutput)) {
+			MiscHelper.println("Combined datagen for %s did not produce reports, running reports separately", mcVersion.launcherFriendlyVersionName());
+			MiscHelper.deleteDirectory(datagenReportsOutput);
+			runDatagen(context.executorService(), mcVersion, datagenDirectory, aotCacheDirectory, classpath, "--reports", "--output", datagenOutput.toAbsolutePath().toString());
+		}
+		if (nbtSourceDirectory != null) {
 			// Delete input files, as they are no longer needed
 			MiscHelper.deleteDirectory(nbtSourceDirectory);
+		}
+		if (datagenSnbtOutput != null) {
 			if (!Files.exists(datagenSnbtOutput) || !Files.isDirectory(datagenSnbtOutput)) {
 				MiscHelper.panic("Datagen step was required, but SNBT files were not generated");
 			}
-			Path datagenSnbtOutputData = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.TEMP_DATAGEN_SNBT_DESTINATION_DATA_DIRECTORY);
-			// Copy to artifact jar
-			try (FileSystemUtil.Delegate snbtArchive = FileSystemUtil.getJarFileSystem(artifactSnbtArchive, true)) {
-				MiscHelper.copyLargeDir(datagenSnbtOutputData, snbtArchive.getPath("data"));
-			}
-			MiscHelper.deleteDirectory(datagenSnbtOutput);
+			packArchive(datagenSnbtOutput, artifactSnbtArchive, "data");
+			DatagenResultCache.store(snbtCacheKey, artifactSnbtArchive);
 		}
-		if (GitCraft.getDataConfiguration().loadDatagenRegistry()) {
-			StepStatus status = null;
-			Tuple2<OrderedVersion, Artifact> worldgenPack = EXTERNAL_WORLDGEN_PACKS.get(mcVersion);
-			if (worldgenPack != null) {
-				Path vanillaWorldgenDatapack = results.getPathForDifferentVersionKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.ARTIFACTS_VANILLA_WORLDGEN_DATAPACK_ZIP, worldgenPack.getV1());
-				status = worldgenPack.getV2().fetchArtifactToFile(context.executorService(), vanillaWorldgenDatapack, "vanilla worldgen datapack");
-			}
-			// Datagen
-			Path datagenReportsOutput = results.getPathForKeyAndAdd(pipeline, context, this.config, GitCraftPipelineFilesystemStorage.TEMP_DATAGEN_REPORTS_DIRECTORY);
-			MiscHelper.deleteDirectory(datagenReportsOutput);
-			runDatagen(context.executorService(), mcVersion, datagenDirectory, executablePath, "--reports");
+		if (datagenReportsOutput != null) {
 			if (!Files.exists(datagenReportsOutput) || !Files.isDirectory(datagenReportsOutput)) {
 				MiscHelper.panic("Datagen step was required, but reports were not generated");
 			}
-			// Copy to artifact jar
-			try (FileSystemUtil.Delegate reportsArchive = FileSystemUtil.getJarFileSystem(artifactReportsArchive, true)) {
-				MiscHelper.copyLargeDir(datagenReportsOutput, reportsArchive.getPath("reports"));
-			}
-			MiscHelper.deleteDirectory(datagenReportsOutput);
-			MiscHelper.deleteDirectory(datagenDirectory);
-			return new StepOutput<>(status != null ? status : StepStatus.SUCCESS, results);
+			packArchive(datagenReportsOutput, artifactReportsArchive, "reports");
+			DatagenResultCache.store(reportsCacheKey, artifactReportsArchive);
 		}
 		MiscHelper.deleteDirectory(datagenDirectory);
-		return new StepOutput<>(StepStatus.SUCCESS, results);
+		return new StepOutput<>(status != null ? status : StepStatus.SUCCESS, results);
 	}
 
 	public record Inputs(StorageKey serverJar, StorageKey dataJar) implements StepInput {
 	}
 
-	private void runDatagen(Executor executor, OrderedVersion mcVersion, Path cwd, Path executable, String... args) throws IOException, InterruptedException {
-		if (mcVersion.compareTo(GitCraft.getApplicationConfiguration().manifestSource().getMetadataProvider().getVersionByVersionID(DATAGEN_BUNDLER_START_VERSION)) >= 0) {
-			// >= DATAGEN_BUNDLER: java -DbundlerMainClass=net.minecraft.data.Main -jar minecraft_server.jar
-			MiscHelper.createJavaJarSubprocess(executor, String.format("Datagenerator-%s", mcVersion.launcherFriendlyVersionName()), executable, cwd, new String[]{"-DbundlerMainClass=net.minecraft.data.Main"}, args);
-		} else {
-			// < DATAGEN_BUNDLER: java -cp minecraft_server.jar net.minecraft.data.Main
-			ArrayList<String> argsList = new ArrayList<>(List.of("net.minecraft.data.Main"));
-			argsList.addAll(List.of(args));
-			MiscHelper.createJavaCpSubprocess(executor, String.format("Datagenerator-%s", mcVersion.launcherFriendlyVersionName()), executable, cwd, new String[0], argsList.toArray(String[]::new));
+	/**
+	 * Packs a directory into an archive in a single sequential pass, instead of copying every file into a zip filesystem (which buffers the whole archive until it is closed).
+	 * Entries are written in sorted order with a fixed timestamp, so the same datagen output always results in the same archive.
+	 * The archive is written to a temporary file first and moved into place afterwards, so that a partially written archive is never mistaken for a complete one.
+	 *
+	 * @param sourceDirectory Directory to pack
+	 * @param archive         Archive to create
+	 * @param prefix          Directory inside the archive, containing the packed files
+	 */
+	private static void packArchive(Path sourceDirectory, Path archive, String prefix) throws IOException {
+		// Relative path (with forward slashes) -> file, sorted by the relative path
+		TreeMap<String, Path> entries = new TreeMap<>();
+		try (Stream<Path> walk = Files.walk(sourceDirectory)) {
+			walk.filter(path -> !path.equals(sourceDirectory)).forEach(path -> entries.put(sourceDirectory.relativize(path).toString().replace('\\', '/'), path));
 		}
+		Files.createDirectories(archive.getParent());
+		Path temporaryArchive = archive.resolveSibling(archive.getFileName() + ".tmp");
+		try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temporaryArchive)); ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+			putArchiveEntry(zipOutputStream, prefix + "/");
+			for (Map.Entry<String, Path> entry : entries.entrySet()) {
+				if (Files.isDirectory(entry.getValue())) {
+					putArchiveEntry(zipOutputStream, prefix + "/" + entry.getKey() + "/");
+				} else {
+					putArchiveEntry(zipOutputStream, prefix + "/" + entry.getKey());
+					Files.copy(entry.getValue(), zipOutputStream);
+				}
+				zipOutputStream.closeEntry();
+			}
+		}
+		Files.move(temporaryArchive, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void putArchiveEntry(ZipOutputStream zipOutputStream, String entryName) throws IOException {
+		ZipEntry entry = new ZipEntry(entryName);
+		entry.setTimeLocal(ARCHIVE_ENTRY_TIME);
+		zipOutputStream.putNextEntry(entry);
+	}
+
+	/**
+	 * Bundled server jars (since 21w39a) start the actual server from a separate class loader, whose classes cannot be stored in an AOT cache.
+	 * Therefore, the server jar and its libraries are unbundled and datagen is started with a plain classpath instead.
+	 * The server jar is unbundled to the same location as for merging, libraries are unbundled to the library store, so that the classpath stays the same between runs.
+	 *
+	 * @return classpath to start datagen with
+	 */
+	private List<Path> getDatagenClasspath(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline, IStepContext.SimpleStepContext<OrderedVersion> context, Path serverJar) throws IOException {
+		BundleMetadata bundleMetadata = BundleMetadata.fromJar(serverJar);
+		if (bundleMetadata == null) {
+			return List.of(serverJar);
+		}
+		if (bundleMetadata.versions().size() != 1) {
+			throw new UnsupportedOperationException("Expected only 1 version in META-INF/versions.list, but got %d".formatted(bundleMetadata.versions().size()));
+		}
+		Path unbundledServerJar = pipeline.getStoragePath(GitCraftPipelineFilesystemStorage.UNBUNDLED_SERVER_JAR, context, this.config);
+		Path librariesDirectory = Files.createDirectories(pipeline.getStoragePath(GitCraftPipelineFilesystemStorage.LIBRARIES, context, this.config));
+		List<Path> classpath = new ArrayList<>();
+		try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(serverJar)) {
+			Map<String, String> checksums = readBundleChecksums(fs);
+			unpackBundleEntryIfMissing(fs, bundleMetadata.versions().getFirst(), checksums, unbundledServerJar);
+			classpath.add(unbundledServerJar);
+			for (BundleMetadata.Entry library : bundleMetadata.libraries()) {
+				Path libraryPath = librariesDirectory.resolve(Path.of(library.path()).getFileName().toString());
+				unpackBundleEntryIfMissing(fs, library, checksums, libraryPath);
+				classpath.add(libraryPath);
+			}
+		}
+		return classpath;
+	}
+
+	/**
+	 * Lines of META-INF/versions.list and META-INF/libraries.list consist of the SHA-256 checksum, the id and the path of a bundled jar
+	 * (relative to META-INF/versions or META-INF/libraries), separated by tabs.
+	 *
+	 * @return SHA-256 checksums of all bundled jars, by their relative path
+	 */
+	private static Map<String, String> readBundleChecksums(FileSystemUtil.Delegate fs) throws IOException {
+		Map<String, String> checksums = new HashMap<>();
+		for (String list : List.of("versions.list", "libraries.list")) {
+			Path listPath = fs.get().getPath("META-INF", list);
+			if (!Files.exists(listPath)) {
+				continue;
+			}
+			for (String line : Files.readAllLines(listPath)) {
+				String[] columns = line.split("\t");
+				if (columns.length == 3) {
+					checksums.put(columns[2], columns[0]);
+				}
+			}
+		}
+		return checksums;
+	}
+
+	/**
+	 * Unpacks an entry of a bundled server jar, unless it was unpacked before. As the library store is shared by all versions,
+	 * an existing file is only reused if it matches the SHA-256 checksum listed by the bundle (or is non-empty, if no checksum is available).
+	 */
+	private static void unpackBundleEntryIfMissing(FileSystemUtil.Delegate fs, BundleMetadata.Entry entry, Map<String, String> checksums, Path destination) throws IOException {
+		if (Files.exists(destination) && Files.size(destination) > 0) {
+			String expectedChecksum = checksums.get(entry.path().replaceFirst("^/?META-INF/(versions|libraries)/", ""));
+			String checksum = expectedChecksum != null ? Library.IA_SHA256.getChecksumFile(destination) : null;
+			if (checksum == null || checksum.equalsIgnoreCase(expectedChecksum)) {
+				return;
+			}
+			MiscHelper.println("%s does not match the checksum listed by the bundled server jar, it is unpacked again", destination.getFileName());
+		}
+		// Written to a temporary file first, as other versions may unbundle the same library concurrently
+		Path temporaryFile = destination.resolveSibling(String.format("%s.%s.tmp", destination.getFileName(), Thread.currentThread().threadId()));
+		try (InputStream inputStream = Files.newInputStream(fs.get().getPath(entry.path()))) {
+			Files.copy(inputStream, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.move(temporaryFile, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void runDatagen(Executor executor, OrderedVersion mcVersion, Path cwd, Path aotCacheDirectory, List<Path> classpath, String... args) throws IOException, InterruptedException {
+		// java -cp <classpath> net.minecraft.data.Main
+		AotCache.Invocation aotCache = AotCache.prepare(aotCacheDirectory, String.format("datagen-%s", mcVersion.pathName()), classpath, List.of());
+		List<String> processArgs = new ArrayList<>(aotCache.jvmArgs());
+		processArgs.add("-cp");
+		processArgs.add(classpath.stream().map(path -> path.toAbsolutePath().toString()).collect(Collectors.joining(File.pathSeparator)));
+		processArgs.add(DATAGEN_MAIN_CLASS);
+		processArgs.addAll(List.of(args));
+		MiscHelper.createJavaSubprocess(executor, String.format("Datagenerator-%s", mcVersion.launcherFriendlyVersionName()), cwd, processArgs);
+		aotCache.complete();
 	}
 
 	public static class ExternalWorldgenPacks {
@@ -22,6 +22,7 @@ import com.github.winplay02.gitcraft.pipeline.GitCraftStepConfig;
 import com.github.winplay02.gitcraft.pipeline.StepOutput;
 import com.github.winplay02.gitcraft.pipeline.StepResults;
 import com.github.winplay02.gitcraft.pipeline.key.MinecraftJar;
+import com.github.winplay02.gitcraft.pipeline.StepEstimate;
 import com.github.winplay02.gitcraft.pipeline.StepStatus;
 import com.github.winplay02.gitcraft.pipeline.GitCraftStepWorker;
 import com.github.winplay02.gitcraft.pipeline.key.StorageKey;
@@ -58,6 +59,29 @@ public record Decompiler(GitCraftStepConfig config) implements GitCraftStepWorke
 		return StepOutput.merge(clientStatus, serverStatus);
 	}
 
+	@Override
+	public StepEstimate estimate(
+		IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline,
+		IStepContext.SimpleStepContext<OrderedVersion> context
+	) throws IOException {
+		if (isDecompiled(pipeline, context, GitCraftPipelineFilesystemStorage.DECOMPILED_MERGED_JAR)) {
+			return StepEstimate.UP_TO_DATE;
+		}
+		OrderedVersion mcVersion = context.targetVersion();
+		boolean mergedExpected = mcVersion.canBeMerged() && mcVersion.hasClientCode() && mcVersion.hasServerCode();
+		if (!mergedExpected
+			&& (!mcVersion.hasClientCode() || isDecompiled(pipeline, context, GitCraftPipelineFilesystemStorage.DECOMPILED_CLIENT_JAR))
+			&& (!mcVersion.hasServerCode() || isDecompiled(pipeline, context, GitCraftPipelineFilesystemStorage.DECOMPILED_SERVER_JAR))) {
+			return StepEstimate.UP_TO_DATE;
+		}
+		return StepEstimate.UNKNOWN;
+	}
+
+	private boolean isDecompiled(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline, IStepContext.SimpleStepContext<OrderedVersion> context, StorageKey outputFile) throws IOException {
+		Path jarOut = pipeline.getStoragePath(outputFile, context, this.config);
+		return Files.exists(jarOut) && !MiscHelper.isJarEmpty(jarOut);
+	}
+
 	private static final PrintStream NULL_IS = new PrintStream(OutputStream.nullOutputStream());
 
 	private StepOutput<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> decompileJar(IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline,
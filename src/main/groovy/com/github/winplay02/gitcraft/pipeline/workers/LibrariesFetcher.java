@@ -1,20 +1,27 @@
 package com.github.winplay02.gitcraft.pipeline.workers;
 
+import com.github.winplay02.gitcraft.manifest.metadata.ArtifactMetadata;
+import com.github.winplay02.gitcraft.manifest.metadata.LibraryMetadata;
 import com.github.winplay02.gitcraft.pipeline.GitCraftPipelineFilesystemStorage;
 import com.github.winplay02.gitcraft.pipeline.IPipeline;
 import com.github.winplay02.gitcraft.pipeline.IStepContext;
 import com.github.winplay02.gitcraft.pipeline.GitCraftStepConfig;
+import com.github.winplay02.gitcraft.pipeline.StepEstimate;
 import com.github.winplay02.gitcraft.pipeline.StepInput;
 import com.github.winplay02.gitcraft.pipeline.StepOutput;
 import com.github.winplay02.gitcraft.pipeline.StepResults;
 import com.github.winplay02.gitcraft.pipeline.StepStatus;
 import com.github.winplay02.gitcraft.pipeline.GitCraftStepWorker;
+import com.github.winplay02.gitcraft.types.Artifact;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
 import com.github.winplay02.gitcraft.util.MiscHelper;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 public record LibrariesFetcher(GitCraftStepConfig config) implements GitCraftStepWorker<StepInput.Empty> {
@@ -37,4 +44,41 @@ public record LibrariesFetcher(GitCraftStepConfig config) implements GitCraftSte
 
 		return new StepOutput<>(StepStatus.merge(statuses), results);
 	}
+
+	@Override
+	public Collection<Path> getSharedStoreFiles(
+		IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline,
+		IStepContext.SimpleStepContext<OrderedVersion> context
+	) {
+		Path librariesDir = pipeline.getStoragePath(GitCraftPipelineFilesystemStorage.LIBRARIES, context, this.config);
+		return context.targetVersion().libraries().stream().map(library -> library.resolve(librariesDir)).toList();
+	}
+
+	@Override
+	public StepEstimate estimate(
+		IPipeline<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> pipeline,
+		IStepContext.SimpleStepContext<OrderedVersion> context
+	) {
+		Path librariesDir = pipeline.getStoragePath(GitCraftPipelineFilesystemStorage.LIBRARIES, context, this.config);
+		// Sizes are only known for libraries with explicit downloads
+		Map<String, Long> librarySizes = new HashMap<>();
+		for (LibraryMetadata library : context.targetVersion().versionInfo().libraries()) {
+			if (library.downloads() != null) {
+				for (ArtifactMetadata artifact : library.getArtifact()) {
+					if (artifact != null) {
+						librarySizes.put(artifact.url(), artifact.size());
+					}
+				}
+			}
+		}
+		long missingFiles = 0;
+		long downloadBytes = 0;
+		for (Artifact library : context.targetVersion().libraries()) {
+			if (!Files.exists(library.resolve(librariesDir))) {
+				++missingFiles;
+				downloadBytes += Math.max(librarySizes.getOrDefault(library.url(), 0L), 0L);
+			}
+		}
+		return StepEstimate.ofDownloads(missingFiles, downloadBytes);
+	}
 }
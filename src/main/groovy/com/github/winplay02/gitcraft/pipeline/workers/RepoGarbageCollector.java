@@ -10,6 +10,8 @@ import com.github.winplay02.gitcraft.pipeline.StepResults;
 import com.github.winplay02.gitcraft.pipeline.StepStatus;
 import com.github.winplay02.gitcraft.pipeline.GitCraftStepWorker;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
+import com.github.winplay02.gitcraft.util.MiscHelper;
+import com.github.winplay02.gitcraft.util.RepoMaintenance;
 
 public record RepoGarbageCollector(GitCraftStepConfig config) implements GitCraftStepWorker<StepInput.Empty> {
 
@@ -23,7 +25,13 @@ public record RepoGarbageCollector(GitCraftStepConfig config) implements GitCraf
 		if (GitCraft.getTransientApplicationConfiguration().noRepo()) {
 			return StepOutput.ofEmptyResultSet(StepStatus.NOT_RUN);
 		}
-		context.repository().gc();
+		SubtreeReuse.pruneFingerprints(context.repository());
+		if (GitCraft.getRepositoryConfiguration().incrementalMaintenance()) {
+			RepoMaintenance.runIncrementalMaintenance(context.repository());
+		} else {
+			MiscHelper.executeTimedStep("Running full garbage collection...", context.repository()::gc);
+			RepoMaintenance.printStatistics(context.repository());
+		}
 		return StepOutput.ofEmptyResultSet(StepStatus.SUCCESS);
 	}
 }
@@ -12,14 +12,50 @@ import com.github.winplay02.gitcraft.pipeline.GitCraftStepWorker;
 import com.github.winplay02.gitcraft.pipeline.key.StorageKey;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
 import com.github.winplay02.gitcraft.util.MiscHelper;
+import com.github.winplay02.gitcraft.util.RepoWrapper;
+import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NavigableSet;
+import java.util.WeakHashMap;
 
 public record Resetter(GitCraftStepConfig config) implements GitCraftStepWorker<StepInput.Empty> {
+	/**
+	 * Refs containing the commit of each version, resolved for all versions of a repository at once, when the first version is reset.
+	 * Resetting only deletes refs (and resets the mainline branch, which is never deleted), so no other ref starts containing any of these commits in the meantime.
+	 */
+	private static final Map<RepoWrapper, Map<OrderedVersion, List<Ref>>> refsContainingVersions = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * @return refs containing the commit of each version of the version graph, versions without a commit are absent
+	 */
+	private static Map<OrderedVersion, List<Ref>> getRefsContainingVersions(IStepContext.SimpleStepContext<OrderedVersion> context) throws IOException, GitAPIException {
+		Map<OrderedVersion, List<Ref>> refs = refsContainingVersions.get(context.repository());
+		if (refs == null) {
+			Map<RevCommit, OrderedVersion> commits = new LinkedHashMap<>();
+			for (OrderedVersion version : context.versionGraph()) {
+				RevCommit commit = context.repository().findRevByCommitMessage(version.toCommitMessage());
+				if (commit != null) {
+					commits.put(commit, version);
+				}
+			}
+			refs = new HashMap<>();
+			for (Map.Entry<RevCommit, List<Ref>> entry : context.repository().getRefsContainingCommits(commits.keySet()).entrySet()) {
+				refs.put(commits.get(entry.getKey()), entry.getValue());
+			}
+			refsContainingVersions.put(context.repository(), refs);
+		}
+		return refs;
+	}
 
 	@Override
 	public StepOutput<OrderedVersion, IStepContext.SimpleStepContext<OrderedVersion>, GitCraftStepConfig> run(
@@ -45,11 +81,12 @@ public record Resetter(GitCraftStepConfig config) implements GitCraftStepWorker<
 		}
 		// Always refresh repo, if any refresh flag is set
 		// delete all non-main refs that contain this commit (including remotes, tags, ...)
-		RevCommit commitToRemove = context.repository().findRevByCommitMessage(context.targetVersion().toCommitMessage());
-		if (commitToRemove != null) {
+		List<Ref> refsContainingCommit = getRefsContainingVersions(context).get(context.targetVersion());
+		if (refsContainingCommit != null) {
 			context.repository().checkoutBranch(GitCraft.getRepositoryConfiguration().gitMainlineLinearBranch());
-			for (Ref ref : context.repository().getRefsContainingCommit(commitToRemove)) {
-				if (!ref.getName().equals(Constants.R_HEADS + GitCraft.getRepositoryConfiguration().gitMainlineLinearBranch()) && !ref.getName().equals(Constants.HEAD)) {
+			for (Ref ref : refsContainingCommit) {
+				// Refs containing multiple versions may have been deleted by an earlier version already
+				if (!ref.getName().equals(Constants.R_HEADS + GitCraft.getRepositoryConfiguration().gitMainlineLinearBranch()) && !ref.getName().equals(Constants.HEAD) && context.repository().doesBranchExist(ref.getName())) {
 					context.repository().deleteRef(ref.getName());
 				}
 			}
@@ -0,0 +1,221 @@
+package com.github.winplay02.gitcraft.pipeline.workers;
+
+import com.github.winplay02.gitcraft.util.FileTransferHelper;
+import com.github.winplay02.gitcraft.util.MiscHelper;
+import com.github.winplay02.gitcraft.util.RepoWrapper;
+import com.github.winplay02.gitcraft.util.SerializationHelper;
+import com.google.gson.reflect.TypeToken;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Reuses unchanged parts of the parent commit, instead of copying them to the working tree again.
+ * <p>
+ * For every commit, fingerprints of the copied inputs are recorded (keyed by their directory in the repository).
+ * Directories of archives are fingerprinted using the CRC and size of their direct files, which are known without decompressing them.
+ * Other inputs (e.g. external assets) provide their own fingerprint, like the hash of the assets index.
+ * If a fingerprint matches the one recorded for the parent commit, the corresponding entries of the parent commit are staged as-is.
+ * Unchanged subtrees are not staged at all, the next commit references the tree of the parent commit directly.
+ */
+public class SubtreeReuse {
+	private static final String FINGERPRINT_DIRECTORY = "gitcraft-fingerprints";
+
+	private final RepoWrapper repo;
+	private final String salt;
+	private final Map<String, String> previousFingerprints;
+	private final TreeMap<String, String> currentFingerprints = new TreeMap<>();
+	private final Set<String> reusedDirectories = new HashSet<>();
+	private final Set<String> reusedSubtrees = new HashSet<>();
+	private long reusedFiles = 0;
+	private long copiedFiles = 0;
+
+	private SubtreeReuse(RepoWrapper repo, String salt, Map<String, String> previousFingerprints) {
+		this.repo = repo;
+		this.salt = salt;
+		this.previousFingerprints = previousFingerprints;
+	}
+
+	/**
+	 * @param repo Repository, whose HEAD points to the parent of the next commit (if any)
+	 * @param salt Value that is part of every fingerprint, should describe all options that change the committed contents of unchanged inputs (e.g. sorting)
+	 * @return reuse state, prepared with the fingerprints of the current HEAD commit
+	 */
+	public static SubtreeReuse forHead(RepoWrapper repo, String salt) throws IOException {
+		Optional<ObjectId> headCommit = repo.getHeadCommitId();
+		Map<String, String> previousFingerprints = Map.of();
+		if (headCommit.isPresent()) {
+			Path fingerprintFile = getFingerprintFile(repo, headCommit.orElseThrow());
+			if (Files.exists(fingerprintFile)) {
+				previousFingerprints = SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(fingerprintFile), new TypeToken<HashMap<String, String>>() {});
+			}
+		}
+		return new SubtreeReuse(repo, salt, previousFingerprints);
+	}
+
+	private static Path getFingerprintFile(RepoWrapper repo, ObjectId commitId) {
+		return repo.getGit().getRepository().getDirectory().toPath().resolve(FINGERPRINT_DIRECTORY).resolve(commitId.name() + ".json");
+	}
+
+	private String fingerprint(String content) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA1");
+			digest.update(this.salt.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(content.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Records the fingerprint of a subtree.
+	 *
+	 * @param repoPath    Path of the subtree in the repository, separated by forward slashes
+	 * @param fingerprint Fingerprint of everything contained in the subtree
+	 * @return true if the subtree is unchanged and will be taken from the parent commit, false if it has to be copied to the working tree
+	 */
+	public boolean reuseSubtree(String repoPath, String fingerprint) {
+		String saltedFingerprint = this.fingerprint(fingerprint);
+		this.currentFingerprints.put(repoPath, saltedFingerprint);
+		if (saltedFingerprint.equals(this.previousFingerprints.get(repoPath))) {
+			this.reusedSubtrees.add(repoPath);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Copies a directory of an archive into the repository, skipping all directories whose direct files are unchanged compared to the parent commit.
+	 * Falls back to copying everything, if the source does not provide CRCs of its files.
+	 *
+	 * @param source   Source directory, usually located in an archive
+	 * @param repoPath Target path in the repository, separated by forward slashes
+	 */
+	public void copyDirectory(Path source, String repoPath) throws IOException {
+		Path target = this.repo.getRootPath().resolve(repoPath);
+		Map<String, List<Path>> filesByDirectory = new TreeMap<>();
+		Map<String, StringBuilder> directoryContents = new HashMap<>();
+		try (Stream<Path> walk = Files.walk(source)) {
+			for (Path path : (Iterable<? extends Path>) walk::iterator) {
+				if (!Files.isRegularFile(path)) {
+					continue;
+				}
+				Object crc;
+				try {
+					crc = Files.getAttribute(path, "zip:crc");
+				} catch (UnsupportedOperationException | IllegalArgumentException e) {
+					MiscHelper.copyLargeDir(source, target);
+					return;
+				}
+				String relativeDirectory = source.relativize(path.getParent()).toString().replace('\\', '/');
+				String directory = relativeDirectory.isEmpty() ? repoPath : repoPath + "/" + relativeDirectory;
+				filesByDirectory.computeIfAbsent(directory, _ -> new ArrayList<>()).add(path);
+				directoryContents.computeIfAbsent(directory, _ -> new StringBuilder())
+					.append(path.getFileName().toString()).append('\0')
+					.append(crc).append('\0')
+					.append(Files.size(path)).append('\n');
+			}
+		}
+		List<Path> directories = new ArrayList<>();
+		List<FileTransferHelper.FileTransfer> transfers = new ArrayList<>();
+		for (Map.Entry<String, List<Path>> entry : filesByDirectory.entrySet()) {
+			String saltedFingerprint = this.fingerprint(directoryContents.get(entry.getKey()).toString());
+			this.currentFingerprints.put(entry.getKey(), saltedFingerprint);
+			if (saltedFingerprint.equals(this.previousFingerprints.get(entry.getKey()))) {
+				this.reusedDirectories.add(entry.getKey());
+				continue;
+			}
+			Path targetDirectory = this.repo.getRootPath().resolve(entry.getKey());
+			directories.add(targetDirectory);
+			for (Path file : entry.getValue()) {
+				transfers.add(new FileTransferHelper.FileTransfer(file, targetDirectory.resolve(file.getFileName().toString())));
+			}
+		}
+		this.copiedFiles += transfers.size();
+		FileTransferHelper.transferFiles(String.format("Copied %s", source), directories, transfers, FileTransferHelper.TransferMode.COPY, null);
+	}
+
+	/**
+	 * @return entries of the parent commit, that should be staged again
+	 */
+	public List<RepoWrapper.DirectIndexEntry> collectReusedEntries() throws IOException {
+		List<RepoWrapper.DirectIndexEntry> entries = this.repo.listHeadEntries(this.reusedDirectories);
+		this.reusedFiles = entries.size();
+		return entries;
+	}
+
+	/**
+	 * @return trees of the parent commit, that should be referenced as-is by the next commit, keyed by their path
+	 */
+	public Map<String, ObjectId> collectReusedTrees() throws IOException {
+		Map<String, ObjectId> trees = this.repo.getHeadSubtrees(this.reusedSubtrees);
+		for (String subtree : this.reusedSubtrees) {
+			if (!trees.containsKey(subtree)) {
+				MiscHelper.panic("Subtree %s is recorded as unchanged, but it is missing from the parent commit", subtree);
+			}
+		}
+		return trees;
+	}
+
+	/**
+	 * Records the fingerprints of this commit, so that the next commit can reuse its contents.
+	 *
+	 * @param commitId Commit that was created from the fingerprinted contents
+	 */
+	public void saveFingerprints(ObjectId commitId) throws IOException {
+		Path fingerprintFile = getFingerprintFile(this.repo, commitId);
+		Files.createDirectories(fingerprintFile.getParent());
+		SerializationHelper.writeAllToPath(fingerprintFile, SerializationHelper.serialize(this.currentFingerprints));
+		MiscHelper.println("Reused %s files (%s directories) and %s subtrees from the parent commit, copied %s files", this.reusedFiles, this.reusedDirectories.size(), this.reusedSubtrees.size(), this.copiedFiles);
+	}
+
+	/**
+	 * Deletes the fingerprints of all commits, that are no longer reachable from any ref (e.g. versions that were reset), as no commit will be based on them again.
+	 *
+	 * @param repo Repository
+	 */
+	public static void pruneFingerprints(RepoWrapper repo) throws IOException {
+		Path fingerprintDirectory = repo.getGit().getRepository().getDirectory().toPath().resolve(FINGERPRINT_DIRECTORY);
+		if (!Files.isDirectory(fingerprintDirectory)) {
+			return;
+		}
+		Map<ObjectId, Path> fingerprintFiles = new HashMap<>();
+		for (Path fingerprintFile : MiscHelper.listDirectly(fingerprintDirectory)) {
+			String fileName = fingerprintFile.getFileName().toString();
+			String commitName = fileName.endsWith(".json") ? fileName.substring(0, fileName.length() - ".json".length()) : fileName;
+			if (ObjectId.isId(commitName)) {
+				fingerprintFiles.put(ObjectId.fromString(commitName), fingerprintFile);
+			} else {
+				Files.deleteIfExists(fingerprintFile);
+			}
+		}
+		int pruned = 0;
+		for (Map.Entry<ObjectId, List<Ref>> entry : repo.getRefsContainingCommits(fingerprintFiles.keySet()).entrySet()) {
+			if (entry.getValue().isEmpty()) {
+				Files.deleteIfExists(fingerprintFiles.get(entry.getKey()));
+				++pruned;
+			}
+		}
+		if (pruned > 0) {
+			MiscHelper.println("Pruned fingerprints of %s unreachable commits", pruned);
+		}
+	}
+}
@@ -6,6 +6,7 @@ import com.github.winplay02.gitcraft.manifest.metadata.ArtifactMetadata;
 import com.github.winplay02.gitcraft.manifest.metadata.LibraryMetadata;
 import com.github.winplay02.gitcraft.manifest.metadata.VersionInfo;
 import com.github.winplay02.gitcraft.util.MiscHelper;
+import com.github.winplay02.gitcraft.util.RemoteHelper;
 import net.fabricmc.loader.api.SemanticVersion;
 import net.fabricmc.loader.api.Version;
 import net.fabricmc.loader.api.VersionParsingException;
@@ -15,8 +16,10 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a minecraft version with an order
@@ -40,6 +43,77 @@ public record OrderedVersion(
 		Set<Artifact> libraries,
 		Artifact assetsIndex
 ) implements AbstractVersion<OrderedVersion> {
+	/**
+	 * Parsed semantic versions, shared by all versions with the same semantic version.
+	 * Kept outside of the record, so that it is neither part of equality nor of the serialized form.
+	 */
+	private static final Map<String, SortKey> SORT_KEYS = new ConcurrentHashMap<>();
+
+	public OrderedVersion {
+		// Fail early on unparsable versions, instead of on the first comparison
+		getSortKey(semanticVersion, versionInfo.id());
+	}
+
+	private static SortKey getSortKey(String semanticVersion, String versionName) {
+		return SORT_KEYS.computeIfAbsent(semanticVersion, _ -> SortKey.parse(semanticVersion, versionName));
+	}
+
+	/**
+	 * Semantic version, parsed once. Version components are compared as an int array,
+	 * only versions with equal components and a pre-release are compared using the parsed semantic version.
+	 */
+	private static final class SortKey {
+		private final String semanticVersion;
+		private final SemanticVersion parsed;
+		private final int[] components;
+		private final boolean hasPrerelease;
+		private final boolean hasWildcard;
+		private final String buildKey;
+
+		private SortKey(String semanticVersion, SemanticVersion parsed) {
+			this.semanticVersion = semanticVersion;
+			this.parsed = parsed;
+			this.components = new int[parsed.getVersionComponentCount()];
+			for (int i = 0; i < this.components.length; ++i) {
+				this.components[i] = parsed.getVersionComponent(i);
+			}
+			this.hasPrerelease = parsed.getPrereleaseKey().isPresent();
+			this.hasWildcard = parsed.hasWildcard();
+			this.buildKey = parsed.getBuildKey().orElse("");
+		}
+
+		private static SortKey parse(String semanticVersion, String versionName) {
+			try {
+				return new SortKey(semanticVersion, SemanticVersion.parse(semanticVersion));
+			} catch (VersionParsingException e) {
+				MiscHelper.panicBecause(e, "Could not parse version %s (%s) as semantic version", versionName, semanticVersion);
+				return null;
+			}
+		}
+
+		private int compareTo(SortKey o) {
+			int c = 0;
+			if (this.hasWildcard || o.hasWildcard) {
+				c = this.parsed.compareTo((Version) o.parsed);
+			} else {
+				for (int i = 0; i < Math.max(this.components.length, o.components.length) && c == 0; ++i) {
+					c = Integer.compare(i < this.components.length ? this.components[i] : 0, i < o.components.length ? o.components[i] : 0);
+				}
+				if (c == 0 && (this.hasPrerelease || o.hasPrerelease)) {
+					c = this.parsed.compareTo((Version) o.parsed);
+				}
+			}
+			if (c == 0) {
+				c = this.buildKey.compareTo(o.buildKey);
+			}
+			return c;
+		}
+
+		@Override
+		public String toString() {
+			return this.semanticVersion;
+		}
+	}
 
 	/*
 	 * For some old Minecraft versions, the download URLs end in the same
@@ -90,6 +164,8 @@ public record OrderedVersion(
 			serverMappings = Artifact.fromURL(versionInfo.downloads().server_mappings().url(), versionInfo.downloads().server_mappings().sha1());
 		}
 		// Ignores natives, not needed as we don't have a runtime
+		// Checksums of libraries without explicit downloads are looked up in parallel, instead of one after another below
+		RemoteHelper.prefetchMavenChecksums(versionInfo.libraries().stream().filter(library -> library.downloads() == null).map(LibraryMetadata::getMavenUrl).toList());
 		Set<Artifact> libs = new HashSet<>();
 		for (LibraryMetadata library : versionInfo.libraries()) {
 			List<ArtifactMetadata> artifactMeta = library.getArtifact();
@@ -207,25 +283,7 @@ public record OrderedVersion(
 
 	@Override
 	public int compareTo(OrderedVersion o) {
-		SemanticVersion thisVersion = null;
-		SemanticVersion otherVersion = null;
-		try {
-			thisVersion = SemanticVersion.parse(semanticVersion());
-		} catch (VersionParsingException e) {
-			MiscHelper.panicBecause(e, "Could not parse version %s (%s) as semantic version", launcherFriendlyVersionName(), semanticVersion());
-		}
-		try {
-			otherVersion = SemanticVersion.parse(o.semanticVersion());
-		} catch (VersionParsingException e) {
-			MiscHelper.panicBecause(e, "Could not parse version %s (%s) as semantic version", o.launcherFriendlyVersionName(), o.semanticVersion());
-		}
-		int c = thisVersion.compareTo((Version) otherVersion);
-		if (c == 0) {
-			String thisBuild = thisVersion.getBuildKey().orElse("");
-			String otherBuild = otherVersion.getBuildKey().orElse("");
-			c = thisBuild.compareTo(otherBuild);
-		}
-		return c;
+		return getSortKey(this.semanticVersion(), this.launcherFriendlyVersionName()).compareTo(getSortKey(o.semanticVersion(), o.launcherFriendlyVersionName()));
 	}
 
 	public boolean hasSideInCommon(OrderedVersion o) {
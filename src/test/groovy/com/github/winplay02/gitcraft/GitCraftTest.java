@@ -14,12 +14,23 @@ import com.github.winplay02.gitcraft.pipeline.StepStatus;
 import com.github.winplay02.gitcraft.signatures.SignaturesFlavour;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
 import com.github.winplay02.gitcraft.unpick.UnpickFlavour;
+import com.github.winplay02.gitcraft.util.DatagenResultCache;
 import com.github.winplay02.gitcraft.util.FileSystemNetworkManager;
+import com.github.winplay02.gitcraft.util.MavenCache;
+import com.github.winplay02.gitcraft.util.MetadataCache;
+import com.github.winplay02.gitcraft.util.MiscHelper;
 import com.github.winplay02.gitcraft.util.RemoteHelper;
 import com.github.winplay02.gitcraft.util.RepoWrapper;
+import com.github.winplay02.gitcraft.util.SerializationHelper;
+import com.github.winplay02.gitcraft.util.SharedArtifactStore;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
@@ -27,22 +38,41 @@ import org.junit.jupiter.api.TestMethodOrder;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith({GitCraftTestingFs.class})
@@ -57,6 +87,345 @@ public class GitCraftTest {
 		assertTrue(Library.IA_SHA1.fileMatchesChecksum(LibraryPaths.CURRENT_WORKING_DIRECTORY.resolve("settings.gradle"), "b07625411efd4329f9f639bfca2068f92997d1b3"));
 	}
 
+	@Test
+	public void sharedArtifactStore() throws IOException {
+		Path directory = Files.createTempDirectory(LibraryPaths.CURRENT_WORKING_DIRECTORY, "gitcraft-store");
+		Path source = Files.writeString(directory.resolve("source.jar"), "shared artifact");
+		String checksum = Library.IA_SHA1.getChecksumFile(source);
+		Path target = directory.resolve("other-root").resolve("target.jar");
+		assertFalse(SharedArtifactStore.restore(Library.IA_SHA1, checksum, target));
+		assertFalse(Files.exists(target));
+		SharedArtifactStore.publish(Library.IA_SHA1, checksum, source);
+		assertTrue(SharedArtifactStore.restore(Library.IA_SHA1, checksum, target));
+		assertEquals("shared artifact", Files.readString(target));
+		// Existing artifacts are replaced (the restored artifact may be linked to the object, so it is never written through)
+		Files.delete(target);
+		Files.writeString(target, "outdated artifact");
+		assertTrue(SharedArtifactStore.restore(Library.IA_SHA1, checksum, target));
+		assertEquals("shared artifact", Files.readString(target));
+		// Objects with the same checksum prefix share a lock file, which is kept, so the amount of lock files is bounded
+		Path locks = SharedArtifactStore.getObject(Library.IA_SHA1, checksum).getParent().resolveSibling("locks");
+		for (int i = 0; i < 16; ++i) {
+			try (SharedArtifactStore.ObjectLock $ = SharedArtifactStore.lock(Library.IA_SHA1, checksum.substring(0, 3) + String.format("%037x", i))) {
+				assertTrue(Files.exists(locks.resolve(checksum.substring(0, 3) + ".lock")));
+			}
+		}
+		try (Stream<Path> files = Files.list(locks)) {
+			assertTrue(files.allMatch(file -> file.getFileName().toString().length() == "000.lock".length()));
+		}
+	}
+
+	@Test
+	public void sharedArtifactStoreConcurrentPublish() throws Exception {
+		Path directory = Files.createTempDirectory(LibraryPaths.CURRENT_WORKING_DIRECTORY, "gitcraft-store-concurrent");
+		String content = "concurrently fetched artifact";
+		String checksum = Library.IA_SHA1.getChecksumFile(Files.writeString(directory.resolve("reference.jar"), content));
+		AtomicInteger fetches = new AtomicInteger();
+		List<Callable<Path>> tasks = new ArrayList<>();
+		for (int i = 0; i < 16; ++i) {
+			Path target = directory.resolve(String.format("root-%s", i)).resolve("artifact.jar");
+			tasks.add(() -> {
+				// Same protocol as fetching: only the first holder of the lock fetches, all others restore the published object
+				try (SharedArtifactStore.ObjectLock $ = SharedArtifactStore.lock(Library.IA_SHA1, checksum)) {
+					if (!SharedArtifactStore.restore(Library.IA_SHA1, checksum, target)) {
+						fetches.incrementAndGet();
+						Files.createDirectories(target.getParent());
+						Files.writeString(target, content);
+						SharedArtifactStore.publish(Library.IA_SHA1, checksum, target);
+					}
+				}
+				return target;
+			});
+			// Publishing without the lock (e.g. artifacts found locally) must not fail either
+			Path source = Files.writeString(directory.resolve(String.format("local-%s.jar", i)), content);
+			tasks.add(() -> {
+				SharedArtifactStore.publish(Library.IA_SHA1, checksum, source);
+				return source;
+			});
+		}
+		List<Path> artifacts;
+		try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Testing-Executor").factory())) {
+			artifacts = MiscHelper.runTasksInParallelAndAwaitResult(executor, tasks);
+		}
+		assertTrue(fetches.get() <= 1);
+		for (Path artifact : artifacts) {
+			assertEquals(content, Files.readString(artifact));
+		}
+		Path object = SharedArtifactStore.getObject(Library.IA_SHA1, checksum);
+		assertEquals(content, Files.readString(object));
+		// No temporary files are left over
+		try (Stream<Path> files = Files.list(object.getParent())) {
+			assertEquals(List.of(object), files.toList());
+		}
+	}
+
+	@Test
+	public void sharedArtifactStoreCorruptedObject() throws IOException {
+		Path directory = Files.createTempDirectory(LibraryPaths.CURRENT_WORKING_DIRECTORY, "gitcraft-store-corrupted");
+		Path source = Files.writeString(directory.resolve("source.jar"), "artifact to corrupt");
+		String checksum = Library.IA_SHA1.getChecksumFile(source);
+		SharedArtifactStore.publish(Library.IA_SHA1, checksum, source);
+		Path object = SharedArtifactStore.getObject(Library.IA_SHA1, checksum);
+		// Replaced instead of written through, so that the (possibly linked) source stays intact
+		Files.delete(object);
+		Files.writeString(object, "corrupted artifact");
+		Path target = directory.resolve("target.jar");
+		assertFalse(SharedArtifactStore.restore(Library.IA_SHA1, checksum, target));
+		assertFalse(Files.exists(target));
+		assertFalse(Files.exists(object));
+		// Publishing again repairs the store
+		SharedArtifactStore.publish(Library.IA_SHA1, checksum, source);
+		assertTrue(SharedArtifactStore.restore(Library.IA_SHA1, checksum, target));
+		assertEquals("artifact to corrupt", Files.readString(target));
+	}
+
+	private static HttpServer startLocalServer(HttpHandler handler) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/", handler);
+		server.start();
+		return server;
+	}
+
+	private static String getBaseUrl(HttpServer server) {
+		return String.format("http://%s:%s", server.getAddress().getHostString(), server.getAddress().getPort());
+	}
+
+	private static void respond(HttpExchange exchange, int status, String content) throws IOException {
+		byte[] body = content.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream stream = exchange.getResponseBody()) {
+			stream.write(body);
+		}
+	}
+
+	/**
+	 * Serves ".sha1" files, paths starting with "/missing" do not exist. Every request is counted per path, and responses are delayed, so that lookups overlap.
+	 */
+	private static HttpServer startMavenServer(Map<String, AtomicInteger> requests, AtomicInteger concurrentRequests, AtomicInteger maxConcurrentRequests) throws IOException {
+		return startLocalServer(exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			requests.computeIfAbsent(path, _ -> new AtomicInteger()).incrementAndGet();
+			maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				concurrentRequests.decrementAndGet();
+			}
+			if (path.startsWith("/missing")) {
+				respond(exchange, 404, "not found");
+			} else {
+				respond(exchange, 200, String.format("%040x\n", path.hashCode()));
+			}
+		});
+	}
+
+	@Test
+	public void mavenCacheConcurrentLookups() throws Exception {
+		Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+		HttpServer server = startMavenServer(requests, new AtomicInteger(), new AtomicInteger());
+		try {
+			MavenCache cache = new MavenCache();
+			String url = getBaseUrl(server) + "/concurrent/artifact.jar.sha1";
+			List<Callable<String>> lookups = new ArrayList<>();
+			for (int i = 0; i < 16; ++i) {
+				lookups.add(() -> cache.getSha1ForURL(url));
+			}
+			List<String> checksums;
+			try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Testing-Executor").factory())) {
+				checksums = MiscHelper.runTasksInParallelAndAwaitResult(executor, lookups);
+			}
+			// Concurrent lookups of the same URL share a single request
+			assertEquals(1, requests.get("/concurrent/artifact.jar.sha1").get());
+			assertEquals(Set.of(String.format("%040x", "/concurrent/artifact.jar.sha1".hashCode())), new HashSet<>(checksums));
+			// Checksums are persisted by the maven cache alone
+			assertTrue(MetadataCache.get(url).isEmpty());
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void mavenCacheMissingChecksumsExpire() throws Exception {
+		Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+		HttpServer server = startMavenServer(requests, new AtomicInteger(), new AtomicInteger());
+		try {
+			String baseUrl = getBaseUrl(server);
+			Path cachePath = Files.createTempDirectory(LibraryPaths.CURRENT_WORKING_DIRECTORY, "gitcraft-maven-cache").resolve("maven-cache.json");
+			MavenCache cache = new MavenCache();
+			assertNull(cache.getSha1ForURL(baseUrl + "/missing/recent.jar.sha1"));
+			assertNull(cache.getSha1ForURL(baseUrl + "/missing/recent.jar.sha1"));
+			assertEquals(1, requests.get("/missing/recent.jar.sha1").get());
+			// Recently missing files are remembered across saving and loading
+			cache.save(cachePath);
+			assertNull(MavenCache.load(cachePath).getSha1ForURL(baseUrl + "/missing/recent.jar.sha1"));
+			assertEquals(1, requests.get("/missing/recent.jar.sha1").get());
+			// Missing files found long ago are looked up again, as are missing files of caches in the old format (null checksums)
+			SerializationHelper.writeAllToPath(cachePath, String.format("{\"shaUrlMap\": {\"%1$s/missing/old-format.jar.sha1\": null}, \"missingUrlMap\": {\"%1$s/missing/expired.jar.sha1\": 0}}", baseUrl));
+			MavenCache loadedCache = MavenCache.load(cachePath);
+			assertNull(loadedCache.getSha1ForURL(baseUrl + "/missing/expired.jar.sha1"));
+			assertNull(loadedCache.getSha1ForURL(baseUrl + "/missing/old-format.jar.sha1"));
+			assertEquals(1, requests.get("/missing/expired.jar.sha1").get());
+			assertEquals(1, requests.get("/missing/old-format.jar.sha1").get());
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void mavenCachePrefetch() throws Exception {
+		Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+		AtomicInteger maxConcurrentRequests = new AtomicInteger();
+		HttpServer server = startMavenServer(requests, new AtomicInteger(), maxConcurrentRequests);
+		try {
+			String baseUrl = getBaseUrl(server);
+			MavenCache cache = new MavenCache();
+			List<String> urls = new ArrayList<>();
+			for (int i = 0; i < 8; ++i) {
+				urls.add(String.format("%s/prefetch/artifact-%s.jar.sha1", baseUrl, i));
+				urls.add(String.format("%s/prefetch/artifact-%s.jar.sha1", baseUrl, i));
+			}
+			urls.add(baseUrl + "/missing/prefetch.jar.sha1");
+			cache.prefetch(urls);
+			assertTrue(maxConcurrentRequests.get() > 1);
+			// Later lookups are answered from the cache, duplicates were requested only once
+			for (String url : urls) {
+				cache.getSha1ForURL(url);
+			}
+			assertEquals(9, requests.size());
+			for (AtomicInteger count : requests.values()) {
+				assertEquals(1, count.get());
+			}
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void metadataCacheRevalidationFailure() throws Exception {
+		HttpServer server = startLocalServer(exchange -> respond(exchange, 503, "internal server error"));
+		try {
+			String baseUrl = getBaseUrl(server);
+			// A stale entry is used, if it cannot be revalidated
+			URL cachedUrl = new URI(baseUrl + "/cached.json").toURL();
+			MetadataCache.put(new MetadataCache.Entry(cachedUrl.toString(), "\"etag\"", null, 0L, "{\"cached\": true}"));
+			assertEquals("{\"cached\": true}", FileSystemNetworkManager.fetchAllFromURLSync(cachedUrl));
+			assertFalse(MetadataCache.get(cachedUrl.toString()).orElseThrow().isFresh());
+			// Without an entry, the error page is never returned as metadata
+			URL uncachedUrl = new URI(baseUrl + "/uncached.json").toURL();
+			assertThrows(IOException.class, () -> FileSystemNetworkManager.fetchAllFromURLSync(uncachedUrl));
+			assertTrue(MetadataCache.get(uncachedUrl.toString()).isEmpty());
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void metadataCachePrune() throws Exception {
+		MetadataCache.Entry unusedEntry = new MetadataCache.Entry("https://example.com/unused.json", null, null, 0L, "{}");
+		MetadataCache.put(unusedEntry);
+		try (Stream<Path> entryPaths = Files.walk(LibraryPaths.METADATA_CACHE)) {
+			for (Path entryPath : entryPaths.filter(Files::isRegularFile).toList()) {
+				Files.setLastModifiedTime(entryPath, FileTime.from(Instant.now().minus(Duration.ofDays(60))));
+			}
+		}
+		MetadataCache.Entry usedEntry = new MetadataCache.Entry("https://example.com/used.json", null, null, 0L, "{}");
+		MetadataCache.put(usedEntry);
+		assertTrue(MetadataCache.prune() >= 1);
+		assertTrue(MetadataCache.get(unusedEntry.url()).isEmpty());
+		assertEquals(Optional.of(usedEntry), MetadataCache.get(usedEntry.url()));
+		assertEquals(0, MetadataCache.prune());
+	}
+
+	@Test
+	public void datagenResultCachePrune() throws IOException {
+		Path directory = Files.createTempDirectory(LibraryPaths.CURRENT_WORKING_DIRECTORY, "gitcraft-datagen-cache");
+		Path olderArtifact = Files.writeString(directory.resolve("older.jar"), "older");
+		Path newerArtifact = Files.writeString(directory.resolve("newer.jar"), "newer");
+		String olderKey = DatagenResultCache.key("--reports", "older");
+		String newerKey = DatagenResultCache.key("--reports", "newer");
+		DatagenResultCache.store(olderKey, olderArtifact);
+		DatagenResultCache.store(newerKey, newerArtifact);
+		try (Stream<Path> cachedArchives = Files.walk(LibraryPaths.DATAGEN_CACHE)) {
+			for (Path cachedArchive : cachedArchives.filter(Files::isRegularFile).toList()) {
+				if (Files.readString(cachedArchive).equals("older")) {
+					Files.setLastModifiedTime(cachedArchive, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+				}
+			}
+		}
+		Path restoredArtifact = directory.resolve("restored.jar");
+		assertTrue(DatagenResultCache.restore(olderKey, restoredArtifact));
+		assertEquals("older", Files.readString(restoredArtifact));
+		assertFalse(DatagenResultCache.restore(DatagenResultCache.key("--reports", "missing"), directory.resolve("missing.jar")));
+		// Only the newest result fits, artifacts of removed results are kept
+		assertEquals(1, DatagenResultCache.prune(Files.size(newerArtifact)));
+		assertFalse(DatagenResultCache.restore(olderKey, directory.resolve("older-again.jar")));
+		assertTrue(DatagenResultCache.restore(newerKey, directory.resolve("newer-again.jar")));
+		assertEquals("older", Files.readString(restoredArtifact));
+		assertEquals(0, DatagenResultCache.prune(Files.size(newerArtifact)));
+	}
+
+	private static RevCommit commit(RepoWrapper repo, String message) throws GitAPIException {
+		return repo.getGit().commit().setAllowEmpty(true).setSign(false).setMessage(message).call();
+	}
+
+	/**
+	 * Compares the index to walking the history of every ref, both for single and for batched queries.
+	 */
+	private static void assertRefContainment(RepoWrapper repo, List<RevCommit> commits) throws IOException {
+		Map<RevCommit, List<Ref>> batched = repo.getRefsContainingCommits(commits);
+		try (RevWalk walk = new RevWalk(repo.getGit().getRepository())) {
+			for (RevCommit commit : commits) {
+				Set<String> expected = new TreeSet<>();
+				for (Ref ref : repo.getGit().getRepository().getRefDatabase().getRefs()) {
+					if (ref.getObjectId() != null && walk.isMergedInto(walk.parseCommit(commit), walk.parseCommit(ref.getObjectId()))) {
+						expected.add(ref.getName());
+					}
+				}
+				assertEquals(expected, repo.getRefsContainingCommit(commit).stream().map(Ref::getName).collect(Collectors.toCollection(TreeSet::new)), commit.getFullMessage());
+				assertEquals(expected, batched.get(commit).stream().map(Ref::getName).collect(Collectors.toCollection(TreeSet::new)), commit.getFullMessage());
+				walk.reset();
+			}
+		}
+	}
+
+	@Test
+	public void refContainmentIndex() throws Exception {
+		try (RepoWrapper repo = new RepoWrapper(Files.createTempDirectory(LibraryPaths.CURRENT_WORKING_DIRECTORY, "gitcraft-containment"), "main")) {
+			List<RevCommit> commits = new ArrayList<>();
+			commits.add(commit(repo, "1"));
+			commits.add(commit(repo, "2"));
+			repo.getGit().branchCreate().setName("side").call();
+			commits.add(commit(repo, "3"));
+			repo.getGit().tag().setName("tag").setAnnotated(false).call();
+			commits.add(commit(repo, "4"));
+			repo.getGit().checkout().setName("side").call();
+			commits.add(commit(repo, "side 1"));
+			repo.getGit().checkout().setName("main").call();
+			assertRefContainment(repo, commits);
+			// Fast-forward of an indexed ref
+			repo.getGit().checkout().setName("side").call();
+			commits.add(commit(repo, "side 2"));
+			repo.getGit().checkout().setName("main").call();
+			assertRefContainment(repo, commits);
+			// Moved backwards, commits only reachable from the previous tip no longer contain it
+			repo.resetRef("side", commits.get(0));
+			assertRefContainment(repo, commits);
+			// Moved sideways, and a new ref
+			repo.resetRef("tag", commits.get(4));
+			repo.getGit().branchCreate().setName("other").setStartPoint(commits.get(5)).call();
+			assertRefContainment(repo, commits);
+			// Deleted refs
+			repo.deleteRef("other");
+			repo.deleteRef("tag");
+			assertRefContainment(repo, commits);
+			assertEquals(Optional.of(commits.get(3).getId()), repo.getRefContainmentIndex().findCommitByMessage("4"));
+			assertEquals(Optional.empty(), repo.getRefContainmentIndex().findCommitByMessage("side 2"));
+		}
+	}
+
 	@Test
 	public void versionGraphFilter() throws IOException {
 		MojangLauncherMetadataProvider metadataBootstrap = new MojangLauncherMetadataProvider();
@@ -7,16 +7,24 @@ import com.github.winplay02.gitcraft.pipeline.IStep;
 import com.github.winplay02.gitcraft.pipeline.IStepConfig;
 import com.github.winplay02.gitcraft.pipeline.IStepContext;
 import com.github.winplay02.gitcraft.pipeline.IStepWorker;
+import com.github.winplay02.gitcraft.pipeline.IntermediateEviction;
 import com.github.winplay02.gitcraft.pipeline.ParallelismPolicy;
 import com.github.winplay02.gitcraft.pipeline.PipelineDescription;
+import com.github.winplay02.gitcraft.pipeline.PipelineExecutionGraph;
 import com.github.winplay02.gitcraft.pipeline.PipelineFilesystemStorage;
+import com.github.winplay02.gitcraft.pipeline.PipelineJournal;
+import com.github.winplay02.gitcraft.pipeline.ResourceClass;
+import com.github.winplay02.gitcraft.pipeline.ResourceLimiter;
 import com.github.winplay02.gitcraft.pipeline.StepDependencies;
 import com.github.winplay02.gitcraft.pipeline.StepInput;
 import com.github.winplay02.gitcraft.pipeline.StepOutput;
 import com.github.winplay02.gitcraft.pipeline.StepResults;
 import com.github.winplay02.gitcraft.pipeline.StepStatus;
+import com.github.winplay02.gitcraft.pipeline.key.ArtifactKey;
 import com.github.winplay02.gitcraft.pipeline.key.KeyInformation;
+import com.github.winplay02.gitcraft.util.DownloadPriority;
 import com.github.winplay02.gitcraft.util.MiscHelper;
+import com.github.winplay02.gitcraft.util.PrioritySemaphore;
 import com.github.winplay02.gitcraft.util.Tuple2;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -24,13 +32,22 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 @ExtendWith({GitCraftTestingFs.class})
 @TestMethodOrder(MethodOrderer.MethodName.class)
@@ -96,6 +113,31 @@ public class PipelineTest {
 				this.edgesBack.computeIfAbsent(edge.v1(), $ -> new TreeSet<>());
 			}
 		}
+
+		private TestingVersionGraph(TestingVersionGraph previous, Predicate<TestingVersion> predicate) {
+			super(previous, predicate);
+		}
+
+		public TestingVersionGraph filterOnlyVersion(TestingVersion... version) {
+			Set<TestingVersion> versionList = Set.of(version);
+			return new TestingVersionGraph(this, versionList::contains);
+		}
+
+		public Set<TestingVersion> getRoots() {
+			return this.findRootVertices();
+		}
+
+		public Set<TestingVersion> getLeaves() {
+			return this.findLeafVertices();
+		}
+
+		public void freezeGraph() {
+			this.freeze();
+		}
+
+		public Map<TestingVersion, TreeSet<TestingVersion>> getForwardEdges() {
+			return this.edgesFw;
+		}
 	}
 
 	record EmptyConfig(Timing timing1, Timing timing2, Timing timing3) implements IStepConfig {
@@ -268,4 +310,254 @@ public class PipelineTest {
 		Assertions.assertFalse(SEQ_TIMING[2].isOverlapping(new TestingVersion(2), new TestingVersion(3)));
 		Assertions.assertFalse(SEQ_TIMING[2].isOverlapping(new TestingVersion(1), new TestingVersion(2)));
 	}
+
+	@Test
+	public void intermediateEvictionGreedyDualSize() throws Exception {
+		Path root = Files.createTempDirectory(LibraryPaths.CURRENT_WORKING_DIRECTORY, "gitcraft-eviction");
+		ArtifactKey intermediate = new ArtifactKey("intermediate");
+		PipelineFilesystemStorage<TestingVersion, IStepContext.SimpleStepContext<TestingVersion>, EmptyConfig> storage = new PipelineFilesystemStorage<>(null, Set.of(), Set.of(intermediate), Map.of(
+			intermediate, (_storage, context, _config) -> root.resolve(context.targetVersion().pathName() + ".jar")
+		));
+		IPipeline<TestingVersion, IStepContext.SimpleStepContext<TestingVersion>, EmptyConfig> pipeline = new IPipeline<>(PARALLEL_DESCRIPTION, storage);
+		TestingVersionGraph graph = createVersionGraph();
+		// Intermediates left over from a previous run, version 4 is still required
+		Map<Integer, Integer> sizes = Map.of(1, 100, 2, 400, 3, 300, 4, 500);
+		Map<TestingVersion, IStepContext.SimpleStepContext<TestingVersion>> contexts = new HashMap<>();
+		for (Map.Entry<Integer, Integer> size : sizes.entrySet()) {
+			TestingVersion version = new TestingVersion(size.getKey());
+			Files.write(root.resolve(version.pathName() + ".jar"), new byte[size.getValue()]);
+			contexts.put(version, new IStepContext.SimpleStepContext<>(null, graph, version, null));
+		}
+		IntermediateEviction<TestingVersion, IStepContext.SimpleStepContext<TestingVersion>, EmptyConfig> eviction = new IntermediateEviction<>(pipeline, 600);
+		eviction.initialize(PipelineExecutionGraph.populate(PARALLEL_DESCRIPTION, graph, Set.of(new TestingVersion(4))), Set.of(), contexts, new HashMap<>());
+		// With equal recomputation costs, the largest released intermediates are evicted first, until the budget is met
+		Assertions.assertFalse(Files.exists(root.resolve("2.jar")));
+		Assertions.assertFalse(Files.exists(root.resolve("3.jar")));
+		Assertions.assertTrue(Files.exists(root.resolve("1.jar")));
+		// Intermediates of referenced versions are never evicted
+		Assertions.assertTrue(Files.exists(root.resolve("4.jar")));
+	}
+
+	@Test
+	public void journalRestoresAfterSharedStoreModification() throws Exception {
+		Path root = Files.createTempDirectory(LibraryPaths.CURRENT_WORKING_DIRECTORY, "gitcraft-journal");
+		Path libraries = Files.createDirectories(root.resolve("libraries"));
+		Path versionDirectory = Files.createDirectories(root.resolve("1"));
+		Path versionOutput = Files.writeString(versionDirectory.resolve("client.jar"), "client");
+		Path library = Files.writeString(libraries.resolve("library-1.jar"), "library 1");
+		PipelineJournal journal = PipelineJournal.load("test-shared-store");
+		journal.append("Fetch Libraries", "1", "config", List.of(libraries, versionDirectory, versionOutput), List.of(library));
+		Assertions.assertTrue(journal.getValidEntry("Fetch Libraries", "1", "config").isPresent());
+		// A second version writes to the shared library directory, and a later step to the directory of the version
+		Files.writeString(libraries.resolve("library-2.jar"), "library 2");
+		Files.setLastModifiedTime(libraries, FileTime.fromMillis(Files.getLastModifiedTime(libraries).toMillis() + 10_000L));
+		Files.writeString(versionDirectory.resolve("server.jar"), "server");
+		Files.setLastModifiedTime(versionDirectory, FileTime.fromMillis(Files.getLastModifiedTime(versionDirectory).toMillis() + 10_000L));
+		Assertions.assertTrue(journal.getValidEntry("Fetch Libraries", "1", "config").isPresent());
+		Assertions.assertTrue(PipelineJournal.load("test-shared-store").getValidEntry("Fetch Libraries", "1", "config").isPresent());
+		// Files of the version in the shared store are still validated
+		Files.writeString(library, "library 1, modified");
+		Assertions.assertFalse(journal.getValidEntry("Fetch Libraries", "1", "config").isPresent());
+		Files.delete(library);
+		Assertions.assertFalse(PipelineJournal.load("test-shared-store").getValidEntry("Fetch Libraries", "1", "config").isPresent());
+	}
+
+	@Test
+	public void resourceLimiter() throws Exception {
+		ResourceLimiter limiter = new ResourceLimiter(Map.of(ResourceClass.NETWORK, 2, ResourceClass.CPU, 4, ResourceClass.DISK_IO, 0));
+		// All demands are acquired at once, or not at all
+		Assertions.assertTrue(limiter.tryAcquire(Map.of(ResourceClass.NETWORK, 1, ResourceClass.CPU, 3)));
+		Assertions.assertFalse(limiter.tryAcquire(Map.of(ResourceClass.NETWORK, 1, ResourceClass.CPU, 2)));
+		Assertions.assertTrue(limiter.tryAcquire(Map.of(ResourceClass.NETWORK, 1)));
+		Assertions.assertFalse(limiter.tryAcquire(Map.of(ResourceClass.NETWORK, 1)));
+		// Classes without a positive limit are unlimited
+		Assertions.assertTrue(limiter.tryAcquire(Map.of(ResourceClass.DISK_IO, 100, ResourceClass.SUBPROCESS, 100)));
+		limiter.release(Map.of(ResourceClass.NETWORK, 2, ResourceClass.CPU, 3));
+		// Demands exceeding the limit are capped, so that the step runs without any other step using the same class
+		Assertions.assertTrue(limiter.tryAcquire(Map.of(ResourceClass.CPU, 16)));
+		Assertions.assertFalse(limiter.tryAcquire(Map.of(ResourceClass.CPU, 1)));
+		Thread waiting = new Thread(() -> limiter.acquireUninterruptibly(Map.of(ResourceClass.CPU, 1)));
+		waiting.start();
+		waiting.join(200);
+		Assertions.assertTrue(waiting.isAlive());
+		limiter.release(Map.of(ResourceClass.CPU, 16));
+		waiting.join(5000);
+		Assertions.assertFalse(waiting.isAlive());
+		Assertions.assertTrue(limiter.tryAcquire(Map.of(ResourceClass.CPU, 3)));
+		Assertions.assertFalse(limiter.tryAcquire(Map.of(ResourceClass.CPU, 1)));
+	}
+
+	private static Thread startWaiting(Runnable runnable) throws InterruptedException {
+		Thread thread = new Thread(runnable);
+		thread.start();
+		while (thread.getState() != Thread.State.WAITING) {
+			Thread.sleep(10);
+		}
+		return thread;
+	}
+
+	@Test
+	public void resourceLimiterNetworkPriority() throws Exception {
+		ResourceLimiter limiter = new ResourceLimiter(Map.of(ResourceClass.NETWORK, 1, ResourceClass.CPU, 4));
+		Assertions.assertTrue(limiter.tryAcquire(Map.of(ResourceClass.NETWORK, 1)));
+		List<String> order = new CopyOnWriteArrayList<>();
+		// The bulk step arrives first, but the critical step gets the network permit first
+		Thread bulk = startWaiting(() -> {
+			limiter.acquireUninterruptibly(Map.of(ResourceClass.NETWORK, 1), new DownloadPriority(DownloadPriority.Tier.BULK, 0));
+			order.add("bulk");
+			limiter.release(Map.of(ResourceClass.NETWORK, 1));
+		});
+		Thread laterCritical = startWaiting(() -> {
+			limiter.acquireUninterruptibly(Map.of(ResourceClass.NETWORK, 1), new DownloadPriority(DownloadPriority.Tier.CRITICAL, 2));
+			order.add("critical 2");
+			limiter.release(Map.of(ResourceClass.NETWORK, 1));
+		});
+		Thread earlierCritical = startWaiting(() -> {
+			limiter.acquireUninterruptibly(Map.of(ResourceClass.NETWORK, 1), new DownloadPriority(DownloadPriority.Tier.CRITICAL, 1));
+			order.add("critical 1");
+			limiter.release(Map.of(ResourceClass.NETWORK, 1));
+		});
+		// Steps without network demands are not ordered by priority
+		Assertions.assertTrue(limiter.tryAcquire(Map.of(ResourceClass.CPU, 1)));
+		limiter.acquireUninterruptibly(Map.of(ResourceClass.CPU, 1), new DownloadPriority(DownloadPriority.Tier.BULK, 0));
+		limiter.release(Map.of(ResourceClass.CPU, 2));
+		limiter.release(Map.of(ResourceClass.NETWORK, 1));
+		for (Thread thread : List.of(bulk, laterCritical, earlierCritical)) {
+			thread.join(5000);
+			Assertions.assertFalse(thread.isAlive());
+		}
+		Assertions.assertEquals(List.of("critical 1", "critical 2", "bulk"), order);
+		Assertions.assertTrue(limiter.tryAcquire(Map.of(ResourceClass.NETWORK, 1)));
+	}
+
+	@Test
+	public void resourceLimiterNetworkPrioritySkipsBlockedSteps() throws Exception {
+		ResourceLimiter limiter = new ResourceLimiter(Map.of(ResourceClass.NETWORK, 1, ResourceClass.CPU, 1));
+		Assertions.assertTrue(limiter.tryAcquire(Map.of(ResourceClass.CPU, 1)));
+		List<String> order = new CopyOnWriteArrayList<>();
+		// The critical step waits for the CPU, so it does not hold back the network permit
+		Thread critical = startWaiting(() -> {
+			limiter.acquireUninterruptibly(Map.of(ResourceClass.NETWORK, 1, ResourceClass.CPU, 1), new DownloadPriority(DownloadPriority.Tier.CRITICAL, 0));
+			order.add("critical");
+			limiter.release(Map.of(ResourceClass.NETWORK, 1, ResourceClass.CPU, 1));
+		});
+		Thread bulk = new Thread(() -> {
+			limiter.acquireUninterruptibly(Map.of(ResourceClass.NETWORK, 1), new DownloadPriority(DownloadPriority.Tier.BULK, 0));
+			order.add("bulk");
+		});
+		bulk.start();
+		bulk.join(5000);
+		Assertions.assertFalse(bulk.isAlive());
+		Assertions.assertTrue(critical.isAlive());
+		// Once the CPU is available, the critical step only waits for the network permit, which then is not handed to any later step
+		limiter.release(Map.of(ResourceClass.CPU, 1));
+		Thread laterBulk = startWaiting(() -> {
+			limiter.acquireUninterruptibly(Map.of(ResourceClass.NETWORK, 1), new DownloadPriority(DownloadPriority.Tier.BULK, 1));
+			order.add("later bulk");
+			limiter.release(Map.of(ResourceClass.NETWORK, 1));
+		});
+		limiter.release(Map.of(ResourceClass.NETWORK, 1));
+		for (Thread thread : List.of(critical, laterBulk)) {
+			thread.join(5000);
+			Assertions.assertFalse(thread.isAlive());
+		}
+		Assertions.assertEquals(List.of("bulk", "critical", "later bulk"), order);
+	}
+
+	@Test
+	public void prioritySemaphore() throws Exception {
+		PrioritySemaphore semaphore = new PrioritySemaphore(1);
+		semaphore.acquireUninterruptibly(DownloadPriority.UNSPECIFIED);
+		List<String> order = new CopyOnWriteArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		for (DownloadPriority priority : List.of(new DownloadPriority(DownloadPriority.Tier.BULK, 0), new DownloadPriority(DownloadPriority.Tier.DEFAULT, 3), new DownloadPriority(DownloadPriority.Tier.CRITICAL, 5), new DownloadPriority(DownloadPriority.Tier.DEFAULT, 1))) {
+			threads.add(startWaiting(() -> {
+				semaphore.acquireUninterruptibly(priority);
+				order.add(String.format("%s %s", priority.tier(), priority.rank()));
+				semaphore.release();
+			}));
+		}
+		semaphore.release();
+		for (Thread thread : threads) {
+			thread.join(5000);
+			Assertions.assertFalse(thread.isAlive());
+		}
+		Assertions.assertEquals(List.of("CRITICAL 5", "DEFAULT 1", "DEFAULT 3", "BULK 0"), order);
+	}
+
+	@Test
+	public void versionGraphStructureLarge() {
+		// Mainline of 2000 versions, every 10th version starts a side branch of 3 versions, which is merged back 10 versions later
+		int mainlineVersions = 2000;
+		List<Tuple2<TestingVersion, TestingVersion>> edges = new ArrayList<>();
+		for (int i = 1; i < mainlineVersions; ++i) {
+			edges.add(Tuple2.tuple(new TestingVersion(i), new TestingVersion(i + 1)));
+		}
+		int nextVersion = mainlineVersions + 1;
+		for (int i = 1; i + 10 <= mainlineVersions; i += 10) {
+			TestingVersion branchStart = new TestingVersion(nextVersion++);
+			TestingVersion branchMiddle = new TestingVersion(nextVersion++);
+			TestingVersion branchEnd = new TestingVersion(nextVersion++);
+			edges.add(Tuple2.tuple(new TestingVersion(i), branchStart));
+			edges.add(Tuple2.tuple(branchStart, branchMiddle));
+			edges.add(Tuple2.tuple(branchMiddle, branchEnd));
+			edges.add(Tuple2.tuple(branchEnd, new TestingVersion(i + 10)));
+		}
+		TestingVersionGraph graph = new TestingVersionGraph(edges);
+		List<TestingVersion> order = graph.stream().toList();
+		Assertions.assertEquals(nextVersion - 1, order.size());
+		Assertions.assertEquals(order.size(), graph.getVertexCount());
+		int roots = 0;
+		for (int i = 0; i < order.size(); ++i) {
+			Assertions.assertEquals(i, graph.getVertexIndex(order.get(i)));
+			Assertions.assertEquals(graph.getPreviousVertices(order.get(i)).size(), graph.getPreviousVertexIndices(i).length);
+			for (int previous : graph.getPreviousVertexIndices(i)) {
+				Assertions.assertTrue(previous < i);
+			}
+			for (int following : graph.getFollowingVertexIndices(i)) {
+				Assertions.assertTrue(following > i);
+			}
+			if (graph.getPreviousVertexIndices(i).length == 0) {
+				++roots;
+			}
+		}
+		Assertions.assertEquals(1, roots);
+		Assertions.assertEquals(new TestingVersion(1), order.getFirst());
+		Assertions.assertEquals(Set.of(new TestingVersion(1)), graph.getRoots());
+		Assertions.assertEquals(Set.of(new TestingVersion(mainlineVersions)), graph.getLeaves());
+		// Repeated iterations reuse the cached order
+		Assertions.assertEquals(order, graph.stream().toList());
+		List<TestingVersion> iterated = new ArrayList<>();
+		graph.forEach(iterated::add);
+		Assertions.assertEquals(order, iterated);
+		// Only side branches, which are chained together by bridging the removed mainline versions
+		TestingVersion[] sideBranchVersions = IntStream.range(mainlineVersions + 1, nextVersion).mapToObj(TestingVersion::new).toArray(TestingVersion[]::new);
+		TestingVersionGraph sideBranchGraph = graph.filterOnlyVersion(sideBranchVersions);
+		List<TestingVersion> sideBranchOrder = sideBranchGraph.stream().toList();
+		Assertions.assertEquals(order.stream().filter(version -> version.num() > mainlineVersions).toList(), sideBranchOrder);
+		Assertions.assertEquals(Set.of(new TestingVersion(mainlineVersions + 1)), sideBranchGraph.getRoots());
+		Assertions.assertEquals(Set.of(new TestingVersion(nextVersion - 1)), sideBranchGraph.getLeaves());
+		Assertions.assertEquals(sideBranchOrder, sideBranchGraph.stream().toList());
+		// Versions on parallel branches (mainline and the first side branch) are both roots and leaves
+		TestingVersionGraph disconnectedGraph = graph.filterOnlyVersion(new TestingVersion(5), new TestingVersion(mainlineVersions + 2));
+		Assertions.assertEquals(Set.of(new TestingVersion(5), new TestingVersion(mainlineVersions + 2)), disconnectedGraph.getRoots());
+		Assertions.assertEquals(disconnectedGraph.getRoots(), disconnectedGraph.getLeaves());
+	}
+
+	@Test
+	public void versionGraphFreezeCopiesEdges() {
+		TestingVersion v1 = new TestingVersion(1), v2 = new TestingVersion(2), v3 = new TestingVersion(3);
+		TestingVersionGraph graph = new TestingVersionGraph(List.of(Tuple2.tuple(v1, v2), Tuple2.tuple(v2, v3)));
+		Map<TestingVersion, TreeSet<TestingVersion>> edgesBeforeFreeze = graph.getForwardEdges();
+		graph.freezeGraph();
+		Assertions.assertTrue(graph.isFrozen());
+		List<TestingVersion> order = graph.stream().toList();
+		// Edges referenced before freezing no longer affect the frozen graph
+		edgesBeforeFreeze.get(v1).add(v3);
+		edgesBeforeFreeze.put(new TestingVersion(4), new TreeSet<>());
+		Assertions.assertEquals(order, graph.stream().toList());
+		Assertions.assertEquals(Set.of(v2), graph.getForwardEdges().get(v1));
+		Assertions.assertEquals(Set.of(v3), graph.getLeaves());
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> graph.getForwardEdges().put(new TestingVersion(4), new TreeSet<>()));
+	}
 }
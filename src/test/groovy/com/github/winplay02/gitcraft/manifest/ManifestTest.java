@@ -4,24 +4,38 @@ import com.github.winplay02.gitcraft.GitCraftTestingFs;
 import com.github.winplay02.gitcraft.LibraryPaths;
 import com.github.winplay02.gitcraft.MinecraftVersionGraph;
 import com.github.winplay02.gitcraft.manifest.historic.HistoricMojangLauncherMetadataProvider;
+import com.github.winplay02.gitcraft.manifest.metadata.VersionInfo;
 import com.github.winplay02.gitcraft.manifest.skyrising.SkyrisingMetadataProvider;
 import com.github.winplay02.gitcraft.manifest.vanilla.MojangLauncherMetadataProvider;
 import com.github.winplay02.gitcraft.types.OrderedVersion;
+import com.github.winplay02.gitcraft.util.SerializationHelper;
+import com.github.winplay02.gitcraft.util.SerializationTypes;
 
+import net.fabricmc.loader.api.SemanticVersion;
+import net.fabricmc.loader.api.Version;
+import net.fabricmc.loader.api.VersionParsingException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith({GitCraftTestingFs.class})
@@ -104,4 +118,44 @@ public class ManifestTest {
 			assertNotNull(versionGraphComplete);
 		}
 	}
+
+	private static OrderedVersion versionForOrdering(String semanticVersion) {
+		VersionInfo versionInfo = new VersionInfo(null, null, null, semanticVersion, null, List.of(), null, null, null, null, null, null);
+		return new OrderedVersion(versionInfo, semanticVersion, null, null, null, null, Set.of(), null);
+	}
+
+	@Test
+	public void orderedVersionMatchesSemanticVersionOrder() throws IOException, VersionParsingException {
+		// Semantic versions of all manifests, with additional pre-releases, padded components and build metadata
+		TreeSet<String> semanticVersions = new TreeSet<>(List.of(
+			"1.20", "1.20.0", "1.20.0.0", "1.20-rc.1", "1.20-rc.1+b", "1.20-rc.10", "1.20-pre.1", "1.20-alpha.1", "1.20-alpha.1.a",
+			"1.20+a", "1.20+b", "1.20.0+a", "1.20.1-rc.1", "1.20.1", "0.0.0-rd.132328", "0.0.0-rd.132328+launcher"
+		));
+		try (Stream<Path> semverCaches = Files.list(LibraryPaths.lookupCurrentWorkingDirectory())) {
+			for (Path semverCache : semverCaches.filter(path -> path.getFileName().toString().matches("semver-cache-.*\\.json")).toList()) {
+				semanticVersions.addAll(SerializationHelper.deserialize(SerializationHelper.fetchAllFromPath(semverCache), SerializationTypes.TYPE_TREE_MAP_STRING_STRING).values());
+			}
+		}
+		assertTrue(semanticVersions.size() > 1000);
+		Map<String, SemanticVersion> parsed = new HashMap<>();
+		List<OrderedVersion> versions = new ArrayList<>();
+		for (String semanticVersion : semanticVersions) {
+			parsed.put(semanticVersion, SemanticVersion.parse(semanticVersion));
+			versions.add(versionForOrdering(semanticVersion));
+		}
+		for (OrderedVersion a : versions) {
+			SemanticVersion parsedA = parsed.get(a.semanticVersion());
+			for (OrderedVersion b : versions) {
+				SemanticVersion parsedB = parsed.get(b.semanticVersion());
+				int expected = parsedA.compareTo((Version) parsedB);
+				if (expected == 0) {
+					expected = parsedA.getBuildKey().orElse("").compareTo(parsedB.getBuildKey().orElse(""));
+				}
+				assertEquals(Integer.signum(expected), Integer.signum(a.compareTo(b)), () -> String.format("%s <=> %s", a.semanticVersion(), b.semanticVersion()));
+			}
+		}
+		// Wildcards are rejected when parsing, so they never reach the version order
+		assertThrows(VersionParsingException.class, () -> SemanticVersion.parse("1.20.x"));
+		assertThrows(RuntimeException.class, () -> versionForOrdering("1.20.x"));
+	}
 }